@@ -0,0 +1,22 @@
+package net.staticstudios.data;
+
+import java.lang.annotation.*;
+
+/**
+ * Declares a composite index on the table of a {@link Data} class.
+ * Entries in {@link #columns()} and {@link #include()} are column names, or {@link Identifier} values of CachedValues.
+ * Indexes over CachedValues only exist in the in-memory cache, since they are not persisted to Postgres.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Repeatable(Indexes.class)
+public @interface Index {
+    String[] columns();
+
+    boolean unique() default false;
+
+    /**
+     * Non-key columns to store in the index, so that queries selecting them can be answered from the index alone.
+     */
+    String[] include() default {};
+}
@@ -39,7 +39,13 @@ public class StaticDataBenchmarkState {
                     postgres.getPassword(),
                     redis.getHost(),
                     redis.getRedisPort(),
-                    Runnable::run
+                    Runnable::run,
+                    null,
+                    false,
+                    -1,
+                    -1,
+                    0,
+                    false
             );
 
             DataManager dataManager = new DataManager(dataSourceConfig, true);
@@ -1,6 +1,7 @@
 package net.staticstudios.data;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
 import net.staticstudios.data.impl.DataAccessor;
 import net.staticstudios.data.impl.data.*;
@@ -13,12 +14,16 @@ import net.staticstudios.data.insert.PostInsertAction;
 import net.staticstudios.data.parse.DDLStatement;
 import net.staticstudios.data.parse.SQLBuilder;
 import net.staticstudios.data.parse.SQLColumn;
+import net.staticstudios.data.parse.SQLSchema;
 import net.staticstudios.data.parse.SQLTable;
 import net.staticstudios.data.primative.Primitives;
+import net.staticstudios.data.query.LiveQuery;
 import net.staticstudios.data.util.*;
 import net.staticstudios.data.util.TaskQueue;
 import net.staticstudios.data.util.redis.RedisUtils;
 import net.staticstudios.data.utils.Link;
+import net.staticstudios.utils.ShutdownStage;
+import net.staticstudios.utils.ThreadUtils;
 import org.intellij.lang.annotations.Language;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Blocking;
@@ -33,12 +38,23 @@ import java.lang.reflect.Modifier;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @ApiStatus.Internal
 public class DataManager {
+    private static final int CHANGE_BUFFER_SIZE = 8_192;
+    private static final int REDIS_PIPELINE_SIZE = 512;
     private static final Map<UUID, DataManager> DATA_MANAGER_INSTANCES = new ConcurrentHashMap<>();
     private static Boolean useGlobal = null;
     private static DataManager instance;
@@ -48,12 +64,15 @@ public class DataManager {
     private final DataAccessor dataAccessor;
     private final SQLBuilder sqlBuilder;
     private final TaskQueue taskQueue;
+    private final RedisPipelineQueue redisQueue;
     private final Map<String, UniqueDataMetadata> uniqueDataMetadataMap = new ConcurrentHashMap<>();
     private final Map<String, Map<ColumnValuePairs, UniqueData>> uniqueDataInstanceCache = new ConcurrentHashMap<>();
     private final Map<String, Map<String, List<ValueUpdateHandlerWrapper<?, ?>>>> persistentValueUpdateHandlers = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, List<BatchValueUpdateHandlerWrapper<?, ?>>>> persistentValueBatchUpdateHandlers = new ConcurrentHashMap<>();
     private final Map<String, Map<String, List<CachedValueUpdateHandlerWrapper<?, ?>>>> cachedValueUpdateHandlers = new ConcurrentHashMap<>();
     private final Map<String, Map<String, List<CollectionChangeHandlerWrapper<?, ?>>>> collectionChangeHandlers = new ConcurrentHashMap<>();
     private final Map<String, Map<String, List<ReferenceUpdateHandlerWrapper<?, ?>>>> referenceUpdateHandlers = new ConcurrentHashMap<>();
+    private final AtomicLong handlerGeneration = new AtomicLong();
     private final PostgresListener postgresListener;
     private final RedisListener redisListener;
     private final Set<PersistentValueMetadata> registeredUpdateHandlersForColumns = ConcurrentHashMap.newKeySet();
@@ -62,9 +81,21 @@ public class DataManager {
     private final Set<ReferenceMetadata> registeredUpdateHandlersForReference = ConcurrentHashMap.newKeySet();
     private final DependencyTrackingCache relationCache;
     private final DependencyTrackingCache cellCache;
+    private final DependencyTrackingCache queryCache;
+    private final @Nullable Map<SchemaTable, HeapIndex> heapIndexes;
+    private final Map<SchemaTable, Set<LiveQuery<?>>> liveQueries = new ConcurrentHashMap<>();
+    private final Map<SchemaTable, Map<Class<? extends UniqueData>, RowChangePublisher<?>>> changePublishers = new ConcurrentHashMap<>();
+    private final ExecutorService changeExecutor;
+    private final ExecutorService rowChangeConversionExecutor;
+    private final AtomicLong droppedRowChanges = new AtomicLong();
+    private final AtomicLong lastDroppedRowChangeWarning = new AtomicLong();
 
     private final List<ValueSerializer<?, ?>> valueSerializers = new CopyOnWriteArrayList<>();
     private final Consumer<Runnable> updateHandlerExecutor;
+    private final Executor queryExecutor;
+    private final long slowQueryThresholdMillis;
+    private final boolean publishRedisValues;
+    private final HandlerLatencyTracker handlerLatencyTracker;
 
     private boolean finishedLoading = false;
     //todo: custom types are serialized and deserialized all the time currently, we should have a cache for these. caffeine with time based eviction sounds good.
@@ -80,6 +111,25 @@ public class DataManager {
                 config.redisPort()
         );
         this.updateHandlerExecutor = config.updateHandlerExecutor();
+        this.slowQueryThresholdMillis = config.slowQueryThresholdMillis();
+        this.publishRedisValues = config.publishRedisValues();
+        this.handlerLatencyTracker = new HandlerLatencyTracker(config.slowHandlerThresholdMillis());
+        if (config.queryExecutor() != null) {
+            this.queryExecutor = config.queryExecutor()::accept;
+        } else {
+            // H2 connections are per thread, so keep a fixed set of virtual threads rather than one per task
+            ExecutorService defaultQueryExecutor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), Thread.ofVirtual().name("static-data-query-", 0).factory());
+            ThreadUtils.onShutdownRunSync(ShutdownStage.CLEANUP, defaultQueryExecutor::shutdown);
+            this.queryExecutor = defaultQueryExecutor;
+        }
+        this.changeExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("static-data-changes-", 0).factory());
+        // building a row change may resolve its instance from H2, and H2 connections are per thread, so use a single thread rather than one per task
+        this.rowChangeConversionExecutor = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("static-data-change-conversion").factory());
+        ThreadUtils.onShutdownRunSync(ShutdownStage.CLEANUP, () -> {
+            changePublishers.values().forEach(publishers -> publishers.values().forEach(RowChangePublisher::close));
+            rowChangeConversionExecutor.shutdown();
+            changeExecutor.shutdown();
+        });
 
         if (setGlobal) {
             if (Boolean.FALSE.equals(DataManager.useGlobal)) {
@@ -95,12 +145,15 @@ public class DataManager {
         applicationName = "static_data_manager_v3-" + applicationId;
         postgresListener = new PostgresListener(this, dataSourceConfig);
         this.taskQueue = new TaskQueue(dataSourceConfig, applicationName);
-        redisListener = new RedisListener(dataSourceConfig, this.taskQueue);
+        this.redisQueue = new RedisPipelineQueue(dataSourceConfig, REDIS_PIPELINE_SIZE, config.redisPipelineLingerMillis());
+        redisListener = new RedisListener(dataSourceConfig, this.redisQueue, publishRedisValues);
         sqlBuilder = new SQLBuilder(this);
-        dataAccessor = new H2DataAccessor(this, postgresListener, redisListener, taskQueue);
+        dataAccessor = new H2DataAccessor(this, postgresListener, redisListener, taskQueue, redisQueue);
 
         this.relationCache = new DependencyTrackingCache("relation", 10_000, 5);
         this.cellCache = new DependencyTrackingCache("cell", 20_000, 5);
+        this.queryCache = new DependencyTrackingCache("query", 1_000, 5);
+        this.heapIndexes = config.heapIndexes() ? new ConcurrentHashMap<>() : null;
 
         //todo: when we reconnect to postgres, refresh the internal cache from the source
     }
@@ -141,6 +194,15 @@ public class DataManager {
         persistentValueUpdateHandlers.computeIfAbsent(key, k -> new ConcurrentHashMap<>())
                 .computeIfAbsent(handler.getHolderClass().getName(), k -> new CopyOnWriteArrayList<>())
                 .add(handler);
+        handlerGeneration.incrementAndGet();
+    }
+
+    public void addBatchUpdateHandler(String schema, String table, String column, BatchValueUpdateHandlerWrapper<?, ?> handler) {
+        String key = schema + "." + table + "." + column;
+        persistentValueBatchUpdateHandlers.computeIfAbsent(key, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(handler.getHolderClass().getName(), k -> new CopyOnWriteArrayList<>())
+                .add(handler);
+        handlerGeneration.incrementAndGet();
     }
 
     private void addRedisUpdateHandler(String partialKey, CachedValueUpdateHandlerWrapper<?, ?> handler) {
@@ -149,41 +211,105 @@ public class DataManager {
                 .add(handler);
     }
 
-    public void callPersistentValueUpdateHandlers(List<String> columnNames, String schema, String table, String column, Object[] oldSerializedValues, Object[] newSerializedValues) {
-        logger.trace("Calling update handlers for {}.{}.{} with old values {} and new values {}", schema, table, column, LazyArrayToString.of(oldSerializedValues), LazyArrayToString.of(newSerializedValues));
-        Map<String, List<ValueUpdateHandlerWrapper<?, ?>>> handlersForColumn = persistentValueUpdateHandlers.get(schema + "." + table + "." + column);
-        if (handlersForColumn == null) {
-            return;
+    /**
+     * Get the current handler generation, which changes whenever a persistent value, collection or reference handler is registered.
+     * A {@link HandlerDispatchTable} built for an older generation may be missing handlers and should be rebuilt.
+     *
+     * @return the current handler generation
+     */
+    @ApiStatus.Internal
+    public long getHandlerGeneration() {
+        return handlerGeneration.get();
+    }
+
+    /**
+     * Resolve the handlers registered against a table for the given column layout.
+     *
+     * @param schema      the schema of the table
+     * @param table       the table
+     * @param columnNames the column names, in the order row values are provided
+     * @return the dispatch table
+     */
+    @ApiStatus.Internal
+    public HandlerDispatchTable createHandlerDispatchTable(String schema, String table, List<String> columnNames) {
+        // read the generation first, so a handler registered while building leaves this table stale rather than missing the handler
+        long generation = handlerGeneration.get();
+        Map<String, Integer> ordinals = new HashMap<>();
+        for (int i = 0; i < columnNames.size(); i++) {
+            ordinals.put(columnNames.get(i), i);
+        }
+
+        HandlerDispatchTable.ValueHandlerGroup[][] valueHandlers = new HandlerDispatchTable.ValueHandlerGroup[columnNames.size()][];
+        for (int i = 0; i < columnNames.size(); i++) {
+            String columnKey = schema + "." + table + "." + columnNames.get(i);
+            Map<String, List<ValueUpdateHandlerWrapper<?, ?>>> handlersForColumn = persistentValueUpdateHandlers.getOrDefault(columnKey, Map.of());
+            Map<String, List<BatchValueUpdateHandlerWrapper<?, ?>>> batchHandlersForColumn = persistentValueBatchUpdateHandlers.getOrDefault(columnKey, Map.of());
+            Set<String> holderClassNames = new LinkedHashSet<>(handlersForColumn.keySet());
+            holderClassNames.addAll(batchHandlersForColumn.keySet());
+            if (holderClassNames.isEmpty()) {
+                valueHandlers[i] = HandlerDispatchTable.noValueHandlers();
+                continue;
+            }
+            List<HandlerDispatchTable.ValueHandlerGroup> groups = new ArrayList<>();
+            for (String holderClassName : holderClassNames) {
+                Class<? extends UniqueData> holderClass = ClassUtils.forName(holderClassName);
+                UniqueDataMetadata metadata = getMetadata(holderClass);
+                String[] idColumns = new String[metadata.idColumns().size()];
+                int[] idOrdinals = new int[idColumns.length];
+                for (int j = 0; j < idColumns.length; j++) {
+                    idColumns[j] = metadata.idColumns().get(j).name();
+                    idOrdinals[j] = ordinals.getOrDefault(idColumns[j], -1);
+                }
+                groups.add(new HandlerDispatchTable.ValueHandlerGroup(holderClass, idColumns, idOrdinals,
+                        List.copyOf(handlersForColumn.getOrDefault(holderClassName, List.of())),
+                        List.copyOf(batchHandlersForColumn.getOrDefault(holderClassName, List.of()))));
+            }
+            valueHandlers[i] = groups.toArray(new HandlerDispatchTable.ValueHandlerGroup[0]);
         }
 
-        int columnIndex = columnNames.indexOf(column);
-        Preconditions.checkArgument(columnIndex != -1, "Column %s not found in provided name names %s", column, columnNames);
+        List<CollectionChangeHandlerWrapper<?, ?>> collectionHandlers = new ArrayList<>();
+        Map<String, List<CollectionChangeHandlerWrapper<?, ?>>> collectionHandlersForTable = collectionChangeHandlers.get(schema + "." + table);
+        if (collectionHandlersForTable != null) {
+            collectionHandlersForTable.values().forEach(collectionHandlers::addAll);
+        }
+        List<ReferenceUpdateHandlerWrapper<?, ?>> referenceHandlers = new ArrayList<>();
+        Map<String, List<ReferenceUpdateHandlerWrapper<?, ?>>> referenceHandlersForTable = referenceUpdateHandlers.get(schema + "." + table);
+        if (referenceHandlersForTable != null) {
+            referenceHandlersForTable.values().forEach(referenceHandlers::addAll);
+        }
 
-        for (Map.Entry<String, List<ValueUpdateHandlerWrapper<?, ?>>> entry : handlersForColumn.entrySet()) {
-            String holderClassName = entry.getKey();
-            Class<? extends UniqueData> holderClass = ClassUtils.forName(holderClassName);
-            UniqueDataMetadata metadata = getMetadata(holderClass);
-            List<ValueUpdateHandlerWrapper<?, ?>> handlers = entry.getValue();
-            ColumnValuePair[] idColumns = new ColumnValuePair[metadata.idColumns().size()];
-            for (ColumnMetadata idColumn : metadata.idColumns()) {
-                boolean found = false;
-                for (int i = 0; i < columnNames.size(); i++) {
-                    if (idColumn.name().equals(columnNames.get(i))) {
-                        idColumns[metadata.idColumns().indexOf(idColumn)] = new ColumnValuePair(idColumn.name(), oldSerializedValues[i]);
-                        found = true;
-                        break;
-                    }
-                }
-                if (!found) {
-                    throw new IllegalArgumentException("Not all ID columnsInReferringTable were provided for UniqueData class " + holderClass.getName() + ". Required: " + metadata.idColumns() + ", Provided: " + columnNames);
+        return new HandlerDispatchTable(schema, table, List.copyOf(columnNames), generation, valueHandlers, List.copyOf(collectionHandlers), List.copyOf(referenceHandlers), Map.copyOf(ordinals));
+    }
+
+    public void callPersistentValueUpdateHandlers(HandlerDispatchTable dispatchTable, int ordinal, Object[] oldSerializedValues, Object[] newSerializedValues) {
+        HandlerDispatchTable.ValueHandlerGroup[] groups = dispatchTable.getValueHandlers(ordinal);
+        if (groups.length == 0) {
+            return;
+        }
+        logger.trace("Calling update handlers for {}.{}.{} with old values {} and new values {}", dispatchTable.schema(), dispatchTable.table(), dispatchTable.columnNames().get(ordinal), LazyArrayToString.of(oldSerializedValues), LazyArrayToString.of(newSerializedValues));
+
+        for (HandlerDispatchTable.ValueHandlerGroup group : groups) {
+            int[] idOrdinals = group.idOrdinals();
+            ColumnValuePair[] idColumns = new ColumnValuePair[idOrdinals.length];
+            for (int i = 0; i < idOrdinals.length; i++) {
+                if (idOrdinals[i] == -1) {
+                    throw new IllegalArgumentException("Not all ID columnsInReferringTable were provided for UniqueData class " + group.holderClass().getName() + ". Required: " + Arrays.toString(group.idColumns()) + ", Provided: " + dispatchTable.columnNames());
                 }
+                idColumns[i] = new ColumnValuePair(group.idColumns()[i], oldSerializedValues[idOrdinals[i]]);
             }
-            UniqueData instance = getInstance(holderClass, idColumns);
-            for (ValueUpdateHandlerWrapper<?, ?> wrapper : handlers) {
+            UniqueData instance = getInstance(group.holderClass(), idColumns);
+            for (ValueUpdateHandlerWrapper<?, ?> wrapper : group.handlers()) {
+                Class<?> dataType = wrapper.getDataType();
+                Object deserializedOldValue = deserialize(dataType, oldSerializedValues[ordinal]);
+                Object deserializedNewValue = deserialize(dataType, newSerializedValues[ordinal]);
+                submitUpdateHandler(instance, wrapper.getName(), () -> wrapper.unsafeHandle(instance, deserializedOldValue, deserializedNewValue));
+            }
+            if (instance == null) {
+                continue;
+            }
+            for (BatchValueUpdateHandlerWrapper<?, ?> wrapper : group.batchHandlers()) {
                 Class<?> dataType = wrapper.getDataType();
-                Object deserializedOldValue = deserialize(dataType, oldSerializedValues[columnIndex]);
-                Object deserializedNewValue = deserialize(dataType, newSerializedValues[columnIndex]);
-                submitUpdateHandler(() -> wrapper.unsafeHandle(instance, deserializedOldValue, deserializedNewValue));
+                addBatchUpdate(wrapper, instance, deserialize(dataType, oldSerializedValues[ordinal]), deserialize(dataType, newSerializedValues[ordinal]));
             }
         }
     }
@@ -235,7 +361,7 @@ public class DataManager {
                     Object decodedNewValue = Primitives.decode(serializedType, newValue);
                     deserializedNewValue = deserialize(wrapper.getDataType(), decodedNewValue);
                 }
-                submitUpdateHandler(() -> wrapper.unsafeHandle(instance, deserializedOldValue, deserializedNewValue));
+                submitUpdateHandler(instance, wrapper.getName(), () -> wrapper.unsafeHandle(instance, deserializedOldValue, deserializedNewValue));
             }
         }
     }
@@ -243,84 +369,76 @@ public class DataManager {
     /**
      * Called when an entry is deleted from the database, but a remove handler will want this snapshot of the data later, when update handlers are called.
      */
-    public @Nullable UniqueData createSnapshotForCollectionRemoveHandlers(List<String> columnNames, String schema, String table, Object[] oldSerializedValues) {
-        Map<String, List<CollectionChangeHandlerWrapper<?, ?>>> handlersForTable = collectionChangeHandlers.get(schema + "." + table);
-        if (handlersForTable == null) {
-            return null;
-        }
-
-        for (Map.Entry<String, List<CollectionChangeHandlerWrapper<?, ?>>> entry : handlersForTable.entrySet()) {
-            List<CollectionChangeHandlerWrapper<?, ?>> handlers = entry.getValue();
-            for (CollectionChangeHandlerWrapper<?, ?> wrapper : handlers) {
-                PersistentCollectionMetadata collectionMetadata = wrapper.getCollectionMetadata();
-                Preconditions.checkNotNull(collectionMetadata, "Collection metadata not set for collection change handler");
-                if (wrapper.getType() != CollectionChangeHandlerWrapper.Type.REMOVE) {
-                    continue;
-                }
-
-                UniqueDataMetadata referencedMetadata;
+    public @Nullable UniqueData createSnapshotForCollectionRemoveHandlers(HandlerDispatchTable dispatchTable, Object[] oldSerializedValues) {
+        String schema = dispatchTable.schema();
+        String table = dispatchTable.table();
+        for (CollectionChangeHandlerWrapper<?, ?> wrapper : dispatchTable.collectionChangeHandlers()) {
+            PersistentCollectionMetadata collectionMetadata = wrapper.getCollectionMetadata();
+            Preconditions.checkNotNull(collectionMetadata, "Collection metadata not set for collection change handler");
+            if (wrapper.getType() != CollectionChangeHandlerWrapper.Type.REMOVE) {
+                continue;
+            }
 
-                if (collectionMetadata instanceof PersistentOneToManyCollectionMetadata oneToManyCollectionMetadata) {
-                    referencedMetadata = getMetadata(oneToManyCollectionMetadata.getReferencedType());
-                } else if (collectionMetadata instanceof PersistentManyToManyCollectionMetadata manyToManyCollectionMetadata) {
-                    referencedMetadata = getMetadata(manyToManyCollectionMetadata.getReferencedType());
+            UniqueDataMetadata referencedMetadata;
 
-                    if (!Objects.equals(schema, referencedMetadata.schema()) || !Objects.equals(table, referencedMetadata.table())) {
-                        continue; //don't need a snapshot if it wasn't the referenced object being deleted
-                    }
-                } else {
-                    continue;
-                }
+            if (collectionMetadata instanceof PersistentOneToManyCollectionMetadata oneToManyCollectionMetadata) {
+                referencedMetadata = getMetadata(oneToManyCollectionMetadata.getReferencedType());
+            } else if (collectionMetadata instanceof PersistentManyToManyCollectionMetadata manyToManyCollectionMetadata) {
+                referencedMetadata = getMetadata(manyToManyCollectionMetadata.getReferencedType());
 
-                ColumnValuePair[] idColumns = new ColumnValuePair[referencedMetadata.idColumns().size()];
-                for (ColumnMetadata idColumn : referencedMetadata.idColumns()) {
-                    Object serializedValue = oldSerializedValues[columnNames.indexOf(idColumn.name())];
-                    Object deserializedValue = deserialize(idColumn.type(), serializedValue);
-                    idColumns[referencedMetadata.idColumns().indexOf(idColumn)] = new ColumnValuePair(idColumn.name(), deserializedValue);
+                if (!Objects.equals(schema, referencedMetadata.schema()) || !Objects.equals(table, referencedMetadata.table())) {
+                    continue; //don't need a snapshot if it wasn't the referenced object being deleted
                 }
+            } else {
+                continue;
+            }
 
-                return createSnapshot(referencedMetadata.clazz(), new ColumnValuePairs(idColumns));
+            ColumnValuePair[] idColumns = new ColumnValuePair[referencedMetadata.idColumns().size()];
+            for (ColumnMetadata idColumn : referencedMetadata.idColumns()) {
+                Object serializedValue = oldSerializedValues[dispatchTable.ordinal(idColumn.name())];
+                Object deserializedValue = deserialize(idColumn.type(), serializedValue);
+                idColumns[referencedMetadata.idColumns().indexOf(idColumn)] = new ColumnValuePair(idColumn.name(), deserializedValue);
             }
+
+            return createSnapshot(referencedMetadata.clazz(), new ColumnValuePairs(idColumns));
         }
 
         return null;
     }
 
-    public void callCollectionChangeHandlers(List<String> columnNames, String schema, String table, List<String> changedColumns, Object[] oldSerializedValues, Object[] newSerializedValues, TriggerCause cause, @Nullable UniqueData snapshot) {
-        logger.trace("Calling collection change handlers for {}.{} on changed columns {} with old values {} and new values {}", schema, table, changedColumns, LazyArrayToString.of(oldSerializedValues), LazyArrayToString.of(newSerializedValues));
-        Map<String, List<CollectionChangeHandlerWrapper<?, ?>>> handlersForTable = collectionChangeHandlers.get(schema + "." + table);
-        if (handlersForTable == null) {
+    public void callCollectionChangeHandlers(HandlerDispatchTable dispatchTable, List<String> changedColumns, Object[] oldSerializedValues, Object[] newSerializedValues, TriggerCause cause, @Nullable UniqueData snapshot) {
+        if (dispatchTable.collectionChangeHandlers().isEmpty()) {
             return;
         }
+        String schema = dispatchTable.schema();
+        String table = dispatchTable.table();
+        logger.trace("Calling collection change handlers for {}.{} on changed columns {} with old values {} and new values {}", schema, table, changedColumns, LazyArrayToString.of(oldSerializedValues), LazyArrayToString.of(newSerializedValues));
 
-        for (Map.Entry<String, List<CollectionChangeHandlerWrapper<?, ?>>> entry : handlersForTable.entrySet()) {
-            List<CollectionChangeHandlerWrapper<?, ?>> handlers = entry.getValue();
-            for (CollectionChangeHandlerWrapper<?, ?> wrapper : handlers) {
-                PersistentCollectionMetadata collectionMetadata = wrapper.getCollectionMetadata();
-                Preconditions.checkNotNull(collectionMetadata, "Collection metadata not set for collection change handler");
-                switch (collectionMetadata) {
-                    case PersistentOneToManyCollectionMetadata oneToManyCollectionMetadata ->
-                            handleOneToManyCollectionChange(wrapper, oneToManyCollectionMetadata, columnNames, oldSerializedValues, newSerializedValues, cause, snapshot);
-                    case PersistentOneToManyValueCollectionMetadata oneToManyValueCollectionMetadata ->
-                            handleOneToManyValuedCollectionChange(wrapper, oneToManyValueCollectionMetadata, columnNames, oldSerializedValues, newSerializedValues);
-                    case PersistentManyToManyCollectionMetadata manyToManyCollectionMetadata ->
-                            handleManyToManyCollectionChange(wrapper, manyToManyCollectionMetadata, schema, table, columnNames, oldSerializedValues, newSerializedValues, cause, snapshot);
-                    default ->
-                            throw new IllegalStateException("Unknown collection metadata type: " + collectionMetadata.getClass().getName());
-                }
+        for (CollectionChangeHandlerWrapper<?, ?> wrapper : dispatchTable.collectionChangeHandlers()) {
+            PersistentCollectionMetadata collectionMetadata = wrapper.getCollectionMetadata();
+            Preconditions.checkNotNull(collectionMetadata, "Collection metadata not set for collection change handler");
+            switch (collectionMetadata) {
+                case PersistentOneToManyCollectionMetadata oneToManyCollectionMetadata ->
+                        handleOneToManyCollectionChange(wrapper, oneToManyCollectionMetadata, dispatchTable, oldSerializedValues, newSerializedValues, cause, snapshot);
+                case PersistentOneToManyValueCollectionMetadata oneToManyValueCollectionMetadata ->
+                        handleOneToManyValuedCollectionChange(wrapper, oneToManyValueCollectionMetadata, dispatchTable, oldSerializedValues, newSerializedValues);
+                case PersistentManyToManyCollectionMetadata manyToManyCollectionMetadata ->
+                        handleManyToManyCollectionChange(wrapper, manyToManyCollectionMetadata, schema, table, dispatchTable, oldSerializedValues, newSerializedValues, cause, snapshot);
+                default ->
+                        throw new IllegalStateException("Unknown collection metadata type: " + collectionMetadata.getClass().getName());
             }
         }
     }
 
-    private void handleOneToManyCollectionChange(CollectionChangeHandlerWrapper<?, ?> handler, PersistentOneToManyCollectionMetadata metadata, List<String> columnNames, Object[] oldSerializedValues, Object[] newSerializedValues, TriggerCause cause, @Nullable UniqueData snapshot) {
+    private void handleOneToManyCollectionChange(CollectionChangeHandlerWrapper<?, ?> handler, PersistentOneToManyCollectionMetadata metadata, HandlerDispatchTable dispatchTable, Object[] oldSerializedValues, Object[] newSerializedValues, TriggerCause cause, @Nullable UniqueData snapshot) {
         List<Link> links = metadata.getLinks();
         Object[] oldLinkValues = new Object[links.size()];
         Object[] newLinkValues = new Object[links.size()];
         boolean differenceFound = false;
         for (int i = 0; i < links.size(); i++) {
             Link link = links.get(i);
-            int columnIndex = columnNames.indexOf(link.columnInReferencedTable());
-            Preconditions.checkArgument(columnIndex != -1, "Column %s not found in provided name names %s", link.columnInReferencedTable(), columnNames);
+            int columnIndex = dispatchTable.ordinal(link.columnInReferencedTable());
+            Preconditions.checkArgument(columnIndex != -1, "Column %s not found in provided name names %s", link.columnInReferencedTable(), dispatchTable.columnNames());
             oldLinkValues[i] = oldSerializedValues[columnIndex];
             newLinkValues[i] = newSerializedValues[columnIndex];
             if (!Objects.equals(oldLinkValues[i], newLinkValues[i])) {
@@ -335,12 +453,12 @@ public class DataManager {
         UniqueDataMetadata referencedMetadata = getMetadata(metadata.getReferencedType());
         List<Object> newValues = new ArrayList<>();
         for (ColumnMetadata idColumn : referencedMetadata.idColumns()) {
-            int columnIndex = columnNames.indexOf(idColumn.name());
+            int columnIndex = dispatchTable.ordinal(idColumn.name());
             Object newDeserializedValue = deserialize(idColumn.type(), newSerializedValues[columnIndex]);
             newValues.add(newDeserializedValue);
         }
 
-        UniqueData instance = getInstanceForCollectionChangeHandler(metadata.getHolderClass(), links, columnNames, oldSerializedValues, newSerializedValues, handler.getType() == CollectionChangeHandlerWrapper.Type.ADD);
+        UniqueData instance = getInstanceForCollectionChangeHandler(metadata.getHolderClass(), links, dispatchTable, oldSerializedValues, newSerializedValues, handler.getType() == CollectionChangeHandlerWrapper.Type.ADD);
         if (instance == null) {
             return;
         }
@@ -353,7 +471,7 @@ public class DataManager {
                 oldInstance = snapshot;
             } else {
                 for (ColumnMetadata idColumn : referencedMetadata.idColumns()) {
-                    Object serializedValue = newValues.get(columnNames.indexOf(idColumn.name()));
+                    Object serializedValue = newValues.get(dispatchTable.ordinal(idColumn.name()));
                     Object deserializedValue = deserialize(idColumn.type(), serializedValue);
                     idColumns[referencedMetadata.idColumns().indexOf(idColumn)] = new ColumnValuePair(idColumn.name(), deserializedValue);
                 }
@@ -361,32 +479,32 @@ public class DataManager {
                 oldInstance = getInstance(referencedMetadata.clazz(), idColumns);
             }
             if (oldInstance != null) {
-                submitUpdateHandler(() -> handler.unsafeHandle(instance, oldInstance));
+                submitUpdateHandler(instance, handler.getName(), () -> handler.unsafeHandle(instance, oldInstance));
             }
         }
 
         if (handler.getType() == CollectionChangeHandlerWrapper.Type.ADD) {
             for (ColumnMetadata idColumn : referencedMetadata.idColumns()) {
-                Object serializedValue = newValues.get(columnNames.indexOf(idColumn.name()));
+                Object serializedValue = newValues.get(dispatchTable.ordinal(idColumn.name()));
                 Object deserializedValue = deserialize(idColumn.type(), serializedValue);
                 idColumns[referencedMetadata.idColumns().indexOf(idColumn)] = new ColumnValuePair(idColumn.name(), deserializedValue);
             }
             UniqueData newInstance = getInstance(referencedMetadata.clazz(), idColumns);
             if (newInstance != null) {
-                submitUpdateHandler(() -> handler.unsafeHandle(instance, newInstance));
+                submitUpdateHandler(instance, handler.getName(), () -> handler.unsafeHandle(instance, newInstance));
             }
         }
     }
 
-    private void handleOneToManyValuedCollectionChange(CollectionChangeHandlerWrapper<?, ?> handler, PersistentOneToManyValueCollectionMetadata metadata, List<String> columnNames, Object[] oldSerializedValues, Object[] newSerializedValues) {
+    private void handleOneToManyValuedCollectionChange(CollectionChangeHandlerWrapper<?, ?> handler, PersistentOneToManyValueCollectionMetadata metadata, HandlerDispatchTable dispatchTable, Object[] oldSerializedValues, Object[] newSerializedValues) {
         List<Link> links = metadata.getLinks();
         Object[] oldLinkValues = new Object[links.size()];
         Object[] newLinkValues = new Object[links.size()];
         boolean differenceFound = false;
         for (int i = 0; i < links.size(); i++) {
             Link link = links.get(i);
-            int columnIndex = columnNames.indexOf(link.columnInReferencedTable());
-            Preconditions.checkArgument(columnIndex != -1, "Column %s not found in provided name names %s", link.columnInReferencedTable(), columnNames);
+            int columnIndex = dispatchTable.ordinal(link.columnInReferencedTable());
+            Preconditions.checkArgument(columnIndex != -1, "Column %s not found in provided name names %s", link.columnInReferencedTable(), dispatchTable.columnNames());
             oldLinkValues[i] = oldSerializedValues[columnIndex];
             newLinkValues[i] = newSerializedValues[columnIndex];
             if (!Objects.equals(oldLinkValues[i], newLinkValues[i])) {
@@ -398,35 +516,35 @@ public class DataManager {
             return;
         }
 
-        UniqueData instance = getInstanceForCollectionChangeHandler(metadata.getHolderClass(), links, columnNames, oldSerializedValues, newSerializedValues, handler.getType() == CollectionChangeHandlerWrapper.Type.ADD);
+        UniqueData instance = getInstanceForCollectionChangeHandler(metadata.getHolderClass(), links, dispatchTable, oldSerializedValues, newSerializedValues, handler.getType() == CollectionChangeHandlerWrapper.Type.ADD);
 
         if (instance == null) {
             return;
         }
 
-        int columnIndex = columnNames.indexOf(metadata.getDataColumn());
+        int columnIndex = dispatchTable.ordinal(metadata.getDataColumn());
         if (handler.getType() == CollectionChangeHandlerWrapper.Type.REMOVE) {
             Object oldSerializedValue = oldSerializedValues[columnIndex];
             Object deserializedOldValue = deserialize(metadata.getDataType(), oldSerializedValue);
-            submitUpdateHandler(() -> handler.unsafeHandle(instance, deserializedOldValue));
+            submitUpdateHandler(instance, handler.getName(), () -> handler.unsafeHandle(instance, deserializedOldValue));
         }
 
         if (handler.getType() == CollectionChangeHandlerWrapper.Type.ADD) {
             Object newSerializedValue = newSerializedValues[columnIndex];
             Object deserializedNewValue = deserialize(metadata.getDataType(), newSerializedValue);
-            submitUpdateHandler(() -> handler.unsafeHandle(instance, deserializedNewValue));
+            submitUpdateHandler(instance, handler.getName(), () -> handler.unsafeHandle(instance, deserializedNewValue));
         }
     }
 
-    private void handleManyToManyCollectionChange(CollectionChangeHandlerWrapper<?, ?> handler, PersistentManyToManyCollectionMetadata metadata, String schema, String table, List<String> columnNames, Object[] oldSerializedValues, Object[] newSerializedValues, TriggerCause cause, @Nullable UniqueData snapshot) {
+    private void handleManyToManyCollectionChange(CollectionChangeHandlerWrapper<?, ?> handler, PersistentManyToManyCollectionMetadata metadata, String schema, String table, HandlerDispatchTable dispatchTable, Object[] oldSerializedValues, Object[] newSerializedValues, TriggerCause cause, @Nullable UniqueData snapshot) {
         List<Link> links = metadata.getJoinTableToReferencedTableLinks(this);
         Object[] oldLinkValues = new Object[links.size()];
         Object[] newLinkValues = new Object[links.size()];
         boolean differenceFound = false;
         for (int i = 0; i < links.size(); i++) {
             Link link = links.get(i);
-            int columnIndex = columnNames.indexOf(link.columnInReferringTable());
-            Preconditions.checkArgument(columnIndex != -1, "Column %s not found in provided name names %s", link.columnInReferringTable(), columnNames);
+            int columnIndex = dispatchTable.ordinal(link.columnInReferringTable());
+            Preconditions.checkArgument(columnIndex != -1, "Column %s not found in provided name names %s", link.columnInReferringTable(), dispatchTable.columnNames());
             oldLinkValues[i] = oldSerializedValues[columnIndex];
             newLinkValues[i] = newSerializedValues[columnIndex];
             if (!Objects.equals(oldLinkValues[i], newLinkValues[i])) {
@@ -465,7 +583,7 @@ public class DataManager {
                 }
             }
             Preconditions.checkNotNull(columnType, "Could not find column %s in referenced table %s.%s", columnInReferencedTable, referencedMetadata.schema(), referencedMetadata.table());
-            int columnIndex = columnNames.indexOf(columnInJoinTable);
+            int columnIndex = dispatchTable.ordinal(columnInJoinTable);
             Object oldDeserializedValue = deserialize(columnType, oldSerializedValues[columnIndex]);
             oldValues.add(oldDeserializedValue);
             Object newDeserializedValue = deserialize(columnType, newSerializedValues[columnIndex]);
@@ -474,7 +592,7 @@ public class DataManager {
 
         UniqueData instance = getInstanceForCollectionChangeHandler(metadata.getHolderClass(),
                 metadata.getJoinTableToDataTableLinks(this).stream().map(link -> new Link(link.columnInReferringTable(), link.columnInReferencedTable())).toList(), //reverse since the method expects the referenced table to be the join table
-                columnNames, oldSerializedValues, newSerializedValues, handler.getType() == CollectionChangeHandlerWrapper.Type.ADD);
+                dispatchTable, oldSerializedValues, newSerializedValues, handler.getType() == CollectionChangeHandlerWrapper.Type.ADD);
         if (instance == null) {
             return;
         }
@@ -501,7 +619,7 @@ public class DataManager {
             }
             if (oldInstance != null) {
                 UniqueData finalOldInstance = oldInstance;
-                submitUpdateHandler(() -> handler.unsafeHandle(instance, finalOldInstance));
+                submitUpdateHandler(instance, handler.getName(), () -> handler.unsafeHandle(instance, finalOldInstance));
             }
         }
 
@@ -515,7 +633,7 @@ public class DataManager {
                     }
                     UniqueData newInstance = getInstance(referencedMetadata.clazz(), idColumns);
                     if (newInstance != null) {
-                        submitUpdateHandler(() -> handler.unsafeHandle(instance, newInstance));
+                        submitUpdateHandler(instance, handler.getName(), () -> handler.unsafeHandle(instance, newInstance));
                     }
                 }
             } catch (SQLException e) {
@@ -524,7 +642,7 @@ public class DataManager {
         }
     }
 
-    private UniqueData getInstanceForCollectionChangeHandler(Class<? extends UniqueData> holderClass, List<Link> links, List<String> columnNames, Object[] oldSerializedValues, Object[] newSerializedValues, boolean useNewValues) {
+    private UniqueData getInstanceForCollectionChangeHandler(Class<? extends UniqueData> holderClass, List<Link> links, HandlerDispatchTable dispatchTable, Object[] oldSerializedValues, Object[] newSerializedValues, boolean useNewValues) {
         UniqueData instance = null;
         UniqueDataMetadata uniqueDataMetadata = getMetadata(holderClass);
         SQLTable uniqueDataTable = Objects.requireNonNull(this.sqlBuilder.getSchema(uniqueDataMetadata.schema())).getTable(uniqueDataMetadata.table());
@@ -539,8 +657,8 @@ public class DataManager {
         instanceSqlBuilder.append(" FROM \"").append(uniqueDataMetadata.schema()).append("\".\"").append(uniqueDataMetadata.table()).append("\" WHERE ");
         List<Object> instanceValues = new ArrayList<>();
         for (Link link : links) {
-            int columnIndex = columnNames.indexOf(link.columnInReferencedTable());
-            Preconditions.checkArgument(columnIndex != -1, "Column %s not found in provided name names %s", link.columnInReferencedTable(), columnNames);
+            int columnIndex = dispatchTable.ordinal(link.columnInReferencedTable());
+            Preconditions.checkArgument(columnIndex != -1, "Column %s not found in provided name names %s", link.columnInReferencedTable(), dispatchTable.columnNames());
             if (!instanceValues.isEmpty()) {
                 instanceSqlBuilder.append(" AND ");
             }
@@ -554,8 +672,8 @@ public class DataManager {
             }
             Preconditions.checkNotNull(valueType, "Could not find column %s in holder UniqueData class %s", link.columnInReferringTable(), uniqueDataMetadata.clazz().getName());
             Object deserializedValue = useNewValues
-                    ? deserialize(valueType, newSerializedValues[columnNames.indexOf(link.columnInReferencedTable())])
-                    : deserialize(valueType, oldSerializedValues[columnNames.indexOf(link.columnInReferencedTable())]);
+                    ? deserialize(valueType, newSerializedValues[dispatchTable.ordinal(link.columnInReferencedTable())])
+                    : deserialize(valueType, oldSerializedValues[dispatchTable.ordinal(link.columnInReferencedTable())]);
             instanceValues.add(deserializedValue);
         }
         try (ResultSet rs = dataAccessor.executeQuery(instanceSqlBuilder.toString(), instanceValues)) {
@@ -575,7 +693,7 @@ public class DataManager {
         return instance;
     }
 
-    private UniqueData getInstanceForReferenceUpdateHandler(ReferenceMetadata metadata, Class<? extends UniqueData> holderClass, List<String> columnNames, Object[] serializedValues) {
+    private UniqueData getInstanceForReferenceUpdateHandler(ReferenceMetadata metadata, Class<? extends UniqueData> holderClass, HandlerDispatchTable dispatchTable, Object[] serializedValues) {
         if (metadata.updateReferencedTable()) {
             UniqueDataMetadata holderMetadata = getMetadata(holderClass);
             SQLTable holderTable = Objects.requireNonNull(this.sqlBuilder.getSchema(holderMetadata.schema())).getTable(holderMetadata.table());
@@ -602,8 +720,8 @@ public class DataManager {
                     }
                 }
                 Preconditions.checkNotNull(valueType, "Could not find column %s in holder table %s.%s", link.columnInReferringTable(), holderMetadata.schema(), holderMetadata.table());
-                int columnIndex = columnNames.indexOf(link.columnInReferencedTable());
-                Preconditions.checkArgument(columnIndex != -1, "Column %s not found in provided column names %s", link.columnInReferencedTable(), columnNames);
+                int columnIndex = dispatchTable.ordinal(link.columnInReferencedTable());
+                Preconditions.checkArgument(columnIndex != -1, "Column %s not found in provided column names %s", link.columnInReferencedTable(), dispatchTable.columnNames());
                 Object deserializedValue = deserialize(valueType, serializedValues[columnIndex]);
                 values.add(deserializedValue);
             }
@@ -625,7 +743,7 @@ public class DataManager {
             UniqueDataMetadata uniqueDataMetadata = getMetadata(holderClass);
             ColumnValuePair[] idColumns = new ColumnValuePair[uniqueDataMetadata.idColumns().size()];
             for (ColumnMetadata idColumn : uniqueDataMetadata.idColumns()) {
-                int columnIndex = columnNames.indexOf(idColumn.name());
+                int columnIndex = dispatchTable.ordinal(idColumn.name());
                 Object serializedValue = serializedValues[columnIndex];
                 Object deserializedValue = deserialize(idColumn.type(), serializedValue);
                 idColumns[uniqueDataMetadata.idColumns().indexOf(idColumn)] = new ColumnValuePair(idColumn.name(), deserializedValue);
@@ -634,163 +752,287 @@ public class DataManager {
         }
     }
 
-    public void callReferenceUpdateHandlers(List<String> columnNames, String schema, String table, List<String> changedColumns, Object[] oldSerializedValues, Object[] newSerializedValues, TriggerCause cause) {
-        logger.trace("Calling reference update handlers for {}.{} on changed columns {} with old values {} and new values {}", schema, table, changedColumns, LazyArrayToString.of(oldSerializedValues), LazyArrayToString.of(newSerializedValues));
-        Map<String, List<ReferenceUpdateHandlerWrapper<?, ?>>> handlersForTable = referenceUpdateHandlers.get(schema + "." + table);
-        if (handlersForTable == null) {
+    public void callReferenceUpdateHandlers(HandlerDispatchTable dispatchTable, List<String> changedColumns, Object[] oldSerializedValues, Object[] newSerializedValues, TriggerCause cause) {
+        if (dispatchTable.referenceUpdateHandlers().isEmpty()) {
             return;
         }
-
-        for (Map.Entry<String, List<ReferenceUpdateHandlerWrapper<?, ?>>> entry : handlersForTable.entrySet()) {
-            List<ReferenceUpdateHandlerWrapper<?, ?>> handlers = entry.getValue();
-            for (ReferenceUpdateHandlerWrapper<?, ?> wrapper : handlers) {
-
-                ReferenceMetadata metadata = wrapper.getReferenceMetadata();
-                List<Link> links = metadata.links();
-                Object[] oldLinkValues = new Object[links.size()];
-                Object[] newLinkValues = new Object[links.size()];
-                if (cause == TriggerCause.UPDATE) {
-                    boolean differenceFound = false;
-                    for (int i = 0; i < links.size(); i++) {
-                        Link link = links.get(i);
-                        int columnIndex = metadata.updateReferencedTable() ? columnNames.indexOf(link.columnInReferencedTable()) : columnNames.indexOf(link.columnInReferringTable());
-                        Preconditions.checkArgument(columnIndex != -1, "Column %s not found in provided name names %s", link.columnInReferringTable(), columnNames);
-                        oldLinkValues[i] = oldSerializedValues[columnIndex];
-                        newLinkValues[i] = newSerializedValues[columnIndex];
-                        if (!Objects.equals(oldLinkValues[i], newLinkValues[i])) {
-                            differenceFound = true;
-                        }
+        logger.trace("Calling reference update handlers for {}.{} on changed columns {} with old values {} and new values {}", dispatchTable.schema(), dispatchTable.table(), changedColumns, LazyArrayToString.of(oldSerializedValues), LazyArrayToString.of(newSerializedValues));
+
+        for (ReferenceUpdateHandlerWrapper<?, ?> wrapper : dispatchTable.referenceUpdateHandlers()) {
+            ReferenceMetadata metadata = wrapper.getReferenceMetadata();
+            List<Link> links = metadata.links();
+            Object[] oldLinkValues = new Object[links.size()];
+            Object[] newLinkValues = new Object[links.size()];
+            if (cause == TriggerCause.UPDATE) {
+                boolean differenceFound = false;
+                for (int i = 0; i < links.size(); i++) {
+                    Link link = links.get(i);
+                    int columnIndex = metadata.updateReferencedTable() ? dispatchTable.ordinal(link.columnInReferencedTable()) : dispatchTable.ordinal(link.columnInReferringTable());
+                    Preconditions.checkArgument(columnIndex != -1, "Column %s not found in provided name names %s", link.columnInReferringTable(), dispatchTable.columnNames());
+                    oldLinkValues[i] = oldSerializedValues[columnIndex];
+                    newLinkValues[i] = newSerializedValues[columnIndex];
+                    if (!Objects.equals(oldLinkValues[i], newLinkValues[i])) {
+                        differenceFound = true;
                     }
+                }
 
-                    if (!differenceFound) {
-                        continue;
-                    }
+                if (!differenceFound) {
+                    continue;
                 }
+            }
 
-                UniqueDataMetadata referencedMetadata = getMetadata(metadata.referencedClass());
+            UniqueDataMetadata referencedMetadata = getMetadata(metadata.referencedClass());
 
-                if (metadata.updateReferencedTable()) {
-                    ColumnValuePair[] idColumns = new ColumnValuePair[referencedMetadata.idColumns().size()];
-                    for (ColumnMetadata idColumn : referencedMetadata.idColumns()) {
-                        int columnIndex = columnNames.indexOf(idColumn.name());
-                        Object serializedValue = cause == TriggerCause.DELETE ? oldSerializedValues[columnIndex] : newSerializedValues[columnIndex];
-                        Object deserializedValue = deserialize(idColumn.type(), serializedValue);
-                        idColumns[referencedMetadata.idColumns().indexOf(idColumn)] = new ColumnValuePair(idColumn.name(), deserializedValue);
-                    }
-                    UniqueData referenced = getInstance(referencedMetadata.clazz(), idColumns);
-                    assert referenced != null;
-
-                    if (cause == TriggerCause.INSERT) {
-                        UniqueData instance = getInstanceForReferenceUpdateHandler(metadata, metadata.holderClass(), columnNames, newSerializedValues);
-                        if (instance != null) {
-                            submitUpdateHandler(() -> wrapper.unsafeHandle(instance, null, referenced));
-                        }
+            if (metadata.updateReferencedTable()) {
+                ColumnValuePair[] idColumns = new ColumnValuePair[referencedMetadata.idColumns().size()];
+                for (ColumnMetadata idColumn : referencedMetadata.idColumns()) {
+                    int columnIndex = dispatchTable.ordinal(idColumn.name());
+                    Object serializedValue = cause == TriggerCause.DELETE ? oldSerializedValues[columnIndex] : newSerializedValues[columnIndex];
+                    Object deserializedValue = deserialize(idColumn.type(), serializedValue);
+                    idColumns[referencedMetadata.idColumns().indexOf(idColumn)] = new ColumnValuePair(idColumn.name(), deserializedValue);
+                }
+                UniqueData referenced = getInstance(referencedMetadata.clazz(), idColumns);
+                assert referenced != null;
 
-                    } else if (cause == TriggerCause.DELETE) {
-                        UniqueData instance = getInstanceForReferenceUpdateHandler(metadata, metadata.holderClass(), columnNames, oldSerializedValues);
-                        if (instance != null) {
-                            submitUpdateHandler(() -> wrapper.unsafeHandle(instance, referenced, null));
-                        }
-                    } else if (cause == TriggerCause.UPDATE) {
-                        UniqueData oldHolder = getInstanceForReferenceUpdateHandler(metadata, metadata.holderClass(), columnNames, oldSerializedValues);
-                        UniqueData newHolder = getInstanceForReferenceUpdateHandler(metadata, metadata.holderClass(), columnNames, newSerializedValues);
+                if (cause == TriggerCause.INSERT) {
+                    UniqueData instance = getInstanceForReferenceUpdateHandler(metadata, metadata.holderClass(), dispatchTable, newSerializedValues);
+                    if (instance != null) {
+                        submitUpdateHandler(instance, wrapper.getName(), () -> wrapper.unsafeHandle(instance, null, referenced));
+                    }
 
-                        if (oldHolder != null) {
-                            submitUpdateHandler(() -> wrapper.unsafeHandle(oldHolder, referenced, null));
-                        }
-                        if (newHolder != null) {
-                            submitUpdateHandler(() -> wrapper.unsafeHandle(newHolder, null, referenced));
-                        }
-                        return;
-                    } else {
-                        throw new IllegalArgumentException("Unknown trigger cause: " + cause);
+                } else if (cause == TriggerCause.DELETE) {
+                    UniqueData instance = getInstanceForReferenceUpdateHandler(metadata, metadata.holderClass(), dispatchTable, oldSerializedValues);
+                    if (instance != null) {
+                        submitUpdateHandler(instance, wrapper.getName(), () -> wrapper.unsafeHandle(instance, referenced, null));
                     }
                 } else if (cause == TriggerCause.UPDATE) {
-                    SQLTable referencedTable = Objects.requireNonNull(this.sqlBuilder.getSchema(referencedMetadata.schema())).getTable(referencedMetadata.table());
-                    Preconditions.checkNotNull(referencedTable, "Referenced table %s.%s not found", referencedMetadata.schema(), referencedMetadata.table());
+                    UniqueData oldHolder = getInstanceForReferenceUpdateHandler(metadata, metadata.holderClass(), dispatchTable, oldSerializedValues);
+                    UniqueData newHolder = getInstanceForReferenceUpdateHandler(metadata, metadata.holderClass(), dispatchTable, newSerializedValues);
 
-                    UniqueData instance = getInstanceForReferenceUpdateHandler(metadata, metadata.holderClass(), columnNames, newSerializedValues);
-                    if (instance == null) {
-                        continue;
+                    if (oldHolder != null) {
+                        submitUpdateHandler(oldHolder, wrapper.getName(), () -> wrapper.unsafeHandle(oldHolder, referenced, null));
+                    }
+                    if (newHolder != null) {
+                        submitUpdateHandler(newHolder, wrapper.getName(), () -> wrapper.unsafeHandle(newHolder, null, referenced));
                     }
+                    return;
+                } else {
+                    throw new IllegalArgumentException("Unknown trigger cause: " + cause);
+                }
+            } else if (cause == TriggerCause.UPDATE) {
+                SQLTable referencedTable = Objects.requireNonNull(this.sqlBuilder.getSchema(referencedMetadata.schema())).getTable(referencedMetadata.table());
+                Preconditions.checkNotNull(referencedTable, "Referenced table %s.%s not found", referencedMetadata.schema(), referencedMetadata.table());
 
-                    StringBuilder sqlBuilder = new StringBuilder();
-                    sqlBuilder.append("SELECT ");
-                    for (ColumnMetadata idColumn : referencedMetadata.idColumns()) {
-                        sqlBuilder.append("\"").append(idColumn.name()).append("\", ");
+                UniqueData instance = getInstanceForReferenceUpdateHandler(metadata, metadata.holderClass(), dispatchTable, newSerializedValues);
+                if (instance == null) {
+                    continue;
+                }
+
+                StringBuilder sqlBuilder = new StringBuilder();
+                sqlBuilder.append("SELECT ");
+                for (ColumnMetadata idColumn : referencedMetadata.idColumns()) {
+                    sqlBuilder.append("\"").append(idColumn.name()).append("\", ");
+                }
+                sqlBuilder.setLength(sqlBuilder.length() - 2);
+                sqlBuilder.append(" FROM \"").append(referencedMetadata.schema()).append("\".\"").append(referencedMetadata.table()).append("\" WHERE ");
+                List<Object> oldValues = new ArrayList<>();
+                List<Object> newValues = new ArrayList<>();
+                for (Link link : metadata.links()) {
+                    if (!oldValues.isEmpty()) {
+                        sqlBuilder.append(" AND ");
                     }
-                    sqlBuilder.setLength(sqlBuilder.length() - 2);
-                    sqlBuilder.append(" FROM \"").append(referencedMetadata.schema()).append("\".\"").append(referencedMetadata.table()).append("\" WHERE ");
-                    List<Object> oldValues = new ArrayList<>();
-                    List<Object> newValues = new ArrayList<>();
-                    for (Link link : metadata.links()) {
-                        if (!oldValues.isEmpty()) {
-                            sqlBuilder.append(" AND ");
-                        }
-                        sqlBuilder.append("\"").append(link.columnInReferencedTable()).append("\" = ? ");
-                        Class<?> columnType = null;
-                        for (SQLColumn column : referencedTable.getColumns()) {
-                            if (column.getName().equals(link.columnInReferencedTable())) {
-                                columnType = column.getType();
-                                break;
-                            }
+                    sqlBuilder.append("\"").append(link.columnInReferencedTable()).append("\" = ? ");
+                    Class<?> columnType = null;
+                    for (SQLColumn column : referencedTable.getColumns()) {
+                        if (column.getName().equals(link.columnInReferencedTable())) {
+                            columnType = column.getType();
+                            break;
                         }
-                        Preconditions.checkNotNull(columnType, "Could not find column %s in referenced table %s.%s", link.columnInReferencedTable(), referencedMetadata.schema(), referencedMetadata.table());
-                        int columnIndex = columnNames.indexOf(link.columnInReferringTable());
-                        Object oldDeserializedValue = deserialize(columnType, oldSerializedValues[columnIndex]);
-                        oldValues.add(oldDeserializedValue);
-                        Object newDeserializedValue = deserialize(columnType, newSerializedValues[columnIndex]);
-                        newValues.add(newDeserializedValue);
                     }
+                    Preconditions.checkNotNull(columnType, "Could not find column %s in referenced table %s.%s", link.columnInReferencedTable(), referencedMetadata.schema(), referencedMetadata.table());
+                    int columnIndex = dispatchTable.ordinal(link.columnInReferringTable());
+                    Object oldDeserializedValue = deserialize(columnType, oldSerializedValues[columnIndex]);
+                    oldValues.add(oldDeserializedValue);
+                    Object newDeserializedValue = deserialize(columnType, newSerializedValues[columnIndex]);
+                    newValues.add(newDeserializedValue);
+                }
 
 
-                    UniqueData oldInstance = null;
-                    UniqueData newInstance = null;
-                    try (ResultSet rs = dataAccessor.executeQuery(sqlBuilder.toString(), oldValues)) {
-                        if (rs.next()) {
-                            ColumnValuePair[] idColumns = new ColumnValuePair[referencedMetadata.idColumns().size()];
-                            for (ColumnMetadata idColumn : referencedMetadata.idColumns()) {
-                                Object serializedValue = rs.getObject(idColumn.name());
-                                Object deserializedValue = deserialize(idColumn.type(), serializedValue);
-                                idColumns[referencedMetadata.idColumns().indexOf(idColumn)] = new ColumnValuePair(idColumn.name(), deserializedValue);
-                            }
-                            oldInstance = getInstance(referencedMetadata.clazz(), idColumns);
+                UniqueData oldInstance = null;
+                UniqueData newInstance = null;
+                try (ResultSet rs = dataAccessor.executeQuery(sqlBuilder.toString(), oldValues)) {
+                    if (rs.next()) {
+                        ColumnValuePair[] idColumns = new ColumnValuePair[referencedMetadata.idColumns().size()];
+                        for (ColumnMetadata idColumn : referencedMetadata.idColumns()) {
+                            Object serializedValue = rs.getObject(idColumn.name());
+                            Object deserializedValue = deserialize(idColumn.type(), serializedValue);
+                            idColumns[referencedMetadata.idColumns().indexOf(idColumn)] = new ColumnValuePair(idColumn.name(), deserializedValue);
                         }
-                    } catch (SQLException e) {
-                        throw new RuntimeException(e);
+                        oldInstance = getInstance(referencedMetadata.clazz(), idColumns);
                     }
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
 
-                    try (ResultSet rs = dataAccessor.executeQuery(sqlBuilder.toString(), newValues)) {
-                        if (rs.next()) {
-                            ColumnValuePair[] idColumns = new ColumnValuePair[referencedMetadata.idColumns().size()];
-                            for (ColumnMetadata idColumn : referencedMetadata.idColumns()) {
-                                Object serializedValue = rs.getObject(idColumn.name());
-                                Object deserializedValue = deserialize(idColumn.type(), serializedValue);
-                                idColumns[referencedMetadata.idColumns().indexOf(idColumn)] = new ColumnValuePair(idColumn.name(), deserializedValue);
-                            }
-                            newInstance = getInstance(referencedMetadata.clazz(), idColumns);
+                try (ResultSet rs = dataAccessor.executeQuery(sqlBuilder.toString(), newValues)) {
+                    if (rs.next()) {
+                        ColumnValuePair[] idColumns = new ColumnValuePair[referencedMetadata.idColumns().size()];
+                        for (ColumnMetadata idColumn : referencedMetadata.idColumns()) {
+                            Object serializedValue = rs.getObject(idColumn.name());
+                            Object deserializedValue = deserialize(idColumn.type(), serializedValue);
+                            idColumns[referencedMetadata.idColumns().indexOf(idColumn)] = new ColumnValuePair(idColumn.name(), deserializedValue);
                         }
-                    } catch (SQLException e) {
-                        throw new RuntimeException(e);
+                        newInstance = getInstance(referencedMetadata.clazz(), idColumns);
                     }
-
-                    UniqueData finalOldInstance = oldInstance;
-                    UniqueData finalNewInstance = newInstance;
-                    submitUpdateHandler(() -> wrapper.unsafeHandle(instance, finalOldInstance, finalNewInstance));
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
                 }
+
+                UniqueData finalOldInstance = oldInstance;
+                UniqueData finalNewInstance = newInstance;
+                submitUpdateHandler(instance, wrapper.getName(), () -> wrapper.unsafeHandle(instance, finalOldInstance, finalNewInstance));
             }
         }
     }
 
-    private void submitUpdateHandler(Runnable runnable) {
-        updateHandlerExecutor.accept(runnable);
+    private <U extends UniqueData, T> void addBatchUpdate(BatchValueUpdateHandlerWrapper<U, T> wrapper, UniqueData instance, Object oldValue, Object newValue) {
+        if (!wrapper.add(instance, oldValue, newValue)) {
+            return; // a flush is already scheduled for this batch
+        }
+        CompletableFuture.delayedExecutor(wrapper.getWindowMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+            List<BatchedValueUpdate<U, T>> updates = wrapper.drain();
+            if (!updates.isEmpty()) {
+                submitUpdateHandler(wrapper, wrapper.getName(), () -> wrapper.handleBatch(updates));
+            }
+        });
+    }
+
+    private void submitUpdateHandler(@Nullable Object key, String handlerName, Runnable handler) {
+        Runnable runnable = handlerLatencyTracker.track(handlerName, handler);
+        try {
+            if (key != null && updateHandlerExecutor instanceof StripedExecutor stripedExecutor) {
+                // keep handlers for the same key in commit order
+                stripedExecutor.execute(key, runnable);
+                return;
+            }
+            updateHandlerExecutor.accept(runnable);
+        } catch (RuntimeException e) {
+            handlerLatencyTracker.rejected();
+            throw e;
+        }
     }
 
-    public void registerPersistentValueUpdateHandlers(PersistentValueMetadata metadata, Collection<ValueUpdateHandlerWrapper<?, ?>> handlers) {
+    public void registerLiveQuery(LiveQuery<?> liveQuery) {
+        for (SchemaTable dependency : liveQuery.getDependencies()) {
+            liveQueries.computeIfAbsent(dependency, k -> ConcurrentHashMap.newKeySet()).add(liveQuery);
+        }
+    }
+
+    public void unregisterLiveQuery(LiveQuery<?> liveQuery) {
+        for (SchemaTable dependency : liveQuery.getDependencies()) {
+            liveQueries.computeIfPresent(dependency, (k, queries) -> {
+                queries.remove(liveQuery);
+                return queries.isEmpty() ? null : queries;
+            });
+        }
+    }
+
+    public void callLiveQueries(List<String> columnNames, String schema, String table, @Nullable Object[] oldSerializedValues, @Nullable Object[] newSerializedValues) {
+        Set<LiveQuery<?>> queries = liveQueries.get(new SchemaTable(schema, table));
+        if (queries == null || queries.isEmpty()) {
+            return;
+        }
+        List<String> columns = List.copyOf(columnNames);
+        for (LiveQuery<?> liveQuery : queries) {
+            submitUpdateHandler(liveQuery, "LiveQuery(" + liveQuery.getType().getSimpleName() + ")", () -> liveQuery.handleRowChange(schema, table, columns, oldSerializedValues, newSerializedValues));
+        }
+    }
+
+    /**
+     * Get a stream of every committed change to the rows of a UniqueData class.
+     * Each subscriber receives changes as it requests them, from its own buffer, so publishing never blocks the thread which committed the change.
+     * A subscriber which falls more than {@value #CHANGE_BUFFER_SIZE} changes behind misses the changes which do not fit in its buffer.
+     *
+     * @param clazz the UniqueData class
+     * @param <T>   the type of UniqueData
+     * @return a publisher of row changes
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends UniqueData> Flow.Publisher<RowChange<T>> changes(Class<T> clazz) {
+        UniqueDataMetadata metadata = getMetadata(clazz);
+        return (Flow.Publisher<RowChange<T>>) (Flow.Publisher<?>) changePublishers.computeIfAbsent(new SchemaTable(metadata.schema(), metadata.table()), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(clazz, k -> new RowChangePublisher<>(rowChangeConversionExecutor, changeExecutor, CHANGE_BUFFER_SIZE,
+                        (columnNames, oldRow, newRow) -> createRowChange(clazz, columnNames, oldRow, newRow), this::onRowChangeDropped));
+    }
+
+    public void publishRowChange(List<String> columnNames, String schema, String table, @Nullable Object[] oldSerializedValues, @Nullable Object[] newSerializedValues) {
+        Map<Class<? extends UniqueData>, RowChangePublisher<?>> publishers = changePublishers.get(new SchemaTable(schema, table));
+        if (publishers == null) {
+            return;
+        }
+        List<String> columns = List.copyOf(columnNames);
+        for (RowChangePublisher<?> publisher : publishers.values()) {
+            publisher.publish(columns, oldSerializedValues, newSerializedValues);
+        }
+    }
+
+    private void onRowChangeDropped() {
+        long dropped = droppedRowChanges.incrementAndGet();
+        long now = System.nanoTime();
+        long last = lastDroppedRowChangeWarning.get();
+        if ((last == 0 || now - last >= TimeUnit.MINUTES.toNanos(1)) && lastDroppedRowChangeWarning.compareAndSet(last, now)) {
+            logger.warn("Dropped row changes for subscribers which are too far behind, {} dropped so far", dropped);
+        }
+    }
+
+    private <T extends UniqueData> @Nullable RowChange<T> createRowChange(Class<T> clazz, List<String> columnNames, @Nullable Object[] oldSerializedValues, @Nullable Object[] newSerializedValues) {
+        TriggerCause cause = oldSerializedValues == null ? TriggerCause.INSERT : newSerializedValues == null ? TriggerCause.DELETE : TriggerCause.UPDATE;
+        Object[] idSource = newSerializedValues != null ? newSerializedValues : oldSerializedValues;
+        if (idSource == null) {
+            return null;
+        }
+        UniqueDataMetadata metadata = getMetadata(clazz);
+        ColumnValuePair[] idColumns = new ColumnValuePair[metadata.idColumns().size()];
+        for (int i = 0; i < idColumns.length; i++) {
+            String idColumn = metadata.idColumns().get(i).name();
+            int columnIndex = columnNames.indexOf(idColumn);
+            if (columnIndex == -1 || idSource[columnIndex] == null) {
+                return null;
+            }
+            idColumns[i] = new ColumnValuePair(idColumn, idSource[columnIndex]);
+        }
+
+        Map<String, Object> oldValues = new LinkedHashMap<>();
+        Map<String, Object> newValues = new LinkedHashMap<>();
+        Set<String> changedColumns = new LinkedHashSet<>();
+        for (int i = 0; i < columnNames.size(); i++) {
+            Object oldValue = oldSerializedValues != null ? oldSerializedValues[i] : null;
+            Object newValue = newSerializedValues != null ? newSerializedValues[i] : null;
+            if (oldSerializedValues != null) {
+                oldValues.put(columnNames.get(i), oldValue);
+            }
+            if (newSerializedValues != null) {
+                newValues.put(columnNames.get(i), newValue);
+            }
+            if (cause != TriggerCause.UPDATE || !Objects.equals(oldValue, newValue)) {
+                changedColumns.add(columnNames.get(i));
+            }
+        }
+
+        T instance = cause == TriggerCause.DELETE ? null : getInstance(clazz, idColumns);
+        return new RowChange<>(clazz, cause, new ColumnValuePairs(idColumns), instance, Collections.unmodifiableMap(oldValues), Collections.unmodifiableMap(newValues), Collections.unmodifiableSet(changedColumns));
+    }
+
+    public void registerPersistentValueUpdateHandlers(PersistentValueMetadata metadata, Collection<ValueUpdateHandlerWrapper<?, ?>> handlers, Collection<BatchValueUpdateHandlerWrapper<?, ?>> batchHandlers) {
         if (registeredUpdateHandlersForColumns.add(metadata)) {
             for (ValueUpdateHandlerWrapper<?, ?> handler : handlers) {
+                handler.setName(handler.getHolderClass().getSimpleName() + "." + metadata.getColumn());
                 addUpdateHandler(metadata.getSchema(), metadata.getTable(), metadata.getColumn(), handler);
             }
+            for (BatchValueUpdateHandlerWrapper<?, ?> handler : batchHandlers) {
+                handler.setName(handler.getHolderClass().getSimpleName() + "." + metadata.getColumn() + "(batch)");
+                addBatchUpdateHandler(metadata.getSchema(), metadata.getTable(), metadata.getColumn(), handler);
+            }
         }
     }
 
@@ -799,6 +1041,7 @@ public class DataManager {
             UniqueDataMetadata holderMetadata = getMetadata(metadata.holderClass());
             String partialKey = RedisUtils.buildPartialRedisKey(metadata.holderSchema(), metadata.holderTable(), metadata.identifier(), holderMetadata.idColumns());
             for (CachedValueUpdateHandlerWrapper<?, ?> handler : handlers) {
+                handler.setName(handler.getHolderClass().getSimpleName() + "." + metadata.identifier());
                 addRedisUpdateHandler(partialKey, handler);
             }
         }
@@ -806,7 +1049,10 @@ public class DataManager {
 
     public void registerCollectionChangeHandlers(PersistentCollectionMetadata metadata, Collection<CollectionChangeHandlerWrapper<?, ?>> handlers) {
         if (registeredChangeHandlersForCollection.add(metadata)) {
-            handlers.forEach(h -> h.setCollectionMetadata(metadata));
+            handlers.forEach(h -> {
+                h.setCollectionMetadata(metadata);
+                h.setName(metadata.getHolderClass().getSimpleName() + (h.getType() == CollectionChangeHandlerWrapper.Type.ADD ? ".onAdd(" : ".onRemove(") + h.getDataType().getSimpleName() + ")");
+            });
             String key = switch (metadata) {
                 case PersistentOneToManyCollectionMetadata oneToManyCollectionMetadata -> {
                     UniqueDataMetadata referencedMetadata = getMetadata(oneToManyCollectionMetadata.getReferencedType());
@@ -822,12 +1068,16 @@ public class DataManager {
             collectionChangeHandlers.computeIfAbsent(key, k -> new ConcurrentHashMap<>())
                     .computeIfAbsent(metadata.getHolderClass().getName(), k -> new CopyOnWriteArrayList<>())
                     .addAll(handlers);
+            handlerGeneration.incrementAndGet();
         }
     }
 
     public void registerReferenceUpdateHandlers(ReferenceMetadata metadata, Collection<ReferenceUpdateHandlerWrapper<?, ?>> handlers) {
         if (registeredUpdateHandlersForReference.add(metadata)) {
-            handlers.forEach(h -> h.setReferenceMetadata(metadata));
+            handlers.forEach(h -> {
+                h.setReferenceMetadata(metadata);
+                h.setName(metadata.holderClass().getSimpleName() + ".onUpdate(" + metadata.referencedClass().getSimpleName() + ")");
+            });
             UniqueDataMetadata holderMetadata = getMetadata(metadata.holderClass());
             String schema, table;
             if (metadata.updateReferencedTable()) {
@@ -844,6 +1094,7 @@ public class DataManager {
                         .computeIfAbsent(holderMetadata.clazz().getName(), k -> new CopyOnWriteArrayList<>())
                         .add(handler);
             }
+            handlerGeneration.incrementAndGet();
         }
     }
 
@@ -863,6 +1114,13 @@ public class DataManager {
         Preconditions.checkState(!finishedLoading, "finishLoading() has already been called");
 
         finishedLoading = true;
+        for (DDLStatement ddl : sqlBuilder.getStaleIndexDrops()) {
+            try {
+                dataAccessor.runDDL(ddl);
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
         dataAccessor.resync();
     }
 
@@ -1070,6 +1328,22 @@ public class DataManager {
     }
 
     public <T extends UniqueData> List<T> query(Class<T> clazz, String where, List<Object> values) {
+        return query(clazz, where, values, null);
+    }
+
+    /**
+     * Query for instances of the given class.
+     * If cache dependencies are provided, the matching ids are cached until any row in any of those tables changes.
+     *
+     * @param clazz             the UniqueData class
+     * @param where             the SQL to append after the FROM clause
+     * @param values            the parameters for the where clause
+     * @param cacheDependencies the tables the result depends on, or null to skip the query cache
+     * @param <T>               the type of UniqueData
+     * @return the matching instances
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends UniqueData> List<T> query(Class<T> clazz, String where, List<Object> values, @Nullable Set<SchemaTable> cacheDependencies) {
         UniqueDataMetadata metadata = getMetadata(clazz);
         Preconditions.checkNotNull(metadata, "UniqueData class %s has not been parsed yet", clazz.getName());
 
@@ -1078,76 +1352,281 @@ public class DataManager {
             serializedValues.add(serialize(value));
         }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("SELECT ");
-        for (ColumnMetadata idColumn : metadata.idColumns()) {
-            sb.append("\"").append(idColumn.name()).append("\", ");
+        @Language("SQL") String sql = buildSelectIdsSql(metadata, where);
+
+        SelectQuery cacheQuery = null;
+        long queryCacheGeneration = queryCache.getGeneration();
+        if (cacheDependencies != null && !serializedValues.contains(null)) {
+            cacheQuery = new SelectQuery("DataManager#query", sql, serializedValues);
+            ReadCacheResult cached = queryCache.get(cacheQuery);
+            if (cached != null) {
+                return materialize(clazz, metadata, (List<ColumnValuePairs>) cached.getValue(), getRelationCacheGeneration());
+            }
         }
-        sb.setLength(sb.length() - 2);
-        sb.append(" FROM \"").append(metadata.schema()).append("\".\"").append(metadata.table()).append("\" ");
-        sb.append(where);
-        @Language("SQL") String sql = sb.toString();
-        List<T> results = new ArrayList<>();
+
+        List<ColumnValuePairs> rows = new ArrayList<>();
+        long generation = getRelationCacheGeneration();
         try (ResultSet rs = dataAccessor.executeQuery(sql, serializedValues)) {
             while (rs.next()) {
-                ColumnValuePair[] idColumns = new ColumnValuePair[metadata.idColumns().size()];
-                for (int i = 0; i < metadata.idColumns().size(); i++) {
-                    ColumnMetadata idColumn = metadata.idColumns().get(i);
-                    Object value = rs.getObject(idColumn.name());
-                    idColumns[i] = new ColumnValuePair(idColumn.name(), value);
-                }
-                T instance = getInstance(clazz, idColumns);
-                if (instance != null) {
-                    results.add(instance);
-                }
+                rows.add(readIdColumns(rs, metadata));
             }
-            return results;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
-    }
 
-    public <T extends UniqueData> T getInstance(Class<T> clazz, ColumnValuePair... idColumnValues) {
-        return getInstance(clazz, new ColumnValuePairs(idColumnValues));
+        if (cacheQuery != null) {
+            Set<Cell> dependencies = new HashSet<>();
+            for (SchemaTable schemaTable : cacheDependencies) {
+                dependencies.add(Cell.wholeTable(schemaTable.schema(), schemaTable.table()));
+            }
+            queryCache.put(cacheQuery, new ReadCacheResult(List.copyOf(rows), dependencies), queryCacheGeneration);
+        }
+
+        return materialize(clazz, metadata, rows, generation);
     }
 
-    @SuppressWarnings("unchecked")
-    public <T extends UniqueData> T getInstance(Class<T> clazz, @NotNull ColumnValuePairs idColumns) {
+    /**
+     * Lazily query for instances of the given class.
+     * Rows are read from a lazily executed cursor {@code fetchSize} at a time, and instances are only created for the current batch.
+     * The returned stream holds a database cursor, so it should be closed, e.g. with try-with-resources.
+     *
+     * @param clazz     the UniqueData class
+     * @param where     the SQL to append after the FROM clause
+     * @param values    the parameters for the where clause
+     * @param fetchSize how many rows to read and materialize at a time
+     * @param <T>       the type of UniqueData
+     * @return a stream of the matching instances
+     */
+    public <T extends UniqueData> Stream<T> stream(Class<T> clazz, String where, List<Object> values, int fetchSize) {
+        Preconditions.checkArgument(fetchSize > 0, "Fetch size must be positive");
         UniqueDataMetadata metadata = getMetadata(clazz);
         Preconditions.checkNotNull(metadata, "UniqueData class %s has not been parsed yet", clazz.getName());
-        boolean hasAllIdColumns = true;
-        for (ColumnMetadata idColumn : metadata.idColumns()) {
-            boolean found = false;
-            for (ColumnValuePair providedIdColumn : idColumns) {
-                if (idColumn.name().equals(providedIdColumn.column())) {
-                    found = true;
-                    break;
+
+        List<Object> serializedValues = new ArrayList<>();
+        for (Object value : values) {
+            serializedValues.add(serialize(value));
+        }
+
+        @Language("SQL") String sql = buildSelectIdsSql(metadata, where);
+        long generation = getRelationCacheGeneration();
+        ResultSet rs;
+        try {
+            rs = dataAccessor.openCursor(sql, serializedValues, fetchSize);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            private final Deque<T> buffer = new ArrayDeque<>();
+            private boolean exhausted = false;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (buffer.isEmpty() && !exhausted) {
+                    fill();
+                }
+                T next = buffer.poll();
+                if (next == null) {
+                    return false;
                 }
+                action.accept(next);
+                return true;
             }
-            if (!found) {
-                hasAllIdColumns = false;
-                break;
+
+            private void fill() {
+                List<ColumnValuePairs> rows = new ArrayList<>(fetchSize);
+                try {
+                    while (rows.size() < fetchSize && rs.next()) {
+                        rows.add(readIdColumns(rs, metadata));
+                    }
+                    if (rows.size() < fetchSize) {
+                        exhausted = true;
+                        rs.close();
+                    }
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+                buffer.addAll(materialize(clazz, metadata, rows, generation));
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                rs.close();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
             }
+        });
+    }
+
+    /**
+     * Evaluate a single SQL expression, such as {@code COUNT(*)}, over the rows matching a where clause.
+     * No instances are created.
+     *
+     * @param clazz            the UniqueData class
+     * @param selectExpression the expression to select
+     * @param where            the SQL to append after the FROM clause
+     * @param values           the parameters for the where clause
+     * @param resultType       the type to read the result as
+     * @param <T>              the type of UniqueData
+     * @param <V>              the type of the result
+     * @return the value of the expression for the first row, or null if there were no rows
+     */
+    public <T extends UniqueData, V> @Nullable V aggregate(Class<T> clazz, String selectExpression, String where, List<Object> values, Class<V> resultType) {
+        UniqueDataMetadata metadata = getMetadata(clazz);
+        Preconditions.checkNotNull(metadata, "UniqueData class %s has not been parsed yet", clazz.getName());
+
+        List<Object> serializedValues = new ArrayList<>();
+        for (Object value : values) {
+            serializedValues.add(serialize(value));
         }
 
-        for (ColumnValuePair providedIdColumn : idColumns) {
-            Preconditions.checkNotNull(providedIdColumn.value(), "ID column value for column %s in UniqueData class %s cannot be null", providedIdColumn.column(), clazz.getName());
+        @Language("SQL") String sql = "SELECT " + selectExpression + " FROM \"" + metadata.schema() + "\".\"" + metadata.table() + "\" " + where;
+        try (ResultSet rs = dataAccessor.executeQuery(sql, serializedValues)) {
+            if (!rs.next()) {
+                return null;
+            }
+            Object value = rs.getObject(1);
+            if (value == null || resultType.isInstance(value)) {
+                return resultType.cast(value);
+            }
+            return rs.getObject(1, resultType);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
         }
+    }
 
-        Preconditions.checkArgument(hasAllIdColumns, "Not all @IdColumn columnsInReferringTable were provided for UniqueData class %s. Required: %s, Provided: %s", clazz.getName(), metadata.idColumns(), idColumns);
+    /**
+     * Read only the given columns from the rows matching a where clause.
+     * No instances are created, and neither the instance cache nor the cell cache is touched.
+     *
+     * @param clazz             the UniqueData class
+     * @param selectExpressions the fully qualified columns to select
+     * @param valueTypes        the type to read each column as
+     * @param where             the SQL to append after the FROM clause
+     * @param values            the parameters for the where clause
+     * @param <T>               the type of UniqueData
+     * @return one array of deserialized values per row, in the same order as the select expressions
+     */
+    public <T extends UniqueData> List<Object[]> project(Class<T> clazz, List<String> selectExpressions, List<Class<?>> valueTypes, String where, List<Object> values) {
+        Preconditions.checkArgument(!selectExpressions.isEmpty(), "At least one column must be selected");
+        Preconditions.checkArgument(selectExpressions.size() == valueTypes.size(), "Each selected column must have a value type");
+        UniqueDataMetadata metadata = getMetadata(clazz);
+        Preconditions.checkNotNull(metadata, "UniqueData class %s has not been parsed yet", clazz.getName());
 
-        T instance;
-        Map<ColumnValuePairs, UniqueData> classCache = uniqueDataInstanceCache.get(clazz.getName());
-        if (classCache != null) {
-            synchronized (classCache) {
-                instance = (T) classCache.get(idColumns);
+        List<Object> serializedValues = new ArrayList<>();
+        for (Object value : values) {
+            serializedValues.add(serialize(value));
+        }
+
+        @Language("SQL") String sql = "SELECT " + String.join(", ", selectExpressions) + " FROM \"" + metadata.schema() + "\".\"" + metadata.table() + "\" " + where;
+        List<Object[]> rows = new ArrayList<>();
+        try (ResultSet rs = dataAccessor.executeQuery(sql, serializedValues)) {
+            while (rs.next()) {
+                Object[] row = new Object[valueTypes.size()];
+                for (int i = 0; i < row.length; i++) {
+                    Class<?> valueType = valueTypes.get(i);
+                    if (Primitives.isPrimitive(valueType)) {
+                        row[i] = rs.getObject(i + 1, valueType);
+                    } else {
+                        row[i] = deserialize(valueType, rs.getObject(i + 1));
+                    }
+                }
+                rows.add(row);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        return rows;
+    }
+
+    private String buildSelectIdsSql(UniqueDataMetadata metadata, String where) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SELECT ");
+        for (ColumnMetadata idColumn : metadata.idColumns()) {
+            sb.append("\"").append(idColumn.name()).append("\", ");
+        }
+        sb.setLength(sb.length() - 2);
+        sb.append(" FROM \"").append(metadata.schema()).append("\".\"").append(metadata.table()).append("\" ");
+        sb.append(where);
+        return sb.toString();
+    }
+
+    private ColumnValuePairs readIdColumns(ResultSet rs, UniqueDataMetadata metadata) throws SQLException {
+        ColumnValuePair[] idColumns = new ColumnValuePair[metadata.idColumns().size()];
+        for (int i = 0; i < metadata.idColumns().size(); i++) {
+            ColumnMetadata idColumn = metadata.idColumns().get(i);
+            Object value = rs.getObject(idColumn.name());
+            idColumns[i] = new ColumnValuePair(idColumn.name(), value);
+        }
+        return new ColumnValuePairs(idColumns);
+    }
+
+    /**
+     * Resolve instances for rows which are already known to exist, such as the result of a query.
+     * Unlike {@link #getInstance(Class, ColumnValuePairs)}, this skips the existence check and installs all new instances in the instance cache at once.
+     *
+     * @param clazz      the UniqueData class
+     * @param metadata   the metadata for the class
+     * @param rows       the id columns of each row, in metadata order
+     * @param generation the relation cache generation from before the rows were read
+     * @param <T>        the type of UniqueData
+     * @return the instances, in the same order as the rows
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends UniqueData> List<T> materialize(Class<T> clazz, UniqueDataMetadata metadata, List<ColumnValuePairs> rows, long generation) {
+        if (rows.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<ColumnValuePairs, UniqueData> cache = uniqueDataInstanceCache.computeIfAbsent(clazz.getName(), k -> new MapMaker().weakValues().makeMap());
+        Map<ColumnValuePairs, T> resolved = new HashMap<>();
+        Set<ColumnValuePairs> misses = new LinkedHashSet<>();
+        synchronized (cache) {
+            for (ColumnValuePairs idColumns : rows) {
+                if (resolved.containsKey(idColumns)) {
+                    continue;
+                }
+                T instance = (T) cache.get(idColumns);
                 if (instance != null && !instance.isDeleted()) {
-                    logger.trace("Cache hit for UniqueData class {} with ID columnsInReferringTable {}", clazz.getName(), idColumns);
-                    return instance;
+                    resolved.put(idColumns, instance);
+                } else {
+                    misses.add(idColumns);
                 }
             }
         }
 
+        if (!misses.isEmpty()) {
+            Map<ColumnValuePairs, T> created = new HashMap<>();
+            for (ColumnValuePairs idColumns : misses) {
+                created.put(idColumns, createInstance(clazz, idColumns));
+                putExistsRelationCacheResult(metadata, idColumns, generation);
+            }
+
+            synchronized (cache) {
+                for (Map.Entry<ColumnValuePairs, T> entry : created.entrySet()) {
+                    T existing = (T) cache.get(entry.getKey());
+                    if (existing != null && !existing.isDeleted()) {
+                        resolved.put(entry.getKey(), existing);
+                        continue;
+                    }
+                    cache.put(entry.getKey(), entry.getValue());
+                    resolved.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            logger.trace("Materialized {} new instances of UniqueData class {}", created.size(), clazz.getName());
+        }
+
+        List<T> results = new ArrayList<>(rows.size());
+        for (ColumnValuePairs idColumns : rows) {
+            results.add(resolved.get(idColumns));
+        }
+        return results;
+    }
+
+    private <T extends UniqueData> T createInstance(Class<T> clazz, ColumnValuePairs idColumns) {
+        T instance;
         try {
             Constructor<T> constructor = clazz.getDeclaredConstructor();
             constructor.setAccessible(true);
@@ -1159,13 +1638,19 @@ public class DataManager {
         instance.setDataManager(this, false);
         instance.setIdColumns(idColumns);
 
-        String schema = metadata.schema();
-        String table = metadata.table();
+        PersistentValueImpl.delegate(instance);
+        CachedValueImpl.delegate(instance);
+        ReferenceImpl.delegate(instance);
+        PersistentOneToManyCollectionImpl.delegate(instance);
+        PersistentManyToManyCollectionImpl.delegate(instance);
+        PersistentOneToManyValueCollectionImpl.delegate(instance);
 
-        boolean exists;
+        return instance;
+    }
 
+    private SelectQuery buildExistsQuery(UniqueDataMetadata metadata, ColumnValuePairs idColumns) {
         StringBuilder sqlBuilder = new StringBuilder();
-        sqlBuilder.append("SELECT 1 FROM \"").append(schema).append("\".\"").append(table).append("\" WHERE ");
+        sqlBuilder.append("SELECT 1 FROM \"").append(metadata.schema()).append("\".\"").append(metadata.table()).append("\" WHERE ");
         for (ColumnValuePair columnValuePair : idColumns) {
             sqlBuilder.append("\"").append(columnValuePair.column()).append("\" = ? AND ");
         }
@@ -1176,23 +1661,135 @@ public class DataManager {
         for (ColumnValuePair columnValuePair : idColumns) {
             values.add(columnValuePair.value());
         }
-        SelectQuery selectQuery = new SelectQuery("DataManager#getInstance", sql, values);
+        return new SelectQuery("DataManager#getInstance", sql, values);
+    }
+
+    private void putExistsRelationCacheResult(UniqueDataMetadata metadata, ColumnValuePairs idColumns, long generation) {
+        Set<Cell> dependencies = new HashSet<>();
+        for (ColumnValuePair columnValuePair : idColumns) {
+            dependencies.add(new Cell(metadata.schema(), metadata.table(), columnValuePair.column(), idColumns));
+        }
+        ReadCacheResult result = new ReadCacheResult(ColumnValuePairs.EMPTY, dependencies);
+        putRelationCacheResult(buildExistsQuery(metadata, idColumns), result, generation);
+    }
+
+    public <T extends UniqueData> T getInstance(Class<T> clazz, ColumnValuePair... idColumnValues) {
+        return getInstance(clazz, new ColumnValuePairs(idColumnValues));
+    }
+
+    /**
+     * Resolve many instances at once.
+     * Instances which are not cached are checked for existence with a single query per batch, rather than one query per id.
+     * Ids which do not exist are skipped.
+     *
+     * @param clazz the UniqueData class
+     * @param ids   the id columns of each instance
+     * @param <T>   the type of UniqueData
+     * @return the instances which exist, in the same order as the provided ids
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends UniqueData> List<T> getInstances(Class<T> clazz, @NotNull Collection<ColumnValuePairs> ids) {
+        UniqueDataMetadata metadata = getMetadata(clazz);
+        Preconditions.checkNotNull(metadata, "UniqueData class %s has not been parsed yet", clazz.getName());
+        for (ColumnValuePairs idColumns : ids) {
+            validateIdColumns(clazz, metadata, idColumns);
+        }
+
+        long generation = getRelationCacheGeneration();
+        Set<ColumnValuePairs> existing = new HashSet<>();
+        List<ColumnValuePairs> unknown = new ArrayList<>();
+        Map<ColumnValuePairs, UniqueData> classCache = uniqueDataInstanceCache.get(clazz.getName());
+        for (ColumnValuePairs idColumns : new LinkedHashSet<>(ids)) {
+            if (classCache != null) {
+                synchronized (classCache) {
+                    T instance = (T) classCache.get(idColumns);
+                    if (instance != null && !instance.isDeleted()) {
+                        existing.add(idColumns);
+                        continue;
+                    }
+                }
+            }
+            if (getRelationCacheResult(buildExistsQuery(metadata, idColumns)) != null) {
+                existing.add(idColumns);
+                continue;
+            }
+            unknown.add(idColumns);
+        }
+
+        List<String> idColumnNames = metadata.idColumns().stream().map(ColumnMetadata::name).toList();
+        for (List<ColumnValuePairs> batch : Lists.partition(unknown, 500)) {
+            StringBuilder sqlBuilder = new StringBuilder();
+            sqlBuilder.append("SELECT ");
+            for (String idColumnName : idColumnNames) {
+                sqlBuilder.append("\"").append(idColumnName).append("\", ");
+            }
+            sqlBuilder.setLength(sqlBuilder.length() - 2);
+            sqlBuilder.append(" FROM \"").append(metadata.schema()).append("\".\"").append(metadata.table()).append("\" WHERE ");
+            SQLUtils.appendInClause(sqlBuilder, idColumnNames, batch.size());
+            @Language("SQL") String sql = sqlBuilder.toString();
+
+            List<Object> values = new ArrayList<>(batch.size() * idColumnNames.size());
+            for (ColumnValuePairs idColumns : batch) {
+                for (String idColumnName : idColumnNames) {
+                    values.add(ColumnValuePairs.getValue(idColumnName, idColumns));
+                }
+            }
+
+            try (ResultSet rs = dataAccessor.executeQuery(sql, values)) {
+                while (rs.next()) {
+                    ColumnValuePair[] idColumns = new ColumnValuePair[idColumnNames.size()];
+                    for (int i = 0; i < idColumnNames.size(); i++) {
+                        idColumns[i] = new ColumnValuePair(idColumnNames.get(i), rs.getObject(idColumnNames.get(i)));
+                    }
+                    existing.add(new ColumnValuePairs(idColumns));
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        List<ColumnValuePairs> rows = new ArrayList<>(ids.size());
+        for (ColumnValuePairs idColumns : ids) {
+            if (existing.contains(idColumns)) {
+                rows.add(idColumns);
+            }
+        }
+
+        return materialize(clazz, metadata, rows, generation);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends UniqueData> T getInstance(Class<T> clazz, @NotNull ColumnValuePairs idColumns) {
+        UniqueDataMetadata metadata = getMetadata(clazz);
+        Preconditions.checkNotNull(metadata, "UniqueData class %s has not been parsed yet", clazz.getName());
+        validateIdColumns(clazz, metadata, idColumns);
+
+        T instance;
+        Map<ColumnValuePairs, UniqueData> classCache = uniqueDataInstanceCache.get(clazz.getName());
+        if (classCache != null) {
+            synchronized (classCache) {
+                instance = (T) classCache.get(idColumns);
+                if (instance != null && !instance.isDeleted()) {
+                    logger.trace("Cache hit for UniqueData class {} with ID columnsInReferringTable {}", clazz.getName(), idColumns);
+                    return instance;
+                }
+            }
+        }
+
+        boolean exists;
+
+        SelectQuery selectQuery = buildExistsQuery(metadata, idColumns);
 
         ReadCacheResult cacheResult = getRelationCacheResult(selectQuery);
         if (cacheResult != null) {
             exists = true;
         } else {
             long generation = getRelationCacheGeneration();
-            try (ResultSet rs = dataAccessor.executeQuery(sql, idColumns.stream().map(ColumnValuePair::value).toList())) {
+            try (ResultSet rs = dataAccessor.executeQuery(selectQuery.getSql(), selectQuery.getValues())) {
                 exists = rs.next();
 
                 if (exists) {
-                    Set<Cell> dependencies = new HashSet<>();
-                    for (ColumnValuePair columnValuePair : idColumns) {
-                        dependencies.add(new Cell(schema, table, columnValuePair.column(), idColumns));
-                    }
-                    ReadCacheResult result = new ReadCacheResult(ColumnValuePairs.EMPTY, dependencies);
-                    putRelationCacheResult(selectQuery, result, generation);
+                    putExistsRelationCacheResult(metadata, idColumns, generation);
                 }
 
             } catch (SQLException e) {
@@ -1204,12 +1801,7 @@ public class DataManager {
             return null;
         }
 
-        PersistentValueImpl.delegate(instance);
-        CachedValueImpl.delegate(instance);
-        ReferenceImpl.delegate(instance);
-        PersistentOneToManyCollectionImpl.delegate(instance);
-        PersistentManyToManyCollectionImpl.delegate(instance);
-        PersistentOneToManyValueCollectionImpl.delegate(instance);
+        instance = createInstance(clazz, idColumns);
 
         Map<ColumnValuePairs, UniqueData> cache = uniqueDataInstanceCache.computeIfAbsent(clazz.getName(), k -> new MapMaker().weakValues().makeMap());
         synchronized (cache) {
@@ -1225,6 +1817,29 @@ public class DataManager {
         return instance;
     }
 
+    private void validateIdColumns(Class<? extends UniqueData> clazz, UniqueDataMetadata metadata, ColumnValuePairs idColumns) {
+        boolean hasAllIdColumns = true;
+        for (ColumnMetadata idColumn : metadata.idColumns()) {
+            boolean found = false;
+            for (ColumnValuePair providedIdColumn : idColumns) {
+                if (idColumn.name().equals(providedIdColumn.column())) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                hasAllIdColumns = false;
+                break;
+            }
+        }
+
+        for (ColumnValuePair providedIdColumn : idColumns) {
+            Preconditions.checkNotNull(providedIdColumn.value(), "ID column value for column %s in UniqueData class %s cannot be null", providedIdColumn.column(), clazz.getName());
+        }
+
+        Preconditions.checkArgument(hasAllIdColumns, "Not all @IdColumn columnsInReferringTable were provided for UniqueData class %s. Required: %s, Provided: %s", clazz.getName(), metadata.idColumns(), idColumns);
+    }
+
     /**
      * Creates a snapshot of the given UniqueData instance.
      * The snapshot instance will have the same ID columns as the original instance,
@@ -1693,6 +2308,34 @@ public class DataManager {
         return deserialize(dataType, serialize(value));
     }
 
+    /**
+     * Get the executor which async queries run on.
+     *
+     * @return the query executor
+     */
+    @ApiStatus.Internal
+    public Executor getQueryExecutor() {
+        return queryExecutor;
+    }
+
+    /**
+     * Get the latency above which a statement is logged as slow.
+     *
+     * @return the threshold in milliseconds, or a negative value if slow query logging is disabled
+     */
+    public long getSlowQueryThresholdMillis() {
+        return slowQueryThresholdMillis;
+    }
+
+    /**
+     * Check whether Redis values are published alongside every SET, rather than read back after a keyspace event.
+     *
+     * @return true if Redis values are published
+     */
+    public boolean isPublishRedisValues() {
+        return publishRedisValues;
+    }
+
     /**
      * For internal use only. A dummy instance has no DataManager, no id columnsInReferringTable, and is marked as deleted.
      *
@@ -1715,7 +2358,7 @@ public class DataManager {
     }
 
     /**
-     * Block the calling thread until all previously enqueued tasks have been completed
+     * Block the calling thread until all previously enqueued tasks, including Redis writes, have been completed
      */
     @Blocking
     public void flushTaskQueue() {
@@ -1723,6 +2366,7 @@ public class DataManager {
         taskQueue.submitTask(connection -> {
             //Ignore
         }).join();
+        redisQueue.flush().join();
     }
 
     public StaticDataStatistics getStatistics() {
@@ -1732,6 +2376,10 @@ public class DataManager {
         stats.setDependenciesToRelationsCacheMappingSize(relationCache.dependencyMappingSize());
         stats.setCellCacheSize(cellCache.estimatedSize());
         stats.setDependenciesToCellCacheMappingSize(cellCache.dependencyMappingSize());
+        stats.setQueryCacheSize(queryCache.estimatedSize());
+        stats.setUpdateHandlerBacklog(handlerLatencyTracker.getBacklog());
+        stats.setDroppedRowChanges(droppedRowChanges.get());
+        stats.setHandlerStatistics(handlerLatencyTracker.snapshot());
         return stats;
     }
 
@@ -1748,7 +2396,12 @@ public class DataManager {
     }
 
     public void invalidateRelationCache(List<String> columnNames, String schema, String table, List<String> changedColumns, Object[] values) {
-        relationCache.invalidate(resolveCells(columnNames, schema, table, changedColumns, values));
+        Set<Cell> cells = resolveCells(columnNames, schema, table, changedColumns, values);
+        // collections depend on columns table wide, since a new or updated row can join them
+        for (String changedColumn : changedColumns) {
+            cells.add(Cell.wholeColumn(schema, table, changedColumn));
+        }
+        relationCache.invalidate(cells);
     }
 
     public @Nullable ReadCacheResult getCellCacheResult(SelectQuery query) {
@@ -1767,6 +2420,64 @@ public class DataManager {
         cellCache.invalidate(resolveCells(columnNames, schema, table, changedColumns, values));
     }
 
+    public void invalidateQueryCache(String schema, String table) {
+        queryCache.invalidate(Set.of(Cell.wholeTable(schema, table)));
+    }
+
+    /**
+     * Find the ids of the rows matching all the given column equalities using the in-heap index, if one is enabled and covers every column.
+     *
+     * @param clazz      the UniqueData class to look up
+     * @param equalities the column values to match, all in the holder's table
+     * @return the matching ids, or null if the lookup must go through H2
+     */
+    public @Nullable Set<ColumnValuePairs> lookupHeapIndex(Class<? extends UniqueData> clazz, Map<String, Object> equalities) {
+        if (heapIndexes == null) {
+            return null;
+        }
+        UniqueDataMetadata metadata = getMetadata(clazz);
+        HeapIndex heapIndex = heapIndexes.computeIfAbsent(new SchemaTable(metadata.schema(), metadata.table()), k -> createHeapIndex(metadata));
+        if (heapIndex.isEmpty()) {
+            return null;
+        }
+        return heapIndex.lookup(equalities, dataAccessor);
+    }
+
+    public void updateHeapIndex(List<String> columnNames, String schema, String table, @Nullable Object[] oldValues, @Nullable Object[] newValues) {
+        if (heapIndexes == null) {
+            return;
+        }
+        HeapIndex heapIndex = heapIndexes.get(new SchemaTable(schema, table));
+        if (heapIndex != null) {
+            heapIndex.apply(columnNames, oldValues, newValues);
+        }
+    }
+
+    public void invalidateHeapIndex(String schema, String table) {
+        if (heapIndexes == null) {
+            return;
+        }
+        HeapIndex heapIndex = heapIndexes.get(new SchemaTable(schema, table));
+        if (heapIndex != null) {
+            heapIndex.invalidate();
+        }
+    }
+
+    private HeapIndex createHeapIndex(UniqueDataMetadata metadata) {
+        Map<String, Class<?>> columns = new HashMap<>();
+        SQLSchema schema = sqlBuilder.getSchema(metadata.schema());
+        SQLTable table = schema != null ? schema.getTable(metadata.table()) : null;
+        if (table != null) {
+            for (SQLColumn column : table.getColumns()) {
+                if ((column.isIndexed() || column.isUnique()) && !column.isVirtual() && HeapIndex.isSupportedType(column.getType())) {
+                    columns.put(column.getName(), column.getType());
+                }
+            }
+        }
+        List<String> idColumns = metadata.idColumns().stream().map(ColumnMetadata::name).toList();
+        return new HeapIndex(metadata.schema(), metadata.table(), idColumns, columns);
+    }
+
     private Set<Cell> resolveCells(List<String> columnNames, String schema, String table, List<String> changedColumns, Object[] values) {
         Set<Cell> cells = new HashSet<>();
         for (UniqueDataMetadata metadata : uniqueDataMetadataMap.values()) {
@@ -0,0 +1,16 @@
+package net.staticstudios.data;
+
+/**
+ * Latency statistics for one update handler.
+ *
+ * @param handler            the name of the handler, made up of its holder class and the value it handles
+ * @param count              how many times the handler ran
+ * @param meanNanos          the mean time the handler took to run
+ * @param p50Nanos           the median time the handler took to run
+ * @param p99Nanos           the 99th percentile of the time the handler took to run
+ * @param maxNanos           the maximum time the handler took to run
+ * @param meanQueueWaitNanos the mean time between the change being committed and the handler starting
+ * @param p99QueueWaitNanos  the 99th percentile of the time between the change being committed and the handler starting
+ */
+public record HandlerStatistics(String handler, long count, long meanNanos, long p50Nanos, long p99Nanos, long maxNanos, long meanQueueWaitNanos, long p99QueueWaitNanos) {
+}
@@ -24,10 +24,22 @@ public interface PersistentValue<T> extends Value<T> {
 
     <U extends UniqueData> PersistentValue<T> onUpdate(Class<U> holderClass, ValueUpdateHandler<U, T> updateHandler);
 
+    /**
+     * Register a handler which receives the changes to this value in batches, rather than one call per change.
+     * All changes within the window are delivered in a single call, with repeated changes to the same holder collapsed into one.
+     *
+     * @param holderClass   the holder class
+     * @param windowMillis  how long to collect changes for, starting from the first change of a batch
+     * @param updateHandler the handler
+     * @return this persistent value
+     */
+    <U extends UniqueData> PersistentValue<T> onUpdateBatch(Class<U> holderClass, long windowMillis, BatchValueUpdateHandler<U, T> updateHandler);
+
     class ProxyPersistentValue<T> implements PersistentValue<T> {
         protected final UniqueData holder;
         protected final Class<T> dataType;
         private final List<ValueUpdateHandlerWrapper<?, ?>> updateHandlers = new ArrayList<>();
+        private final List<BatchValueUpdateHandlerWrapper<?, ?>> batchUpdateHandlers = new ArrayList<>();
         private @Nullable PersistentValue<T> delegate;
 
         public ProxyPersistentValue(UniqueData holder, Class<T> dataType) {
@@ -43,11 +55,14 @@ public interface PersistentValue<T> extends Value<T> {
                 for (ValueUpdateHandlerWrapper<?, ?> wrapper : updateHandlers) {
                     LambdaUtils.assertLambdaDoesntCapture(wrapper.getHandler(), List.of(UniqueData.class), null);
                 }
+                for (BatchValueUpdateHandlerWrapper<?, ?> wrapper : batchUpdateHandlers) {
+                    LambdaUtils.assertLambdaDoesntCapture(wrapper.getBatchHandler(), List.of(UniqueData.class), null);
+                }
                 metadata.setValidatedUpdateHandlers(true);
             }
 
             this.delegate = delegate;
-            holder.getDataManager().registerPersistentValueUpdateHandlers(metadata, updateHandlers);
+            holder.getDataManager().registerPersistentValueUpdateHandlers(metadata, updateHandlers, batchUpdateHandlers);
         }
 
         @Override
@@ -68,6 +83,15 @@ public interface PersistentValue<T> extends Value<T> {
             return this;
         }
 
+        @Override
+        public <U extends UniqueData> PersistentValue<T> onUpdateBatch(Class<U> holderClass, long windowMillis, BatchValueUpdateHandler<U, T> updateHandler) {
+            Preconditions.checkArgument(delegate == null, "Cannot dynamically add an update handler after the holder has been initialized!");
+            Preconditions.checkArgument(windowMillis >= 0, "Batch window cannot be negative");
+            BatchValueUpdateHandlerWrapper<U, T> wrapper = new BatchValueUpdateHandlerWrapper<>(updateHandler, windowMillis, dataType, holderClass);
+            this.batchUpdateHandlers.add(wrapper);
+            return this;
+        }
+
         @Override
         public T get() {
             if (delegate != null) {
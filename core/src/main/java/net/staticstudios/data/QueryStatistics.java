@@ -0,0 +1,16 @@
+package net.staticstudios.data;
+
+/**
+ * Latency and row statistics for one SQL statement shape.
+ * Since statements are prepared with bound parameters, the SQL itself identifies the shape.
+ *
+ * @param sql        the SQL statement
+ * @param count      how many times the statement ran
+ * @param rows       the total number of rows read or affected
+ * @param meanNanos  the mean latency
+ * @param p50Nanos   the median latency
+ * @param p99Nanos   the 99th percentile latency
+ * @param maxNanos   the maximum latency
+ */
+public record QueryStatistics(String sql, long count, long rows, long meanNanos, long p50Nanos, long p99Nanos, long maxNanos) {
+}
@@ -2,6 +2,7 @@ package net.staticstudios.data;
 
 import com.google.common.base.Preconditions;
 import net.staticstudios.utils.ThreadUtils;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.function.Consumer;
 
@@ -12,13 +13,43 @@ public record StaticDataConfig(String postgresHost,
                                String postgresPassword,
                                String redisHost,
                                int redisPort,
-                               Consumer<Runnable> updateHandlerExecutor
+                               Consumer<Runnable> updateHandlerExecutor,
+                               @Nullable Consumer<Runnable> queryExecutor,
+                               boolean heapIndexes,
+                               long slowQueryThresholdMillis,
+                               long slowHandlerThresholdMillis,
+                               long redisPipelineLingerMillis,
+                               boolean publishRedisValues
 ) {
 
     public static Builder builder() {
         return new Builder();
     }
 
+    /**
+     * Get a builder populated with the values of this config, so a copy can be made with some values changed.
+     *
+     * @return a new builder
+     */
+    public Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.postgresHost = postgresHost;
+        builder.postgresPort = postgresPort;
+        builder.postgresDatabase = postgresDatabase;
+        builder.postgresUsername = postgresUsername;
+        builder.postgresPassword = postgresPassword;
+        builder.redisHost = redisHost;
+        builder.redisPort = redisPort;
+        builder.updateHandlerExecutor = updateHandlerExecutor;
+        builder.queryExecutor = queryExecutor;
+        builder.heapIndexes = heapIndexes;
+        builder.slowQueryThresholdMillis = slowQueryThresholdMillis;
+        builder.slowHandlerThresholdMillis = slowHandlerThresholdMillis;
+        builder.redisPipelineLingerMillis = redisPipelineLingerMillis;
+        builder.publishRedisValues = publishRedisValues;
+        return builder;
+    }
+
     public static class Builder {
         private String postgresHost;
         private int postgresPort = 5432;
@@ -28,6 +59,12 @@ public record StaticDataConfig(String postgresHost,
         private String redisHost;
         private int redisPort = 6379;
         private Consumer<Runnable> updateHandlerExecutor = ThreadUtils::submit;
+        private Consumer<Runnable> queryExecutor = null;
+        private boolean heapIndexes = false;
+        private long slowQueryThresholdMillis = -1;
+        private long slowHandlerThresholdMillis = -1;
+        private long redisPipelineLingerMillis = 0;
+        private boolean publishRedisValues = false;
 
 
         public Builder postgresHost(String postgresHost) {
@@ -65,11 +102,90 @@ public record StaticDataConfig(String postgresHost,
             return this;
         }
 
+        /**
+         * Set the executor which update handlers run on.
+         * Handlers are not ordered by default. Use a {@link net.staticstudios.data.util.StripedExecutor} to run the handlers of each holder serially, in commit order.
+         *
+         * @param updateHandlerExecutor the executor to run update handlers on
+         * @return this builder
+         */
         public Builder updateHandlerExecutor(Consumer<Runnable> updateHandlerExecutor) {
             this.updateHandlerExecutor = updateHandlerExecutor;
             return this;
         }
 
+        /**
+         * Set the executor which async queries run on.
+         * If this is not set, a small pool of virtual threads owned by the DataManager is used.
+         *
+         * @param queryExecutor the executor to run async queries on
+         * @return this builder
+         */
+        public Builder queryExecutor(Consumer<Runnable> queryExecutor) {
+            this.queryExecutor = queryExecutor;
+            return this;
+        }
+
+        /**
+         * Keep an in-heap index of indexed and unique columns, so equality queries on them skip H2 entirely.
+         * This trades memory for lookup latency, and is disabled by default.
+         *
+         * @param heapIndexes whether to keep in-heap indexes
+         * @return this builder
+         */
+        public Builder heapIndexes(boolean heapIndexes) {
+            this.heapIndexes = heapIndexes;
+            return this;
+        }
+
+        /**
+         * Log statements which take longer than the given threshold, along with the query plan for H2 queries.
+         * Each statement is logged at most once a minute. Slow query logging is disabled by default.
+         *
+         * @param slowQueryThresholdMillis the threshold in milliseconds, or a negative value to disable slow query logging
+         * @return this builder
+         */
+        public Builder slowQueryThresholdMillis(long slowQueryThresholdMillis) {
+            this.slowQueryThresholdMillis = slowQueryThresholdMillis;
+            return this;
+        }
+
+        /**
+         * Log update handlers which take longer than the given threshold to run. Slow handler logging is disabled by default.
+         *
+         * @param slowHandlerThresholdMillis the threshold in milliseconds, or a negative value to disable slow handler logging
+         * @return this builder
+         */
+        public Builder slowHandlerThresholdMillis(long slowHandlerThresholdMillis) {
+            this.slowHandlerThresholdMillis = slowHandlerThresholdMillis;
+            return this;
+        }
+
+        /**
+         * Set how long Redis writes may wait for more writes to share their pipeline.
+         * By default, whatever is queued when the Redis lane becomes free is sent straight away.
+         *
+         * @param redisPipelineLingerMillis the linger time in milliseconds
+         * @return this builder
+         */
+        public Builder redisPipelineLingerMillis(long redisPipelineLingerMillis) {
+            Preconditions.checkArgument(redisPipelineLingerMillis >= 0, "redisPipelineLingerMillis must not be negative");
+            this.redisPipelineLingerMillis = redisPipelineLingerMillis;
+            return this;
+        }
+
+        /**
+         * Publish the new value alongside every Redis SET, so other instances can apply it without reading the key back.
+         * When enabled, SET keyspace events are ignored in favour of the published values, so every instance sharing the Redis server must enable this.
+         *
+         * @param publishRedisValues whether to publish Redis values
+         * @return this builder
+         */
+        public Builder publishRedisValues(boolean publishRedisValues) {
+            this.publishRedisValues = publishRedisValues;
+            return this;
+        }
+
         public StaticDataConfig build() {
             Preconditions.checkNotNull(postgresHost, "Postgres host must be set");
             Preconditions.checkNotNull(postgresDatabase, "Postgres database must be set");
@@ -86,7 +202,13 @@ public record StaticDataConfig(String postgresHost,
                     postgresPassword,
                     redisHost,
                     redisPort,
-                    updateHandlerExecutor
+                    updateHandlerExecutor,
+                    queryExecutor,
+                    heapIndexes,
+                    slowQueryThresholdMillis,
+                    slowHandlerThresholdMillis,
+                    redisPipelineLingerMillis,
+                    publishRedisValues
             );
         }
     }
@@ -1,5 +1,7 @@
 package net.staticstudios.data;
 
+import java.util.Map;
+
 public class StaticDataStatistics {
     private long queriesPerSecond = -1;
     private long updatesPerSecond = -1;
@@ -7,6 +9,12 @@ public class StaticDataStatistics {
     private int dependenciesToRelationsCacheMappingSize = -1;
     private int cellCacheSize = -1;
     private int dependenciesToCellCacheMappingSize = -1;
+    private int queryCacheSize = -1;
+    private Map<String, QueryStatistics> h2QueryStatistics = Map.of();
+    private Map<String, QueryStatistics> postgresQueryStatistics = Map.of();
+    private long updateHandlerBacklog = -1;
+    private long droppedRowChanges = -1;
+    private Map<String, HandlerStatistics> handlerStatistics = Map.of();
 
     public void setQueriesPerSecond(long queriesPerSecond) {
         this.queriesPerSecond = queriesPerSecond;
@@ -32,6 +40,30 @@ public class StaticDataStatistics {
         this.dependenciesToCellCacheMappingSize = dependenciesToCellCacheMappingSize;
     }
 
+    public void setQueryCacheSize(int queryCacheSize) {
+        this.queryCacheSize = queryCacheSize;
+    }
+
+    public void setH2QueryStatistics(Map<String, QueryStatistics> h2QueryStatistics) {
+        this.h2QueryStatistics = h2QueryStatistics;
+    }
+
+    public void setPostgresQueryStatistics(Map<String, QueryStatistics> postgresQueryStatistics) {
+        this.postgresQueryStatistics = postgresQueryStatistics;
+    }
+
+    public void setUpdateHandlerBacklog(long updateHandlerBacklog) {
+        this.updateHandlerBacklog = updateHandlerBacklog;
+    }
+
+    public void setDroppedRowChanges(long droppedRowChanges) {
+        this.droppedRowChanges = droppedRowChanges;
+    }
+
+    public void setHandlerStatistics(Map<String, HandlerStatistics> handlerStatistics) {
+        this.handlerStatistics = handlerStatistics;
+    }
+
     public long getQueriesPerSecond() {
         return queriesPerSecond;
     }
@@ -60,4 +92,53 @@ public class StaticDataStatistics {
         return dependenciesToCellCacheMappingSize;
     }
 
+    public int getQueryCacheSize() {
+        return queryCacheSize;
+    }
+
+    /**
+     * Get latency statistics for each H2 statement, keyed by SQL.
+     *
+     * @return the statistics per statement
+     */
+    public Map<String, QueryStatistics> getH2QueryStatistics() {
+        return h2QueryStatistics;
+    }
+
+    /**
+     * Get latency statistics for each statement run against Postgres, keyed by SQL.
+     *
+     * @return the statistics per statement
+     */
+    public Map<String, QueryStatistics> getPostgresQueryStatistics() {
+        return postgresQueryStatistics;
+    }
+
+    /**
+     * Get the number of update handler invocations which have been submitted but have not started running yet.
+     *
+     * @return the update handler backlog
+     */
+    public long getUpdateHandlerBacklog() {
+        return updateHandlerBacklog;
+    }
+
+    /**
+     * Get the number of row changes dropped because a {@link DataManager#changes(Class)} subscriber fell too far behind.
+     *
+     * @return the number of dropped row changes
+     */
+    public long getDroppedRowChanges() {
+        return droppedRowChanges;
+    }
+
+    /**
+     * Get latency statistics for each update handler, keyed by handler name.
+     *
+     * @return the statistics per handler
+     */
+    public Map<String, HandlerStatistics> getHandlerStatistics() {
+        return handlerStatistics;
+    }
+
 }
@@ -17,6 +17,13 @@ public interface DataAccessor {
 
     ResultSet executeQuery(@Language("SQL") String sql, List<Object> values) throws SQLException;
 
+    /**
+     * Execute a query on its own statement, so the result set can stay open while other queries run.
+     * Rows are produced as the cursor advances rather than all at once, at most {@code fetchSize} at a time.
+     * Closing the returned result set also closes its statement.
+     */
+    ResultSet openCursor(@Language("SQL") String sql, List<Object> values, int fetchSize) throws SQLException;
+
     default void executeUpdate(@Nullable ColumnValuePairs idColumns, SQLTransaction.Statement statement, List<Object> values, int delay) throws SQLException {
         executeTransaction(new SQLTransaction(idColumns).update(statement, values), delay);
     }
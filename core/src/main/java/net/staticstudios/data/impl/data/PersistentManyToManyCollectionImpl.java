@@ -1,6 +1,7 @@
 package net.staticstudios.data.impl.data;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import net.staticstudios.data.DataManager;
 import net.staticstudios.data.ManyToMany;
 import net.staticstudios.data.PersistentCollection;
@@ -19,6 +20,7 @@ import java.sql.SQLException;
 import java.util.*;
 
 public class PersistentManyToManyCollectionImpl<T extends UniqueData> implements PersistentCollection<T> {
+    private static final int BATCH_SIZE = 500;
     private final UniqueData holder;
     private final Class<T> type;
     private final PersistentManyToManyCollectionMetadata metadata;
@@ -130,16 +132,32 @@ public class PersistentManyToManyCollectionImpl<T extends UniqueData> implements
     }
 
     public static SQLTransaction.Statement buildUpdateStatement(DataManager dataManager, PersistentManyToManyCollectionMetadata metadata) {
+        return buildUpdateStatement(dataManager, metadata, 1);
+    }
+
+    /**
+     * Build a statement which links {@code rows} entries at once.
+     * The values are expected to be supplied row by row, each row being the holder's linking values followed by the referenced linking values.
+     *
+     * @param dataManager the data manager
+     * @param metadata    the collection metadata
+     * @param rows        the number of rows to insert into the join table
+     * @return the statement
+     */
+    public static SQLTransaction.Statement buildUpdateStatement(DataManager dataManager, PersistentManyToManyCollectionMetadata metadata, int rows) {
+        Preconditions.checkArgument(rows > 0, "Must insert at least one row");
         List<Link> joinTableToDataTableLinks = metadata.getJoinTableToDataTableLinks(dataManager);
         List<Link> joinTableToReferencedTableLinks = metadata.getJoinTableToReferencedTableLinks(dataManager);
 
         String joinTableSchema = metadata.getJoinTableSchema(dataManager);
         String joinTableName = metadata.getJoinTableName(dataManager);
+        String valuesRow = "(" + "?, ".repeat(joinTableToDataTableLinks.size() + joinTableToReferencedTableLinks.size());
+        valuesRow = valuesRow.substring(0, valuesRow.length() - 2) + "), ";
         StringBuilder sqlBuilder = new StringBuilder();
-        sqlBuilder.append("MERGE INTO \"").append(joinTableSchema).append("\".\"").append(joinTableName).append("\" AS _target USING (VALUES (");
-        sqlBuilder.append("?, ".repeat(Math.max(0, joinTableToDataTableLinks.size() + joinTableToReferencedTableLinks.size())));
+        sqlBuilder.append("MERGE INTO \"").append(joinTableSchema).append("\".\"").append(joinTableName).append("\" AS _target USING (VALUES ");
+        sqlBuilder.append(valuesRow.repeat(rows));
         sqlBuilder.setLength(sqlBuilder.length() - 2);
-        sqlBuilder.append(")) AS _source (");
+        sqlBuilder.append(") AS _source (");
         for (Link entry : joinTableToDataTableLinks) {
             String joinColumn = entry.columnInReferringTable();
             sqlBuilder.append("\"").append(joinColumn).append("\", ");
@@ -193,10 +211,10 @@ public class PersistentManyToManyCollectionImpl<T extends UniqueData> implements
             sqlBuilder.append("\"").append(joinColumn).append("\", ");
         }
         sqlBuilder.setLength(sqlBuilder.length() - 2);
-        sqlBuilder.append(") VALUES (");
-        sqlBuilder.append("?, ".repeat(Math.max(0, joinTableToDataTableLinks.size() + joinTableToReferencedTableLinks.size())));
+        sqlBuilder.append(") VALUES ");
+        sqlBuilder.append(valuesRow.repeat(rows));
         sqlBuilder.setLength(sqlBuilder.length() - 2);
-        sqlBuilder.append(") ON CONFLICT DO NOTHING");
+        sqlBuilder.append(" ON CONFLICT DO NOTHING");
         @Language("SQL") String pgInsertSql = sqlBuilder.toString();
 
         return SQLTransaction.Statement.of(h2MergeSql, pgInsertSql);
@@ -313,8 +331,6 @@ public class PersistentManyToManyCollectionImpl<T extends UniqueData> implements
 
         DataAccessor dataAccessor = holder.getDataManager().getDataAccessor();
         SQLTransaction.Statement selectDataIdsStatement = buildSelectDataIdsStatement();
-        SQLTransaction.Statement selectReferencedIdsStatement = buildSelectReferencedIdsStatement();
-        SQLTransaction.Statement updateStatement = buildUpdateStatement();
         List<Link> joinTableToDataTableLinks = metadata.getJoinTableToDataTableLinks(holder.getDataManager());
         List<Link> joinTableToReferencedTableLinks = metadata.getJoinTableToReferencedTableLinks(holder.getDataManager());
 
@@ -336,26 +352,17 @@ public class PersistentManyToManyCollectionImpl<T extends UniqueData> implements
         });
 
 
-        for (T entry : c) {
-            List<Object> referencedIdValues = entry.getIdColumns().stream().map(ColumnValuePair::value).toList();
-            List<Object> referencedLinkingValues = new ArrayList<>(joinTableToReferencedTableLinks.size());
-            transaction.query(selectReferencedIdsStatement, () -> referencedIdValues, rs -> {
-                try {
-                    Preconditions.checkState(rs.next(), "Could not find referenced row in database");
-                    for (Link _entry : joinTableToReferencedTableLinks) {
-                        String referencedColumn = _entry.columnInReferencedTable();
-                        Object value = rs.getObject(referencedColumn);
-                        referencedLinkingValues.add(value);
-                    }
-                } catch (SQLException e) {
-                    throw new RuntimeException(e);
-                }
-            });
+        List<ColumnValuePairs> referencedIds = new ArrayList<>(new LinkedHashSet<>(c.stream().map(UniqueData::getIdColumns).toList()));
+        Map<ColumnValuePairs, List<Object>> referencedLinkingValues = new HashMap<>();
+        for (List<ColumnValuePairs> batch : Lists.partition(referencedIds, BATCH_SIZE)) {
+            selectReferencedLinkingValues(transaction, batch, referencedLinkingValues);
 
-            transaction.update(updateStatement, () -> {
-                List<Object> values = new ArrayList<>(holderLinkingValues.size() + referencedLinkingValues.size());
-                values.addAll(holderLinkingValues);
-                values.addAll(referencedLinkingValues);
+            transaction.update(buildUpdateStatement(holder.getDataManager(), metadata, batch.size()), () -> {
+                List<Object> values = new ArrayList<>(batch.size() * (joinTableToDataTableLinks.size() + joinTableToReferencedTableLinks.size()));
+                for (ColumnValuePairs idColumns : batch) {
+                    values.addAll(holderLinkingValues);
+                    values.addAll(referencedLinkingValues.get(idColumns));
+                }
                 return values;
             });
         }
@@ -451,8 +458,6 @@ public class PersistentManyToManyCollectionImpl<T extends UniqueData> implements
 
         DataAccessor dataAccessor = holder.getDataManager().getDataAccessor();
         SQLTransaction.Statement selectDataIdsStatement = buildSelectDataIdsStatement();
-        SQLTransaction.Statement selectReferencedIdsStatement = buildSelectReferencedIdsStatement();
-        SQLTransaction.Statement removeStatement = buildRemoveStatement();
         List<Link> joinTableToDataTableLinks = metadata.getJoinTableToDataTableLinks(holder.getDataManager());
         List<Link> joinTableToReferencedTableLinks = metadata.getJoinTableToReferencedTableLinks(holder.getDataManager());
 
@@ -474,26 +479,17 @@ public class PersistentManyToManyCollectionImpl<T extends UniqueData> implements
         });
 
 
-        for (ColumnValuePairs idColumns : idsToRemove) {
-            List<Object> referencedIdValues = idColumns.stream().map(ColumnValuePair::value).toList();
-            List<Object> referencedLinkingValues = new ArrayList<>(joinTableToReferencedTableLinks.size());
-            transaction.query(selectReferencedIdsStatement, () -> referencedIdValues, rs -> {
-                try {
-                    Preconditions.checkState(rs.next(), "Could not find referenced row in database");
-                    for (Link _entry : joinTableToReferencedTableLinks) {
-                        String referencedColumn = _entry.columnInReferencedTable();
-                        Object value = rs.getObject(referencedColumn);
-                        referencedLinkingValues.add(value);
-                    }
-                } catch (SQLException e) {
-                    throw new RuntimeException(e);
-                }
-            });
+        List<ColumnValuePairs> referencedIds = new ArrayList<>(new LinkedHashSet<>(idsToRemove));
+        Map<ColumnValuePairs, List<Object>> referencedLinkingValues = new HashMap<>();
+        for (List<ColumnValuePairs> batch : Lists.partition(referencedIds, BATCH_SIZE)) {
+            selectReferencedLinkingValues(transaction, batch, referencedLinkingValues);
 
-            transaction.update(removeStatement, () -> {
-                List<Object> values = new ArrayList<>(holderLinkingValues.size() + referencedLinkingValues.size());
+            transaction.update(buildRemoveStatement(batch.size()), () -> {
+                List<Object> values = new ArrayList<>(holderLinkingValues.size() + batch.size() * joinTableToReferencedTableLinks.size());
                 values.addAll(holderLinkingValues);
-                values.addAll(referencedLinkingValues);
+                for (ColumnValuePairs idColumns : batch) {
+                    values.addAll(referencedLinkingValues.get(idColumns));
+                }
                 return values;
             });
         }
@@ -508,43 +504,103 @@ public class PersistentManyToManyCollectionImpl<T extends UniqueData> implements
     }
 
     /**
-     * get the ids for the referenced type that are linked to the holder
+     * Load this collection for many holders at once, using a single query per batch.
+     * The ids are seeded into the relation cache, so reading the collection on any of the holders afterward does not need to query the database.
      *
-     * @return set of id column value pairs for the referenced type
+     * @param dataManager the data manager
+     * @param metadata    the collection metadata
+     * @param holders     the holders to load the collection for
      */
-    public Set<ColumnValuePairs> getIds() {
-        Preconditions.checkArgument(!holder.isDeleted(), "Cannot get entries on a deleted UniqueData instance");
-        Set<ColumnValuePairs> ids = new HashSet<>();
-        UniqueDataMetadata holderMetadata = holder.getMetadata();
-        UniqueDataMetadata target = holder.getDataManager().getMetadata(type);
-        DataAccessor dataAccessor = holder.getDataManager().getDataAccessor();
+    public static void preload(DataManager dataManager, PersistentManyToManyCollectionMetadata metadata, Collection<? extends UniqueData> holders) {
+        if (holders.isEmpty()) {
+            return;
+        }
 
-        String joinTableSchema = metadata.getJoinTableSchema(holder.getDataManager());
-        String joinTableName = metadata.getJoinTableName(holder.getDataManager());
-        List<Link> joinTableToDataTableLinks = metadata.getJoinTableToDataTableLinks(holder.getDataManager());
-        List<Link> joinTableToReferencedTableLinks = metadata.getJoinTableToReferencedTableLinks(holder.getDataManager());
+        UniqueDataMetadata holderMetadata = dataManager.getMetadata(metadata.getHolderClass());
+        UniqueDataMetadata target = dataManager.getMetadata(metadata.getReferencedType());
+        List<String> holderIdColumnNames = holderMetadata.idColumns().stream().map(ColumnMetadata::name).toList();
+        Set<ColumnValuePairs> referencedIds = new HashSet<>();
 
-        StringBuilder sqlBuilder = new StringBuilder();
-        sqlBuilder.append("SELECT ");
-        for (ColumnMetadata columnMetadata : target.idColumns()) {
-            sqlBuilder.append("_target.\"").append(columnMetadata.name()).append("\" AS \"t_").append(columnMetadata.name()).append("\", ");
+        for (List<? extends UniqueData> batch : Lists.partition(new ArrayList<>(holders), BATCH_SIZE)) {
+            StringBuilder sqlBuilder = new StringBuilder();
+            sqlBuilder.append("SELECT ");
+            for (String idColumnName : holderIdColumnNames) {
+                sqlBuilder.append("_data.\"").append(idColumnName).append("\" AS \"h_").append(idColumnName).append("\", ");
+            }
+            for (ColumnMetadata columnMetadata : target.idColumns()) {
+                sqlBuilder.append("_target.\"").append(columnMetadata.name()).append("\" AS \"t_").append(columnMetadata.name()).append("\", ");
+            }
+            sqlBuilder.setLength(sqlBuilder.length() - 2);
+            appendFromJoinTable(sqlBuilder, dataManager, metadata, holderMetadata, target);
+            sqlBuilder.append(" WHERE ");
+            SQLUtils.appendInClause(sqlBuilder, "_data", holderIdColumnNames, batch.size());
+            @Language("SQL") String sql = sqlBuilder.toString();
+
+            // every holder gets an entry, so empty collections are cached too
+            Map<ColumnValuePairs, Set<ColumnValuePairs>> idsByHolder = new LinkedHashMap<>();
+            List<Object> values = new ArrayList<>(batch.size() * holderIdColumnNames.size());
+            for (UniqueData holder : batch) {
+                List<Object> holderIdValues = getHolderIdValues(holderMetadata, holder.getIdColumns());
+                values.addAll(holderIdValues);
+                idsByHolder.putIfAbsent(toHolderIds(holderIdColumnNames, holderIdValues), new HashSet<>());
+            }
+
+            long generation = dataManager.getRelationCacheGeneration();
+            try (ResultSet rs = dataManager.getDataAccessor().executeQuery(sql, values)) {
+                while (rs.next()) {
+                    List<Object> holderIdValues = new ArrayList<>(holderIdColumnNames.size());
+                    for (String idColumnName : holderIdColumnNames) {
+                        holderIdValues.add(rs.getObject("h_" + idColumnName));
+                    }
+                    ColumnValuePair[] idColumns = new ColumnValuePair[target.idColumns().size()];
+                    int i = 0;
+                    for (ColumnMetadata columnMetadata : target.idColumns()) {
+                        idColumns[i++] = new ColumnValuePair(columnMetadata.name(), rs.getObject("t_" + columnMetadata.name()));
+                    }
+                    ColumnValuePairs entryIds = new ColumnValuePairs(idColumns);
+                    idsByHolder.computeIfAbsent(toHolderIds(holderIdColumnNames, holderIdValues), k -> new HashSet<>()).add(entryIds);
+                    referencedIds.add(entryIds);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+
+            for (Map.Entry<ColumnValuePairs, Set<ColumnValuePairs>> entry : idsByHolder.entrySet()) {
+                ColumnValuePairs holderIds = entry.getKey();
+                SelectQuery query = buildSelectIdsQuery(dataManager, metadata, holderMetadata, target, getHolderIdValues(holderMetadata, holderIds));
+                Set<Cell> dependencies = buildDependencies(dataManager, metadata, holderMetadata, target, holderIds);
+                dataManager.putRelationCacheResult(query, new ReadCacheResult(Set.copyOf(entry.getValue()), dependencies), generation);
+            }
         }
 
-        for (Link entry : joinTableToDataTableLinks) {
-            String joinColumn = entry.columnInReferringTable();
-            sqlBuilder.append("\"").append(joinTableSchema).append("\".\"").append(joinTableName)
-                    .append("\".\"").append(joinColumn).append("\" AS \"jd_")
-                    .append(joinColumn).append("\", ");
+        dataManager.getInstances(metadata.getReferencedType(), referencedIds);
+    }
+
+    private static List<Object> getHolderIdValues(UniqueDataMetadata holderMetadata, ColumnValuePairs holderIdColumns) {
+        List<Object> values = new ArrayList<>(holderMetadata.idColumns().size());
+        for (ColumnMetadata idColumn : holderMetadata.idColumns()) {
+            values.add(ColumnValuePairs.getValue(idColumn.name(), holderIdColumns));
         }
+        return values;
+    }
 
-        for (Link entry : joinTableToReferencedTableLinks) {
-            String joinColumn = entry.columnInReferringTable();
-            sqlBuilder.append("\"").append(joinTableSchema).append("\".\"").append(joinTableName)
-                    .append("\".\"").append(joinColumn).append("\" AS \"jr_")
-                    .append(joinColumn).append("\", ");
+    private static ColumnValuePairs toHolderIds(List<String> holderIdColumnNames, List<Object> holderIdValues) {
+        ColumnValuePair[] pairs = new ColumnValuePair[holderIdColumnNames.size()];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = new ColumnValuePair(holderIdColumnNames.get(i), holderIdValues.get(i));
         }
+        return new ColumnValuePairs(pairs);
+    }
+
+    /**
+     * Append the FROM clause joining the join table to the holder table, aliased {@code _data}, and the referenced table, aliased {@code _target}.
+     */
+    private static void appendFromJoinTable(StringBuilder sqlBuilder, DataManager dataManager, PersistentManyToManyCollectionMetadata metadata, UniqueDataMetadata holderMetadata, UniqueDataMetadata target) {
+        String joinTableSchema = metadata.getJoinTableSchema(dataManager);
+        String joinTableName = metadata.getJoinTableName(dataManager);
+        List<Link> joinTableToDataTableLinks = metadata.getJoinTableToDataTableLinks(dataManager);
+        List<Link> joinTableToReferencedTableLinks = metadata.getJoinTableToReferencedTableLinks(dataManager);
 
-        sqlBuilder.setLength(sqlBuilder.length() - 2);
         sqlBuilder.append(" FROM \"").append(joinTableSchema).append("\".\"").append(joinTableName).append("\" ");
         sqlBuilder.append("INNER JOIN \"").append(holderMetadata.schema()).append("\".\"").append(holderMetadata.table()).append("\" _data ON ");
         for (Link entry : joinTableToDataTableLinks) {
@@ -560,37 +616,74 @@ public class PersistentManyToManyCollectionImpl<T extends UniqueData> implements
             sqlBuilder.append("_target.\"").append(referencedColumn).append("\" = \"").append(joinTableSchema).append("\".\"").append(joinTableName).append("\".\"").append(joinColumn).append("\" AND ");
         }
         sqlBuilder.setLength(sqlBuilder.length() - 5);
+    }
 
-        sqlBuilder.append(" WHERE ");
+    private static SelectQuery buildSelectIdsQuery(DataManager dataManager, PersistentManyToManyCollectionMetadata metadata, UniqueDataMetadata holderMetadata, UniqueDataMetadata target, List<Object> holderIdValues) {
+        StringBuilder sqlBuilder = new StringBuilder();
+        sqlBuilder.append("SELECT ");
+        for (ColumnMetadata columnMetadata : target.idColumns()) {
+            sqlBuilder.append("_target.\"").append(columnMetadata.name()).append("\" AS \"t_").append(columnMetadata.name()).append("\", ");
+        }
+        sqlBuilder.setLength(sqlBuilder.length() - 2);
+        appendFromJoinTable(sqlBuilder, dataManager, metadata, holderMetadata, target);
 
-        for (ColumnValuePair columnValuePair : holder.getIdColumns()) {
-            sqlBuilder.append("_data.\"").append(columnValuePair.column()).append("\" = ? AND ");
+        sqlBuilder.append(" WHERE ");
+        for (ColumnMetadata columnMetadata : holderMetadata.idColumns()) {
+            sqlBuilder.append("_data.\"").append(columnMetadata.name()).append("\" = ? AND ");
         }
         sqlBuilder.setLength(sqlBuilder.length() - 5);
 
         @Language("SQL") String sql = sqlBuilder.toString();
+        return new SelectQuery("PersistentManyToManyCollectionImpl#getIds", sql, holderIdValues);
+    }
 
-        List<Object> values = new ArrayList<>();
-        for (ColumnValuePair columnValuePair : holder.getIdColumns()) {
-            values.add(columnValuePair.value());
-        }
-
-//        SelectQuery query = new SelectQuery(sql, values);
-//
-//        ReadCacheResult result = holder.getDataManager().getRelationCacheResult(query);
-//        if (result != null) {
-//            return (Set<ColumnValuePairs>) result.getValues();
-//        }
-//
-//
-//        Set<Cell> dependencies = new HashSet<>();
-//
-//        for (Link entry : joinTableToDataTableLinks) {
-//            String dataColumn = entry.columnInReferencedTable();
-//            dependencies.add(new Cell(holderMetadata.schema(), holderMetadata.table(), dataColumn, holder.getIdColumns()));
-//        }
-
-        try (ResultSet rs = dataAccessor.executeQuery(sql, values)) {
+    /**
+     * An entry changes when the holder's link columns change, or when any row of the join table or referenced table starts or stops matching them.
+     * Rows can join the collection at any time, so the join table and referenced table are tracked by column, table wide.
+     */
+    private static Set<Cell> buildDependencies(DataManager dataManager, PersistentManyToManyCollectionMetadata metadata, UniqueDataMetadata holderMetadata, UniqueDataMetadata target, ColumnValuePairs holderIdColumns) {
+        String joinTableSchema = metadata.getJoinTableSchema(dataManager);
+        String joinTableName = metadata.getJoinTableName(dataManager);
+        Set<Cell> dependencies = new HashSet<>();
+        for (Link entry : metadata.getJoinTableToDataTableLinks(dataManager)) {
+            dependencies.add(new Cell(holderMetadata.schema(), holderMetadata.table(), entry.columnInReferencedTable(), holderIdColumns));
+            dependencies.add(Cell.wholeColumn(joinTableSchema, joinTableName, entry.columnInReferringTable()));
+        }
+        for (Link entry : metadata.getJoinTableToReferencedTableLinks(dataManager)) {
+            dependencies.add(Cell.wholeColumn(joinTableSchema, joinTableName, entry.columnInReferringTable()));
+            dependencies.add(Cell.wholeColumn(target.schema(), target.table(), entry.columnInReferencedTable()));
+        }
+        for (ColumnValuePair columnValuePair : holderIdColumns) {
+            dependencies.add(new Cell(holderMetadata.schema(), holderMetadata.table(), columnValuePair.column(), holderIdColumns));
+        }
+        for (ColumnMetadata idColumn : target.idColumns()) {
+            dependencies.add(Cell.wholeColumn(target.schema(), target.table(), idColumn.name()));
+        }
+        return dependencies;
+    }
+
+    /**
+     * get the ids for the referenced type that are linked to the holder
+     *
+     * @return set of id column value pairs for the referenced type
+     */
+    @SuppressWarnings("unchecked")
+    public Set<ColumnValuePairs> getIds() {
+        Preconditions.checkArgument(!holder.isDeleted(), "Cannot get entries on a deleted UniqueData instance");
+        DataManager dataManager = holder.getDataManager();
+        UniqueDataMetadata holderMetadata = holder.getMetadata();
+        UniqueDataMetadata target = dataManager.getMetadata(type);
+        DataAccessor dataAccessor = dataManager.getDataAccessor();
+
+        SelectQuery query = buildSelectIdsQuery(dataManager, metadata, holderMetadata, target, getHolderIdValues(holderMetadata, holder.getIdColumns()));
+        ReadCacheResult cached = dataManager.getRelationCacheResult(query);
+        if (cached != null) {
+            return new HashSet<>((Set<ColumnValuePairs>) cached.getValue());
+        }
+
+        long generation = dataManager.getRelationCacheGeneration();
+        Set<ColumnValuePairs> ids = new HashSet<>();
+        try (ResultSet rs = dataAccessor.executeQuery(query.getSql(), query.getValues())) {
             while (rs.next()) {
                 int i = 0;
                 ColumnValuePair[] idColumns = new ColumnValuePair[target.idColumns().size()];
@@ -598,52 +691,14 @@ public class PersistentManyToManyCollectionImpl<T extends UniqueData> implements
                     Object value = rs.getObject("t_" + columnMetadata.name());
                     idColumns[i++] = new ColumnValuePair(columnMetadata.name(), value);
                 }
-                ColumnValuePairs entryIds = new ColumnValuePairs(idColumns);
-                ids.add(entryIds);
-
-//                ColumnValuePair[] joinIds = new ColumnValuePair[joinTableToDataTableLinks.size() + joinTableToReferencedTableLinks.size()];
-//
-//                int j = 0;
-//
-//                for (Link entry : joinTableToDataTableLinks) {
-//                    String joinColumn = entry.columnInReferringTable();
-//                    Object value = rs.getObject("jd_" + joinColumn);
-//                    joinIds[j++] = new ColumnValuePair(joinColumn, value);
-//                }
-//
-//                for (Link entry : joinTableToReferencedTableLinks) {
-//                    String joinColumn = entry.columnInReferringTable();
-//                    Object value = rs.getObject("jr_" + joinColumn);
-//                    joinIds[j++] = new ColumnValuePair(joinColumn, value);
-//                }
-//
-//                ColumnValuePairs joinIdColumns = new ColumnValuePairs(joinIds);
-//
-//                for (Link link : joinTableToDataTableLinks) {
-//                    String joinColumn = link.columnInReferringTable();
-//                    dependencies.add(new Cell(joinTableSchema, joinTableName, joinColumn, joinIdColumns));
-//                }
-//                for (Link link : joinTableToReferencedTableLinks) {
-//                    String joinColumn = link.columnInReferringTable();
-//                    String referencedColumn = link.columnInReferencedTable();
-//                    dependencies.add(new Cell(target.schema(), target.table(), referencedColumn, entryIds));
-//                    dependencies.add(new Cell(joinTableSchema, joinTableName, joinColumn, joinIdColumns));
-//                }
-//
-//                for (ColumnMetadata theirIdColumns : target.idColumns()) {
-//                    String column = theirIdColumns.name();
-//                    dependencies.add(new Cell(target.schema(), target.table(), column, entryIds));
-//                }
-
+                ids.add(new ColumnValuePairs(idColumns));
             }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
 
-//        ReadCacheResult newResult = new ReadCacheResult(ids, dependencies);
-//        holder.getDataManager().putRelationCacheResult(query, newResult);
-
-        //note about caching: we need a way to invalidate entries when a new row is now a valid part of the collection.
+        Set<Cell> dependencies = buildDependencies(dataManager, metadata, holderMetadata, target, holder.getIdColumns());
+        dataManager.putRelationCacheResult(query, new ReadCacheResult(Set.copyOf(ids), dependencies), generation);
 
         return ids;
     }
@@ -668,31 +723,64 @@ public class PersistentManyToManyCollectionImpl<T extends UniqueData> implements
         return SQLTransaction.Statement.of(sql, sql);
     }
 
-    private SQLTransaction.Statement buildSelectReferencedIdsStatement() {
+    /**
+     * Queue a single query which resolves the linking values for every referenced id in the batch.
+     */
+    private void selectReferencedLinkingValues(SQLTransaction transaction, List<ColumnValuePairs> batch, Map<ColumnValuePairs, List<Object>> referencedLinkingValues) {
+        UniqueDataMetadata typeMetadata = holder.getDataManager().getMetadata(type);
+        List<Link> joinTableToReferencedTableLinks = metadata.getJoinTableToReferencedTableLinks(holder.getDataManager());
+        List<Object> referencedIdValues = new ArrayList<>(batch.size() * typeMetadata.idColumns().size());
+        for (ColumnValuePairs idColumns : batch) {
+            for (ColumnValuePair columnValuePair : idColumns) {
+                referencedIdValues.add(columnValuePair.value());
+            }
+        }
+
+        transaction.query(buildSelectReferencedIdsStatement(batch.size()), () -> referencedIdValues, rs -> {
+            try {
+                while (rs.next()) {
+                    int i = 0;
+                    ColumnValuePair[] idColumns = new ColumnValuePair[typeMetadata.idColumns().size()];
+                    for (ColumnMetadata columnMetadata : typeMetadata.idColumns()) {
+                        idColumns[i++] = new ColumnValuePair(columnMetadata.name(), rs.getObject("i_" + columnMetadata.name()));
+                    }
+                    List<Object> linkingValues = new ArrayList<>(joinTableToReferencedTableLinks.size());
+                    for (Link entry : joinTableToReferencedTableLinks) {
+                        linkingValues.add(rs.getObject("l_" + entry.columnInReferencedTable()));
+                    }
+                    referencedLinkingValues.put(new ColumnValuePairs(idColumns), linkingValues);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+
+            for (ColumnValuePairs idColumns : batch) {
+                Preconditions.checkState(referencedLinkingValues.containsKey(idColumns), "Could not find referenced row in database: %s", idColumns);
+            }
+        });
+    }
+
+    private SQLTransaction.Statement buildSelectReferencedIdsStatement(int rows) {
         UniqueDataMetadata typeMetadata = holder.getDataManager().getMetadata(type);
         List<Link> joinTableToReferencedTableLinks = metadata.getJoinTableToReferencedTableLinks(holder.getDataManager());
 
         StringBuilder sqlBuilder = new StringBuilder();
         sqlBuilder.append("SELECT ");
+        for (ColumnMetadata theirIdColumn : typeMetadata.idColumns()) {
+            sqlBuilder.append("\"").append(theirIdColumn.name()).append("\" AS \"i_").append(theirIdColumn.name()).append("\", ");
+        }
         for (Link entry : joinTableToReferencedTableLinks) {
             String referencedColumn = entry.columnInReferencedTable();
-            sqlBuilder.append("\"").append(referencedColumn).append("\", ");
+            sqlBuilder.append("\"").append(referencedColumn).append("\" AS \"l_").append(referencedColumn).append("\", ");
         }
         sqlBuilder.setLength(sqlBuilder.length() - 2);
         sqlBuilder.append(" FROM \"").append(typeMetadata.schema()).append("\".\"").append(typeMetadata.table()).append("\" WHERE ");
-        for (ColumnMetadata theirIdColumn : typeMetadata.idColumns()) {
-            sqlBuilder.append("\"").append(theirIdColumn.name()).append("\" = ? AND ");
-        }
-        sqlBuilder.setLength(sqlBuilder.length() - 5);
+        SQLUtils.appendInClause(sqlBuilder, typeMetadata.idColumns().stream().map(ColumnMetadata::name).toList(), rows);
         @Language("SQL") String sql = sqlBuilder.toString();
         return SQLTransaction.Statement.of(sql, sql);
     }
 
-    private SQLTransaction.Statement buildUpdateStatement() {
-        return buildUpdateStatement(holder.getDataManager(), metadata);
-    }
-
-    private SQLTransaction.Statement buildRemoveStatement() {
+    private SQLTransaction.Statement buildRemoveStatement(int rows) {
         List<Link> joinTableToDataTableLinks = metadata.getJoinTableToDataTableLinks(holder.getDataManager());
         List<Link> joinTableToReferencedTableLinks = metadata.getJoinTableToReferencedTableLinks(holder.getDataManager());
 
@@ -704,11 +792,7 @@ public class PersistentManyToManyCollectionImpl<T extends UniqueData> implements
             String joinColumn = entry.columnInReferringTable();
             sqlBuilder.append("\"").append(joinColumn).append("\" = ? AND ");
         }
-        for (Link entry : joinTableToReferencedTableLinks) {
-            String joinColumn = entry.columnInReferringTable();
-            sqlBuilder.append("\"").append(joinColumn).append("\" = ? AND ");
-        }
-        sqlBuilder.setLength(sqlBuilder.length() - 5);
+        SQLUtils.appendInClause(sqlBuilder, joinTableToReferencedTableLinks.stream().map(Link::columnInReferringTable).toList(), rows);
         @Language("SQL") String sql = sqlBuilder.toString();
         return SQLTransaction.Statement.of(sql, sql);
     }
@@ -1,6 +1,7 @@
 package net.staticstudios.data.impl.data;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import net.staticstudios.data.DataManager;
 import net.staticstudios.data.OneToMany;
 import net.staticstudios.data.PersistentCollection;
@@ -402,12 +403,103 @@ public class PersistentOneToManyCollectionImpl<T extends UniqueData> implements
         return SQLTransaction.Statement.of(sql, sql);
     }
 
-    public Set<ColumnValuePairs> getIds() {
+    /**
+     * Load this collection for many holders at once, using a single query per batch.
+     * The ids are seeded into the relation cache, so reading the collection on any of the holders afterward does not need to query the database.
+     *
+     * @param dataManager the data manager
+     * @param metadata    the collection metadata
+     * @param holders     the holders to load the collection for
+     */
+    public static void preload(DataManager dataManager, PersistentOneToManyCollectionMetadata metadata, Collection<? extends UniqueData> holders) {
+        if (holders.isEmpty()) {
+            return;
+        }
+
+        UniqueDataMetadata holderMetadata = dataManager.getMetadata(metadata.getHolderClass());
+        UniqueDataMetadata typeMetadata = dataManager.getMetadata(metadata.getReferencedType());
+        List<String> holderIdColumnNames = holderMetadata.idColumns().stream().map(ColumnMetadata::name).toList();
+        Set<ColumnValuePairs> referencedIds = new HashSet<>();
+
+        for (List<? extends UniqueData> batch : Lists.partition(new ArrayList<>(holders), 500)) {
+            StringBuilder sqlBuilder = new StringBuilder();
+            sqlBuilder.append("SELECT ");
+            for (String idColumnName : holderIdColumnNames) {
+                sqlBuilder.append("_holder.\"").append(idColumnName).append("\" AS \"h_").append(idColumnName).append("\", ");
+            }
+            for (ColumnMetadata idColumn : typeMetadata.idColumns()) {
+                sqlBuilder.append("_target.\"").append(idColumn.name()).append("\" AS \"t_").append(idColumn.name()).append("\", ");
+            }
+            sqlBuilder.setLength(sqlBuilder.length() - 2);
+            sqlBuilder.append(" FROM \"").append(typeMetadata.schema()).append("\".\"").append(typeMetadata.table()).append("\" _target");
+            sqlBuilder.append(" INNER JOIN \"").append(holderMetadata.schema()).append("\".\"").append(holderMetadata.table()).append("\" _holder ON ");
+            for (Link entry : metadata.getLinks()) {
+                sqlBuilder.append("_target.\"").append(entry.columnInReferencedTable()).append("\" = ");
+                sqlBuilder.append("_holder.\"").append(entry.columnInReferringTable()).append("\" AND ");
+            }
+            sqlBuilder.setLength(sqlBuilder.length() - 5);
+            sqlBuilder.append(" WHERE ");
+            SQLUtils.appendInClause(sqlBuilder, "_holder", holderIdColumnNames, batch.size());
+            @Language("SQL") String sql = sqlBuilder.toString();
+
+            // every holder gets an entry, so empty collections are cached too
+            Map<ColumnValuePairs, Set<ColumnValuePairs>> idsByHolder = new LinkedHashMap<>();
+            List<Object> values = new ArrayList<>(batch.size() * holderIdColumnNames.size());
+            for (UniqueData holder : batch) {
+                List<Object> holderIdValues = getHolderIdValues(holderMetadata, holder.getIdColumns());
+                values.addAll(holderIdValues);
+                idsByHolder.putIfAbsent(toHolderIds(holderIdColumnNames, holderIdValues), new HashSet<>());
+            }
+
+            long generation = dataManager.getRelationCacheGeneration();
+            try (ResultSet rs = dataManager.getDataAccessor().executeQuery(sql, values)) {
+                while (rs.next()) {
+                    List<Object> holderIdValues = new ArrayList<>(holderIdColumnNames.size());
+                    for (String idColumnName : holderIdColumnNames) {
+                        holderIdValues.add(rs.getObject("h_" + idColumnName));
+                    }
+                    ColumnValuePair[] idColumns = new ColumnValuePair[typeMetadata.idColumns().size()];
+                    int i = 0;
+                    for (ColumnMetadata columnMetadata : typeMetadata.idColumns()) {
+                        idColumns[i++] = new ColumnValuePair(columnMetadata.name(), rs.getObject("t_" + columnMetadata.name()));
+                    }
+                    ColumnValuePairs theirIdColumns = new ColumnValuePairs(idColumns);
+                    idsByHolder.computeIfAbsent(toHolderIds(holderIdColumnNames, holderIdValues), k -> new HashSet<>()).add(theirIdColumns);
+                    referencedIds.add(theirIdColumns);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+
+            for (Map.Entry<ColumnValuePairs, Set<ColumnValuePairs>> entry : idsByHolder.entrySet()) {
+                ColumnValuePairs holderIds = entry.getKey();
+                SelectQuery query = buildSelectIdsQuery(holderMetadata, typeMetadata, metadata.getLinks(), getHolderIdValues(holderMetadata, holderIds));
+                Set<Cell> dependencies = buildDependencies(holderMetadata, typeMetadata, metadata.getLinks(), holderIds);
+                dataManager.putRelationCacheResult(query, new ReadCacheResult(Set.copyOf(entry.getValue()), dependencies), generation);
+            }
+        }
+
+        dataManager.getInstances(metadata.getReferencedType(), referencedIds);
+    }
+
+    private static List<Object> getHolderIdValues(UniqueDataMetadata holderMetadata, ColumnValuePairs holderIdColumns) {
+        List<Object> values = new ArrayList<>(holderMetadata.idColumns().size());
+        for (ColumnMetadata idColumn : holderMetadata.idColumns()) {
+            values.add(ColumnValuePairs.getValue(idColumn.name(), holderIdColumns));
+        }
+        return values;
+    }
+
+    private static ColumnValuePairs toHolderIds(List<String> holderIdColumnNames, List<Object> holderIdValues) {
+        ColumnValuePair[] pairs = new ColumnValuePair[holderIdColumnNames.size()];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = new ColumnValuePair(holderIdColumnNames.get(i), holderIdValues.get(i));
+        }
+        return new ColumnValuePairs(pairs);
+    }
+
+    private static SelectQuery buildSelectIdsQuery(UniqueDataMetadata holderMetadata, UniqueDataMetadata typeMetadata, List<Link> link, List<Object> holderIdValues) {
         // note: we need the join since we support linking on non-id columnsInReferringTable
-        Preconditions.checkArgument(!holder.isDeleted(), "Cannot get entries on a deleted UniqueData instance");
-        UniqueDataMetadata holderMetadata = holder.getMetadata();
-        UniqueDataMetadata typeMetadata = holder.getDataManager().getMetadata(type);
-        DataAccessor dataAccessor = holder.getDataManager().getDataAccessor();
         StringBuilder sqlBuilder = new StringBuilder();
         sqlBuilder.append("SELECT ");
         for (ColumnMetadata columnMetadata : typeMetadata.idColumns()) {
@@ -428,28 +520,51 @@ public class PersistentOneToManyCollectionImpl<T extends UniqueData> implements
         sqlBuilder.setLength(sqlBuilder.length() - 5);
         sqlBuilder.append(" WHERE ");
 
-        for (ColumnValuePair columnValuePair : holder.getIdColumns()) {
-            sqlBuilder.append("\"").append(holderMetadata.schema()).append("\".\"").append(holderMetadata.table()).append("\".\"").append(columnValuePair.column()).append("\" = ? AND ");
+        for (ColumnMetadata columnMetadata : holderMetadata.idColumns()) {
+            sqlBuilder.append("\"").append(holderMetadata.schema()).append("\".\"").append(holderMetadata.table()).append("\".\"").append(columnMetadata.name()).append("\" = ? AND ");
         }
         sqlBuilder.setLength(sqlBuilder.length() - 5);
 
         @Language("SQL") String sql = sqlBuilder.toString();
+        return new SelectQuery("PersistentOneToManyCollectionImpl#getIds", sql, holderIdValues);
+    }
 
-        List<Object> values = new ArrayList<>();
-        for (ColumnValuePair columnValuePair : holder.getIdColumns()) {
-            values.add(columnValuePair.value());
+    /**
+     * An entry changes when the holder's link columns change, or when any row of the referenced table starts or stops matching them.
+     * The latter can't be tracked per row, since a new row can join the collection, so the link columns are tracked table wide.
+     */
+    private static Set<Cell> buildDependencies(UniqueDataMetadata holderMetadata, UniqueDataMetadata typeMetadata, List<Link> link, ColumnValuePairs holderIdColumns) {
+        Set<Cell> dependencies = new HashSet<>();
+        for (Link entry : link) {
+            dependencies.add(new Cell(holderMetadata.schema(), holderMetadata.table(), entry.columnInReferringTable(), holderIdColumns));
+            dependencies.add(Cell.wholeColumn(typeMetadata.schema(), typeMetadata.table(), entry.columnInReferencedTable()));
+        }
+        for (ColumnValuePair columnValuePair : holderIdColumns) {
+            dependencies.add(new Cell(holderMetadata.schema(), holderMetadata.table(), columnValuePair.column(), holderIdColumns));
+        }
+        for (ColumnMetadata idColumn : typeMetadata.idColumns()) {
+            dependencies.add(Cell.wholeColumn(typeMetadata.schema(), typeMetadata.table(), idColumn.name()));
+        }
+        return dependencies;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Set<ColumnValuePairs> getIds() {
+        Preconditions.checkArgument(!holder.isDeleted(), "Cannot get entries on a deleted UniqueData instance");
+        DataManager dataManager = holder.getDataManager();
+        UniqueDataMetadata holderMetadata = holder.getMetadata();
+        UniqueDataMetadata typeMetadata = dataManager.getMetadata(type);
+        DataAccessor dataAccessor = dataManager.getDataAccessor();
+
+        SelectQuery query = buildSelectIdsQuery(holderMetadata, typeMetadata, link, getHolderIdValues(holderMetadata, holder.getIdColumns()));
+        ReadCacheResult cached = dataManager.getRelationCacheResult(query);
+        if (cached != null) {
+            return new HashSet<>((Set<ColumnValuePairs>) cached.getValue());
         }
-//
-//        SelectQuery query = new SelectQuery(sql, values);
-//        ReadCacheResult result = holder.getDataManager().getRelationCacheResult(query);
-//
-//        if (result != null) {
-//            Set<ColumnValuePairs> cachedIds = (Set<ColumnValuePairs>) result.getValues();
-//            return cachedIds;
-//        }
 
+        long generation = dataManager.getRelationCacheGeneration();
         Set<ColumnValuePairs> ids = new HashSet<>();
-        try (ResultSet rs = dataAccessor.executeQuery(sql, values)) {
+        try (ResultSet rs = dataAccessor.executeQuery(query.getSql(), query.getValues())) {
             while (rs.next()) {
                 int i = 0;
                 ColumnValuePair[] idColumns = new ColumnValuePair[typeMetadata.idColumns().size()];
@@ -463,25 +578,8 @@ public class PersistentOneToManyCollectionImpl<T extends UniqueData> implements
             throw new RuntimeException(e);
         }
 
-//        Set<Cell> dependencies = new HashSet<>();
-//        for (Link entry : link) {
-//            String myColumn = entry.columnInReferringTable();
-//            String theirColumn = entry.columnInReferencedTable();
-//            dependencies.add(new Cell(holderMetadata.schema(), holderMetadata.table(), myColumn, holder.getIdColumns()));
-//            for (ColumnValuePairs themIdColumns : ids) {
-//                dependencies.add(new Cell(typeMetadata.schema(), typeMetadata.table(), theirColumn, themIdColumns));
-//            }
-//        }
-//
-//        for (ColumnValuePairs themIdColumns : ids) {
-//            for (ColumnMetadata idColumn : typeMetadata.idColumns()) {
-//                dependencies.add(new Cell(typeMetadata.schema(), typeMetadata.table(), idColumn.name(), themIdColumns));
-//            }
-//        }
-//
-//        holder.getDataManager().putRelationCacheResult(query, new ReadCacheResult(ids, dependencies));
-
-        //note about caching: we need a way to invalidate entries when a new row is now a valid part of the collection.
+        Set<Cell> dependencies = buildDependencies(holderMetadata, typeMetadata, link, holder.getIdColumns());
+        dataManager.putRelationCacheResult(query, new ReadCacheResult(Set.copyOf(ids), dependencies), generation);
 
         return ids;
     }
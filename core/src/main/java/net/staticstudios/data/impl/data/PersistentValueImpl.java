@@ -134,6 +134,11 @@ public class PersistentValueImpl<T> implements PersistentValue<T> {
         throw new UnsupportedOperationException("Dynamically adding update handlers is not supported");
     }
 
+    @Override
+    public <U extends UniqueData> PersistentValue<T> onUpdateBatch(Class<U> holderClass, long windowMillis, BatchValueUpdateHandler<U, T> updateHandler) {
+        throw new UnsupportedOperationException("Dynamically adding update handlers is not supported");
+    }
+
     @Override
     public T get() {
         Preconditions.checkArgument(!holder.isDeleted(), "Cannot get value from a deleted UniqueData instance");
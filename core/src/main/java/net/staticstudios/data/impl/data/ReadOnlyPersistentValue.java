@@ -2,6 +2,7 @@ package net.staticstudios.data.impl.data;
 
 import net.staticstudios.data.PersistentValue;
 import net.staticstudios.data.UniqueData;
+import net.staticstudios.data.util.BatchValueUpdateHandler;
 import net.staticstudios.data.util.PersistentValueMetadata;
 import net.staticstudios.data.util.UniqueDataMetadata;
 import net.staticstudios.data.util.ValueUpdateHandler;
@@ -67,6 +68,11 @@ public class ReadOnlyPersistentValue<T> implements PersistentValue<T> {
         throw new UnsupportedOperationException("Read-only value cannot have update handlers");
     }
 
+    @Override
+    public <U extends UniqueData> PersistentValue<T> onUpdateBatch(Class<U> holderClass, long windowMillis, BatchValueUpdateHandler<U, T> updateHandler) {
+        throw new UnsupportedOperationException("Read-only value cannot have update handlers");
+    }
+
     @Override
     public T get() {
         return value;
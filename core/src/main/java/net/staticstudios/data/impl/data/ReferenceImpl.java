@@ -1,6 +1,7 @@
 package net.staticstudios.data.impl.data;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import net.staticstudios.data.DataManager;
 import net.staticstudios.data.OneToOne;
 import net.staticstudios.data.Reference;
@@ -77,6 +78,112 @@ public class ReferenceImpl<T extends UniqueData> implements Reference<T> {
         return metadataMap;
     }
 
+    /**
+     * Resolve this reference for many holders at once, using a single query per batch.
+     * The results are seeded into the relation cache, so calling {@link #get()} on any of the holders afterward does not need to query the database.
+     *
+     * @param dataManager the data manager
+     * @param metadata    the reference metadata
+     * @param holders     the holders to resolve the reference for
+     */
+    public static void preload(DataManager dataManager, ReferenceMetadata metadata, Collection<? extends UniqueData> holders) {
+        if (holders.isEmpty()) {
+            return;
+        }
+
+        UniqueDataMetadata holderMetadata = dataManager.getMetadata(metadata.holderClass());
+        UniqueDataMetadata referencedMetadata = dataManager.getMetadata(metadata.referencedClass());
+        List<String> holderIdColumnNames = holderMetadata.idColumns().stream().map(ColumnMetadata::name).toList();
+        Set<ColumnValuePairs> seenHolders = new HashSet<>();
+        List<ColumnValuePairs> referencedIds = new ArrayList<>();
+
+        for (List<? extends UniqueData> batch : Lists.partition(new ArrayList<>(holders), 500)) {
+            StringBuilder sqlBuilder = new StringBuilder();
+            sqlBuilder.append("SELECT ");
+            for (String idColumnName : holderIdColumnNames) {
+                sqlBuilder.append("_referring.\"").append(idColumnName).append("\" AS \"h_").append(idColumnName).append("\", ");
+            }
+            for (ColumnMetadata idColumn : referencedMetadata.idColumns()) {
+                sqlBuilder.append("_referenced.\"").append(idColumn.name()).append("\" AS \"r_").append(idColumn.name()).append("\", ");
+            }
+            sqlBuilder.setLength(sqlBuilder.length() - 2);
+            sqlBuilder.append(" FROM \"").append(referencedMetadata.schema()).append("\".\"").append(referencedMetadata.table()).append("\" _referenced");
+            sqlBuilder.append(" INNER JOIN \"").append(holderMetadata.schema()).append("\".\"").append(holderMetadata.table()).append("\" _referring ON ");
+            for (Link entry : metadata.links()) {
+                sqlBuilder.append("_referenced.\"").append(entry.columnInReferencedTable()).append("\" = ");
+                sqlBuilder.append("_referring.\"").append(entry.columnInReferringTable()).append("\" AND ");
+            }
+            sqlBuilder.setLength(sqlBuilder.length() - 5);
+            sqlBuilder.append(" WHERE ");
+            SQLUtils.appendInClause(sqlBuilder, "_referring", holderIdColumnNames, batch.size());
+            @Language("SQL") String sql = sqlBuilder.toString();
+
+            List<Object> values = new ArrayList<>(batch.size() * holderIdColumnNames.size());
+            for (UniqueData holder : batch) {
+                for (String idColumnName : holderIdColumnNames) {
+                    values.add(ColumnValuePairs.getValue(idColumnName, holder.getIdColumns()));
+                }
+            }
+
+            long generation = dataManager.getRelationCacheGeneration();
+            try (ResultSet rs = dataManager.getDataAccessor().executeQuery(sql, values)) {
+                while (rs.next()) {
+                    ColumnValuePair[] holderIdColumns = new ColumnValuePair[holderIdColumnNames.size()];
+                    for (int i = 0; i < holderIdColumnNames.size(); i++) {
+                        holderIdColumns[i] = new ColumnValuePair(holderIdColumnNames.get(i), rs.getObject("h_" + holderIdColumnNames.get(i)));
+                    }
+                    ColumnValuePairs holderIds = new ColumnValuePairs(holderIdColumns);
+                    if (!seenHolders.add(holderIds)) {
+                        continue;
+                    }
+
+                    List<ColumnMetadata> refIdColumns = referencedMetadata.idColumns();
+                    ColumnValuePair[] idColumns = new ColumnValuePair[refIdColumns.size()];
+                    boolean hasNull = false;
+                    for (int i = 0; i < refIdColumns.size(); i++) {
+                        Object val = rs.getObject("r_" + refIdColumns.get(i).name());
+                        if (val == null) {
+                            hasNull = true;
+                            break;
+                        }
+                        idColumns[i] = new ColumnValuePair(refIdColumns.get(i).name(), val);
+                    }
+                    if (hasNull) {
+                        continue;
+                    }
+                    ColumnValuePairs theirIdColumns = new ColumnValuePairs(idColumns);
+
+                    SelectQuery query = metadata.buildSelectReferencedColumnValuePairsSelectQuery(dataManager, holderIds.stream().map(ColumnValuePair::value).toList());
+                    Set<Cell> dependencies = buildDependencies(holderMetadata, referencedMetadata, metadata.links(), holderIds, theirIdColumns);
+                    dataManager.putRelationCacheResult(query, new ReadCacheResult(theirIdColumns, dependencies), generation);
+                    referencedIds.add(theirIdColumns);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        dataManager.getInstances(metadata.referencedClass(), referencedIds);
+    }
+
+    private static Set<Cell> buildDependencies(UniqueDataMetadata holderMetadata, UniqueDataMetadata referencedMetadata, List<Link> links, ColumnValuePairs holderIdColumns, ColumnValuePairs theirIdColumns) {
+        Set<Cell> dependencies = new HashSet<>();
+        for (Link entry : links) {
+            String myColumn = entry.columnInReferringTable();
+            String theirColumn = entry.columnInReferencedTable();
+            dependencies.add(new Cell(holderMetadata.schema(), holderMetadata.table(), myColumn, holderIdColumns));
+            dependencies.add(new Cell(referencedMetadata.schema(), referencedMetadata.table(), theirColumn, theirIdColumns));
+        }
+
+        for (ColumnValuePair columnValuePair : holderIdColumns) {
+            dependencies.add(new Cell(holderMetadata.schema(), holderMetadata.table(), columnValuePair.column(), holderIdColumns));
+        }
+        for (ColumnValuePair columnValuePair : theirIdColumns) {
+            dependencies.add(new Cell(referencedMetadata.schema(), referencedMetadata.table(), columnValuePair.column(), theirIdColumns));
+        }
+        return dependencies;
+    }
+
     @Override
     public UniqueData getHolder() {
         return holder;
@@ -159,21 +266,7 @@ public class ReferenceImpl<T extends UniqueData> implements Reference<T> {
 
             ColumnValuePairs theirIdColumns = new ColumnValuePairs(idColumns);
 
-            Set<Cell> dependencies = new HashSet<>();
-            for (Link entry : link) {
-                String myColumn = entry.columnInReferringTable();
-                String theirColumn = entry.columnInReferencedTable();
-                dependencies.add(new Cell(holder.getMetadata().schema(), holder.getMetadata().table(), myColumn, holder.getIdColumns()));
-                dependencies.add(new Cell(referencedMetadata.schema(), referencedMetadata.table(), theirColumn, theirIdColumns));
-            }
-
-            for (ColumnValuePair columnValuePair : holder.getIdColumns()) {
-                dependencies.add(new Cell(holder.getMetadata().schema(), holder.getMetadata().table(), columnValuePair.column(), holder.getIdColumns()));
-            }
-            for (ColumnValuePair columnValuePair : theirIdColumns) {
-                dependencies.add(new Cell(referencedMetadata.schema(), referencedMetadata.table(), columnValuePair.column(), theirIdColumns));
-            }
-
+            Set<Cell> dependencies = buildDependencies(holder.getMetadata(), referencedMetadata, link, holder.getIdColumns(), theirIdColumns);
             ReadCacheResult cacheResult = new ReadCacheResult(theirIdColumns, dependencies);
             dataManager.putRelationCacheResult(query, cacheResult, generation);
 
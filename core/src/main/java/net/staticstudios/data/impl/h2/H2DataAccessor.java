@@ -10,6 +10,7 @@ import net.staticstudios.data.impl.DataAccessor;
 import net.staticstudios.data.impl.h2.trigger.H2ReadCacheInvalidatorTrigger;
 import net.staticstudios.data.impl.h2.trigger.H2UpdateHandlerTrigger;
 import net.staticstudios.data.impl.pg.PostgresListener;
+import net.staticstudios.data.impl.redis.RedisChangeMessage;
 import net.staticstudios.data.impl.redis.RedisEncodedValue;
 import net.staticstudios.data.impl.redis.RedisEvent;
 import net.staticstudios.data.impl.redis.RedisListener;
@@ -51,6 +52,8 @@ public class H2DataAccessor implements DataAccessor {
     private static final String SET_REFERENTIAL_INTEGRITY_TRUE = "SET REFERENTIAL_INTEGRITY TRUE";
     private static final Gson GSON = new Gson();
     private final TaskQueue taskQueue;
+    private final RedisPipelineQueue redisQueue;
+    private final String redisAppId;
     private final String jdbcUrl;
     private final ThreadLocal<Connection> threadConnection = new ThreadLocal<>();
     private final ThreadLocal<Map<String, PreparedStatement>> threadPreparedStatementCache = new ThreadLocal<>();
@@ -72,8 +75,10 @@ public class H2DataAccessor implements DataAccessor {
 
     private final SlidingWindowCounter h2QueryCounter = new SlidingWindowCounter(10_000, 20);
     private final SlidingWindowCounter h2UpdateCounter = new SlidingWindowCounter(10_000, 20);
+    private final QueryLatencyTracker h2LatencyTracker;
+    private final QueryLatencyTracker postgresLatencyTracker;
 
-    public H2DataAccessor(DataManager dataManager, PostgresListener postgresListener, RedisListener redisListener, TaskQueue taskQueue) {
+    public H2DataAccessor(DataManager dataManager, PostgresListener postgresListener, RedisListener redisListener, TaskQueue taskQueue, RedisPipelineQueue redisQueue) {
         try {
             Class.forName("org.h2.Driver");
         } catch (ClassNotFoundException e) {
@@ -81,10 +86,14 @@ public class H2DataAccessor implements DataAccessor {
         }
 
         this.taskQueue = taskQueue;
+        this.redisQueue = redisQueue;
+        this.redisAppId = RedisEncodedValue.appId(dataManager.getApplicationId());
         this.postgresListener = postgresListener;
         this.redisListener = redisListener;
         this.jdbcUrl = "jdbc:h2:mem:static-data-cache;DB_CLOSE_DELAY=-1;LOCK_MODE=3;CACHE_SIZE=65536;QUERY_CACHE_SIZE=1024;CACHE_TYPE=SOFT_LRU";
         this.dataManager = dataManager;
+        this.h2LatencyTracker = new QueryLatencyTracker(1_000, dataManager.getSlowQueryThresholdMillis());
+        this.postgresLatencyTracker = new QueryLatencyTracker(1_000, dataManager.getSlowQueryThresholdMillis());
 
         postgresListener.addHandler(notification -> {
             try {
@@ -316,8 +325,16 @@ public class H2DataAccessor implements DataAccessor {
                         h2Connection.commit();
                     }
                 }
+                // truncating does not fire row triggers, so any in-heap index over these tables is stale now
+                for (SchemaTable schemaTable : schemaTables) {
+                    dataManager.invalidateHeapIndex(schemaTable.schema(), schemaTable.table());
+                }
             }
             for (String partialKey : redisPartialKeys) {
+                RedisUtils.KeyTemplate template = RedisUtils.compile(partialKey, dataManager);
+                if (template == null) {
+                    continue; // we aren't tracking this table
+                }
                 String cursor = ScanParams.SCAN_POINTER_START;
                 ScanParams scanParams = new ScanParams().match(partialKey).count(1000);
 
@@ -325,17 +342,31 @@ public class H2DataAccessor implements DataAccessor {
                     ScanResult<String> scanResult = jedis.scan(cursor, scanParams);
                     cursor = scanResult.getCursor();
 
+                    List<String> keys = new ArrayList<>(scanResult.getResult().size());
+                    List<RedisUtils.FullyDeconstructedKey> deconstructedKeys = new ArrayList<>(scanResult.getResult().size());
                     for (String key : scanResult.getResult()) {
-                        RedisUtils.FullyDeconstructedKey fullyDeconstructedKey = RedisUtils.fullyDeconstruct(key, dataManager);
-                        if (fullyDeconstructedKey == null) {
-                            continue; // we aren't tracking this table
+                        RedisUtils.DeconstructedKey deconstructedKey;
+                        try {
+                            deconstructedKey = RedisUtils.deconstruct(key);
+                        } catch (IllegalArgumentException e) {
+                            continue;
                         }
-
-                        setRedisValueCache(fullyDeconstructedKey.holderSchema(), fullyDeconstructedKey.holderTable(), fullyDeconstructedKey.identifier(), fullyDeconstructedKey.idColumns(), decodeRedis(jedis.get(key)).value());
+                        if (!deconstructedKey.partialKey().equals(partialKey)) {
+                            continue; // the glob matched a key of a different shape
+                        }
+                        keys.add(key);
+                        deconstructedKeys.add(template.decode(deconstructedKey));
                     }
+                    if (keys.isEmpty()) {
+                        continue;
+                    }
+
+                    // one round trip for the whole page rather than one GET per key
+                    List<String> encodedValues = jedis.mget(keys.toArray(String[]::new));
+                    setRedisValueCaches(deconstructedKeys, encodedValues);
                 } while (!cursor.equals(ScanParams.SCAN_POINTER_START));
 
-                redisListener.listen(partialKey, this::handleRedisEvent);
+                redisListener.listen(partialKey, (event, key, deconstructedKey, value) -> handleRedisEvent(template, event, deconstructedKey, value));
             }
         }).join();
 
@@ -399,7 +430,9 @@ public class H2DataAccessor implements DataAccessor {
                         preparedStatement.setObject(i++, value);
                     }
                     logger.trace("[H2] {}", sqlStatement.getH2Sql());
-                    preparedStatement.executeUpdate();
+                    long start = System.nanoTime();
+                    int updated = preparedStatement.executeUpdate();
+                    recordH2(sqlStatement.getH2Sql(), sqlStatement.getValues(), start, updated);
                     h2UpdateCounter.increment();
                 }
             }
@@ -416,7 +449,9 @@ public class H2DataAccessor implements DataAccessor {
                                 preparedStatement.setObject(i + 1, value);
                             }
                             logger.debug("[DB] {}", statement.getPgSql());
-                            preparedStatement.executeUpdate();
+                            long start = System.nanoTime();
+                            int updated = preparedStatement.executeUpdate();
+                            recordPostgres(statement.getPgSql(), start, updated);
                         }
                     }
                 } finally {
@@ -453,7 +488,45 @@ public class H2DataAccessor implements DataAccessor {
         }
         logger.trace("[H2] {}", sql);
         h2QueryCounter.increment();
-        return cachePreparedStatement.executeQuery();
+        long start = System.nanoTime();
+        ResultSet rs = cachePreparedStatement.executeQuery();
+        recordH2(sql, values, start, -1);
+        return new H2ProxyResultSet(rs, rows -> h2LatencyTracker.recordRows(sql, rows));
+    }
+
+    @Override
+    public ResultSet openCursor(@Language("SQL") String sql, List<Object> values, int fetchSize) throws SQLException {
+        Connection connection = getConnection();
+        // embedded H2 builds the whole result before the first next() unless execution is lazy, in which case the fetch size would do nothing
+        setLazyQueryExecution(connection, true);
+        try {
+            PreparedStatement preparedStatement = connection.prepareStatement(sql);
+            try {
+                preparedStatement.setFetchSize(fetchSize);
+                for (int i = 0; i < values.size(); i++) {
+                    preparedStatement.setObject(i + 1, values.get(i));
+                }
+                preparedStatement.closeOnCompletion();
+                logger.trace("[H2] {}", sql);
+                h2QueryCounter.increment();
+                long start = System.nanoTime();
+                ResultSet rs = preparedStatement.executeQuery();
+                recordH2(sql, values, start, -1);
+                return new H2ProxyResultSet(rs, rows -> h2LatencyTracker.recordRows(sql, rows));
+            } catch (SQLException e) {
+                preparedStatement.close();
+                throw e;
+            }
+        } finally {
+            // the open result stays lazy, but other queries on this connection go back to being fully materialized
+            setLazyQueryExecution(connection, false);
+        }
+    }
+
+    private void setLazyQueryExecution(Connection connection, boolean lazy) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SET LAZY_QUERY_EXECUTION " + (lazy ? "TRUE" : "FALSE"));
+        }
     }
 
     @Override
@@ -473,13 +546,17 @@ public class H2DataAccessor implements DataAccessor {
                 }
                 logger.trace("[H2] {}", h2Sql);
                 Consumer<ResultSet> resultHandler = operation.getResultHandler();
+                long start = System.nanoTime();
                 if (resultHandler == null) {
-                    cachePreparedStatement.executeUpdate();
+                    int updated = cachePreparedStatement.executeUpdate();
+                    recordH2(h2Sql, values, start, updated);
                     h2UpdateCounter.increment();
                 } else {
                     h2QueryCounter.increment();
-                    try (ResultSet rs = cachePreparedStatement.executeQuery()) {
-                        resultHandler.accept(rs);
+                    ResultSet rs = cachePreparedStatement.executeQuery();
+                    recordH2(h2Sql, values, start, -1);
+                    try (ResultSet proxy = new H2ProxyResultSet(rs, rows -> h2LatencyTracker.recordRows(h2Sql, rows))) {
+                        resultHandler.accept(proxy);
                     }
                 }
             }
@@ -566,17 +643,12 @@ public class H2DataAccessor implements DataAccessor {
 
         Runnable runnable = () -> {
             if (value == null) {
-                taskQueue.submitTask((connection, jedis) -> {
-                    jedis.del(key);
-                });
+                redisQueue.del(key);
+            } else if (dataManager.isPublishRedisValues()) {
+                String encoded = encodeRedis(value);
+                redisQueue.setAndPublish(key, encoded, expirationSeconds, RedisListener.CHANGE_CHANNEL, GSON.toJson(new RedisChangeMessage(key, encoded)));
             } else {
-                taskQueue.submitTask((connection, jedis) -> {
-                    if (expirationSeconds > 0) {
-                        jedis.setex(key, expirationSeconds, encodeRedis(value));
-                    } else {
-                        jedis.set(key, encodeRedis(value));
-                    }
-                });
+                redisQueue.set(key, encodeRedis(value), expirationSeconds);
             }
         };
 
@@ -601,33 +673,74 @@ public class H2DataAccessor implements DataAccessor {
         dataManager.callCachedValueUpdateHandlers(deconstructedKey.partialKey(), deconstructedKey.encodedIdNames(), deconstructedKey.encodedIdValues(), prev, value);
     }
 
-    private void setRedisValueCache(String holderSchema, String holderTable, String identifier, ColumnValuePairs idColumns, String value) {
-        String columnName = RedisUtils.getVirtualColumnName(identifier);
+    /**
+     * Copy a page of Redis values into their virtual columns, batching the updates per statement and committing once for the whole page.
+     *
+     * @param keys          the keys of the values
+     * @param encodedValues the encoded values, in the same order as the keys. A value may be null if its key expired after it was scanned.
+     */
+    private void setRedisValueCaches(List<RedisUtils.FullyDeconstructedKey> keys, List<String> encodedValues) throws SQLException {
+        Map<String, PreparedStatement> batches = new LinkedHashMap<>();
+        Connection connection = getConnection();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            for (int index = 0; index < keys.size(); index++) {
+                String encoded = encodedValues.get(index);
+                if (encoded == null) {
+                    continue;
+                }
+                RedisUtils.FullyDeconstructedKey key = keys.get(index);
+                String value;
+                try {
+                    value = decodeRedis(encoded).value();
+                } catch (Exception e) {
+                    logger.warn("Skipping Redis value for {}.{} {} {}, it could not be decoded", key.holderSchema(), key.holderTable(), key.identifier(), key.idColumns(), e);
+                    continue;
+                }
+                String columnName = RedisUtils.getVirtualColumnName(key.identifier());
 
-        StringBuilder sqlBuilder = new StringBuilder().append("UPDATE \"").append(holderSchema).append("\".\"").append(holderTable).append("\" SET \"").append(columnName).append("\" = ? WHERE ");
-        for (ColumnValuePair columnValuePair : idColumns) {
-            String name = columnValuePair.column();
-            sqlBuilder.append("\"").append(name).append("\" = ? AND ");
-        }
-        sqlBuilder.setLength(sqlBuilder.length() - 5);
-        @Language("SQL") String sql = sqlBuilder.toString();
+                StringBuilder sqlBuilder = new StringBuilder().append("UPDATE \"").append(key.holderSchema()).append("\".\"").append(key.holderTable()).append("\" SET \"").append(columnName).append("\" = ? WHERE ");
+                for (ColumnValuePair columnValuePair : key.idColumns()) {
+                    String name = columnValuePair.column();
+                    sqlBuilder.append("\"").append(name).append("\" = ? AND ");
+                }
+                sqlBuilder.setLength(sqlBuilder.length() - 5);
+                @Language("SQL") String sql = sqlBuilder.toString();
 
-        try {
-            PreparedStatement preparedStatement = prepareStatement(sql);
-            preparedStatement.setString(1, value);
-            int i = 2;
-            for (ColumnValuePair columnValuePair : idColumns) {
-                preparedStatement.setObject(i++, columnValuePair.value());
+                PreparedStatement preparedStatement = batches.get(sql);
+                if (preparedStatement == null) {
+                    preparedStatement = prepareStatement(sql);
+                    batches.put(sql, preparedStatement);
+                }
+                preparedStatement.setString(1, value);
+                int i = 2;
+                for (ColumnValuePair columnValuePair : key.idColumns()) {
+                    preparedStatement.setObject(i++, columnValuePair.value());
+                }
+                preparedStatement.addBatch();
             }
-            logger.trace("[H2] {}", sql);
-            preparedStatement.executeUpdate();
-            h2UpdateCounter.increment();
 
-            if (!getConnection().getAutoCommit()) {
-                getConnection().commit();
+            for (Map.Entry<String, PreparedStatement> batch : batches.entrySet()) {
+                logger.trace("[H2] {}", batch.getKey());
+                long start = System.nanoTime();
+                int[] updated = batch.getValue().executeBatch();
+                int rows = 0;
+                for (int count : updated) {
+                    rows += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+                }
+                recordH2(batch.getKey(), List.of(), start, rows);
+                h2UpdateCounter.increment();
             }
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+            connection.commit();
+        } catch (Exception e) {
+            connection.rollback();
+            for (PreparedStatement preparedStatement : batches.values()) {
+                preparedStatement.clearBatch(); // these statements are cached, don't leave a half-built batch behind for the next page
+            }
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
         }
     }
 
@@ -823,7 +936,9 @@ public class H2DataAccessor implements DataAccessor {
                         realPreparedStatement.setObject(++i, value);
                     }
                     logger.debug("[DB] {}", statement.getPgSql());
-                    realPreparedStatement.executeUpdate();
+                    long start = System.nanoTime();
+                    int updated = realPreparedStatement.executeUpdate();
+                    recordPostgres(statement.getPgSql(), start, updated);
                 }
                 connection.commit();
             } catch (SQLException e) {
@@ -859,29 +974,24 @@ public class H2DataAccessor implements DataAccessor {
         }
     }
 
-    private void handleRedisEvent(RedisEvent event, String key, @Nullable String value) {
+    private void handleRedisEvent(RedisUtils.KeyTemplate template, RedisEvent event, RedisUtils.DeconstructedKey deconstructedKey, @Nullable String value) {
         RedisEncodedValue redisEncoded = value == null ? null : decodeRedis(value);
         String redisValue = redisEncoded == null ? null : redisEncoded.value();
 
-        if (redisEncoded != null && Objects.equals(redisEncoded.staticDataAppName(), dataManager.getApplicationName())) {
+        if (redisEncoded != null && (Objects.equals(redisEncoded.staticDataAppName(), redisAppId) || Objects.equals(redisEncoded.staticDataAppName(), dataManager.getApplicationName()))) {
             return; // ignore events from ourselves
         }
 
-        RedisUtils.FullyDeconstructedKey fullyDeconstructedKey = RedisUtils.fullyDeconstruct(key, dataManager);
-        if (fullyDeconstructedKey == null) {
-            return; // we aren't tracking this key
-        }
+        RedisUtils.FullyDeconstructedKey fullyDeconstructedKey = template.decode(deconstructedKey);
         if (event == RedisEvent.SET) {
             String prev = getAndSetRedisValueCache(fullyDeconstructedKey.holderSchema(), fullyDeconstructedKey.holderTable(), fullyDeconstructedKey.identifier(), fullyDeconstructedKey.idColumns(), redisValue);
             if (prev != null && Objects.equals(prev, redisValue)) {
                 return;
             }
-            RedisUtils.DeconstructedKey deconstructedKey = RedisUtils.deconstruct(key);
             dataManager.callCachedValueUpdateHandlers(deconstructedKey.partialKey(), deconstructedKey.encodedIdNames(), deconstructedKey.encodedIdValues(), prev, redisValue);
         } else if (event == RedisEvent.DEL || event == RedisEvent.EXPIRED) {
             String prev = getAndSetRedisValueCache(fullyDeconstructedKey.holderSchema(), fullyDeconstructedKey.holderTable(), fullyDeconstructedKey.identifier(), fullyDeconstructedKey.idColumns(), null);
             if (prev != null) {
-                RedisUtils.DeconstructedKey deconstructedKey = RedisUtils.deconstruct(key);
                 dataManager.callCachedValueUpdateHandlers(deconstructedKey.partialKey(), deconstructedKey.encodedIdNames(), deconstructedKey.encodedIdValues(), prev, null);
             }
         }
@@ -934,16 +1044,59 @@ public class H2DataAccessor implements DataAccessor {
     }
 
     private String encodeRedis(Object value) {
-        return GSON.toJson(new RedisEncodedValue(dataManager.getApplicationName(), value.toString()));
+        return RedisEncodedValue.encode(redisAppId, value.toString());
     }
 
     private RedisEncodedValue decodeRedis(String encoded) {
-        return GSON.fromJson(encoded, RedisEncodedValue.class);
+        return RedisEncodedValue.decode(encoded);
+    }
+
+    private void recordH2(String sql, List<Object> values, long start, int updated) {
+        long nanos = System.nanoTime() - start;
+        if (updated >= 0) {
+            h2LatencyTracker.recordRows(sql, updated);
+        }
+        if (!h2LatencyTracker.record(sql, nanos)) {
+            return;
+        }
+        if (updated >= 0) {
+            logger.warn("[H2] Slow statement took {}ms: {}", TimeUnit.NANOSECONDS.toMillis(nanos), sql);
+            return;
+        }
+        logger.warn("[H2] Slow query took {}ms: {}\n{}", TimeUnit.NANOSECONDS.toMillis(nanos), sql, explain(sql, values));
+    }
+
+    private void recordPostgres(String sql, long start, int updated) {
+        long nanos = System.nanoTime() - start;
+        postgresLatencyTracker.recordRows(sql, updated);
+        if (postgresLatencyTracker.record(sql, nanos)) {
+            logger.warn("[DB] Slow statement took {}ms: {}", TimeUnit.NANOSECONDS.toMillis(nanos), sql);
+        }
+    }
+
+    private String explain(String sql, List<Object> values) {
+        // use a fresh statement, the cached one for this sql still has an open result set
+        try (PreparedStatement preparedStatement = getConnection().prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 0; i < values.size(); i++) {
+                preparedStatement.setObject(i + 1, values.get(i));
+            }
+            StringBuilder sb = new StringBuilder();
+            try (ResultSet rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    sb.append(rs.getString(1)).append("\n");
+                }
+            }
+            return sb.toString().trim();
+        } catch (SQLException e) {
+            return "Failed to explain query: " + e.getMessage();
+        }
     }
 
     @Override
     public void populateStatistics(StaticDataStatistics stats) {
         stats.setQueriesPerSecond((long) getH2QueriesPerSecond());
         stats.setUpdatesPerSecond((long) getH2UpdatesPerSecond());
+        stats.setH2QueryStatistics(h2LatencyTracker.snapshot());
+        stats.setPostgresQueryStatistics(postgresLatencyTracker.snapshot());
     }
 }
@@ -72,6 +72,7 @@ public class H2ReadCacheInvalidatorTrigger implements Trigger {
         dataAccessor.onCommit(() -> {
             dataManager.invalidateRelationCache(columnNames, schema, table, columnNames, newRow);
             dataManager.invalidateCellCache(columnNames, schema, table, columnNames, newRow);
+            dataManager.invalidateQueryCache(schema, table);
         });
     }
 
@@ -88,6 +89,7 @@ public class H2ReadCacheInvalidatorTrigger implements Trigger {
         dataAccessor.onCommit(() -> {
             dataManager.invalidateRelationCache(columnNames, schema, table, changedColumns, oldRow);
             dataManager.invalidateCellCache(columnNames, schema, table, changedColumns, oldRow);
+            dataManager.invalidateQueryCache(schema, table);
         });
     }
 
@@ -95,6 +97,7 @@ public class H2ReadCacheInvalidatorTrigger implements Trigger {
         dataAccessor.onCommit(() -> {
             dataManager.invalidateRelationCache(columnNames, schema, table, columnNames, oldRow);
             dataManager.invalidateCellCache(columnNames, schema, table, columnNames, oldRow);
+            dataManager.invalidateQueryCache(schema, table);
         });
     }
 }
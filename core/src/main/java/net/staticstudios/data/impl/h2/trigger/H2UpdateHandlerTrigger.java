@@ -3,6 +3,7 @@ package net.staticstudios.data.impl.h2.trigger;
 import net.staticstudios.data.DataManager;
 import net.staticstudios.data.UniqueData;
 import net.staticstudios.data.impl.h2.H2DataAccessor;
+import net.staticstudios.data.util.HandlerDispatchTable;
 import net.staticstudios.data.util.TriggerCause;
 import org.h2.api.Trigger;
 import org.jetbrains.annotations.Nullable;
@@ -25,6 +26,7 @@ public class H2UpdateHandlerTrigger implements Trigger {
     private H2DataAccessor dataAccessor;
     private String schema;
     private String table;
+    private volatile @Nullable HandlerDispatchTable dispatchTable;
 
     @Override
     public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) throws SQLException {
@@ -55,61 +57,81 @@ public class H2UpdateHandlerTrigger implements Trigger {
             logger.trace("Schema change detected (or first run). Old name names: {}, new name names: {}", columnNames, columns);
             columnNames.clear();
             columnNames.addAll(columns);
+            dispatchTable = null;
+        }
+
+        HandlerDispatchTable dispatchTable = this.dispatchTable;
+        if (dispatchTable == null || dispatchTable.generation() != dataManager.getHandlerGeneration()) {
+            dispatchTable = dataManager.createHandlerDispatchTable(schema, table, columnNames);
+            this.dispatchTable = dispatchTable;
         }
 
 
         if (oldRow == null && newRow != null) {
             logger.trace("Insert detected: newRow={}", (Object) newRow);
-            handleInsert(newRow);
+            handleInsert(dispatchTable, newRow);
         } else if (newRow == null && oldRow != null) {
             logger.trace("Delete detected: oldRow={}", (Object) oldRow);
-            handleDelete(oldRow);
+            handleDelete(dispatchTable, oldRow);
         } else if (oldRow != null) {
             logger.trace("Update detected: oldRow={}, newRow={}", oldRow, newRow);
-            handleUpdate(oldRow, newRow);
+            handleUpdate(dispatchTable, oldRow, newRow);
         }
     }
 
-    private void handleInsert(Object[] newRow) {
+    private void handleInsert(HandlerDispatchTable dispatchTable, Object[] newRow) {
         dataAccessor.onCommit(() -> {
-            dataManager.callCollectionChangeHandlers(columnNames, schema, table, columnNames, new Object[newRow.length], newRow, TriggerCause.INSERT, null);
-            dataManager.callReferenceUpdateHandlers(columnNames, schema, table, columnNames, null, newRow, TriggerCause.INSERT);
+            dataManager.updateHeapIndex(columnNames, schema, table, null, newRow);
+            dataManager.callLiveQueries(columnNames, schema, table, null, newRow);
+            dataManager.publishRowChange(columnNames, schema, table, null, newRow);
+            dataManager.callCollectionChangeHandlers(dispatchTable, columnNames, new Object[newRow.length], newRow, TriggerCause.INSERT, null);
+            dataManager.callReferenceUpdateHandlers(dispatchTable, columnNames, null, newRow, TriggerCause.INSERT);
         });
     }
 
-    private void handleUpdate(Object[] oldRow, Object[] newRow) {
+    private void handleUpdate(HandlerDispatchTable dispatchTable, Object[] oldRow, Object[] newRow) {
         List<String> changedColumns = new ArrayList<>();
+        int[] changedOrdinals = new int[oldRow.length];
+        int changedCount = 0;
         for (int i = 0; i < oldRow.length; i++) {
             Object oldValue = oldRow[i];
             Object newValue = newRow[i];
             if (!Objects.equals(oldValue, newValue)) {
                 changedColumns.add(columnNames.get(i));
+                changedOrdinals[changedCount++] = i;
             }
         }
+        int finalChangedCount = changedCount;
 
         dataAccessor.onCommit(() -> {
+            dataManager.updateHeapIndex(columnNames, schema, table, oldRow, newRow);
+            dataManager.callLiveQueries(columnNames, schema, table, oldRow, newRow);
+            dataManager.publishRowChange(columnNames, schema, table, oldRow, newRow);
             for (String changedColumn : changedColumns) {
                 dataManager.updateIdColumns(columnNames, schema, table, changedColumn, oldRow, newRow);
             }
 
-            for (String changedColumn : changedColumns) {
-                dataManager.callPersistentValueUpdateHandlers(columnNames, schema, table, changedColumn, oldRow, newRow);
+            for (int i = 0; i < finalChangedCount; i++) {
+                dataManager.callPersistentValueUpdateHandlers(dispatchTable, changedOrdinals[i], oldRow, newRow);
             }
 
-            dataManager.callCollectionChangeHandlers(columnNames, schema, table, changedColumns, oldRow, newRow, TriggerCause.UPDATE, null);
-            dataManager.callReferenceUpdateHandlers(columnNames, schema, table, changedColumns, oldRow, newRow, TriggerCause.UPDATE);
+            dataManager.callCollectionChangeHandlers(dispatchTable, changedColumns, oldRow, newRow, TriggerCause.UPDATE, null);
+            dataManager.callReferenceUpdateHandlers(dispatchTable, changedColumns, oldRow, newRow, TriggerCause.UPDATE);
         });
     }
 
-    private void handleDelete(Object[] oldRow) {
+    private void handleDelete(HandlerDispatchTable dispatchTable, Object[] oldRow) {
 
         // we might want a snapshot later. before the data is actually gone, so create it now, if it'll be used later.
-        @Nullable UniqueData snapshot = dataManager.createSnapshotForCollectionRemoveHandlers(columnNames, schema, table, oldRow);
+        @Nullable UniqueData snapshot = dataManager.createSnapshotForCollectionRemoveHandlers(dispatchTable, oldRow);
 
         dataAccessor.onCommit(() -> {
-            dataManager.callCollectionChangeHandlers(columnNames, schema, table, columnNames, oldRow, new Object[oldRow.length], TriggerCause.DELETE, snapshot);
+            dataManager.updateHeapIndex(columnNames, schema, table, oldRow, null);
+            dataManager.callLiveQueries(columnNames, schema, table, oldRow, null);
+            dataManager.publishRowChange(columnNames, schema, table, oldRow, null);
+            dataManager.callCollectionChangeHandlers(dispatchTable, columnNames, oldRow, new Object[oldRow.length], TriggerCause.DELETE, snapshot);
 
-            dataManager.callReferenceUpdateHandlers(columnNames, schema, table, columnNames, oldRow, null, TriggerCause.DELETE);
+            dataManager.callReferenceUpdateHandlers(dispatchTable, columnNames, oldRow, null, TriggerCause.DELETE);
             dataManager.handleDelete(columnNames, schema, table, oldRow);
         });
     }
@@ -0,0 +1,11 @@
+package net.staticstudios.data.impl.redis;
+
+/**
+ * A message published alongside a SET, carrying the encoded value so receivers do not need to read the key back.
+ *
+ * @param key   the key which was set
+ * @param value the encoded value
+ */
+public record RedisChangeMessage(String key, String value) {
+
+}
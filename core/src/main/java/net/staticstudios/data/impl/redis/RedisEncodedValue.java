@@ -1,5 +1,46 @@
 package net.staticstudios.data.impl.redis;
 
+import com.google.gson.Gson;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * A value stored in Redis, along with the application which wrote it.
+ * Values are written in a compact frame: a marker character, the writer's 22 character app id and then the raw value.
+ * Values written as JSON by older versions are still read.
+ *
+ * @param staticDataAppName the app id of the writer, or the full application name for values in the JSON format
+ * @param value             the value
+ */
 public record RedisEncodedValue(String staticDataAppName, String value) {
+    private static final char FRAME_MARKER = '\u0001';
+    private static final int APP_ID_LENGTH = 22;
+    private static final Gson GSON = new Gson();
+
+    /**
+     * Get the short form of an application id used in encoded values.
+     *
+     * @param applicationId the application id
+     * @return the unpadded base64 form of the id
+     */
+    public static String appId(UUID applicationId) {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.putLong(applicationId.getMostSignificantBits());
+        buffer.putLong(applicationId.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static String encode(String appId, String value) {
+        return FRAME_MARKER + appId + value;
+    }
 
-}
\ No newline at end of file
+    public static RedisEncodedValue decode(String encoded) {
+        if (encoded.length() > APP_ID_LENGTH && encoded.charAt(0) == FRAME_MARKER) {
+            return new RedisEncodedValue(encoded.substring(1, APP_ID_LENGTH + 1), encoded.substring(APP_ID_LENGTH + 1));
+        }
+        // written as JSON by an older version
+        return GSON.fromJson(encoded, RedisEncodedValue.class);
+    }
+}
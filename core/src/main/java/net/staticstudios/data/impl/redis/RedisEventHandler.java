@@ -1,9 +1,10 @@
 package net.staticstudios.data.impl.redis;
 
+import net.staticstudios.data.util.redis.RedisUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public interface RedisEventHandler {
 
-    void handle(RedisEvent event, @NotNull String key, @Nullable String value);
+    void handle(RedisEvent event, @NotNull String key, @NotNull RedisUtils.DeconstructedKey deconstructedKey, @Nullable String value);
 }
@@ -1,33 +1,64 @@
 package net.staticstudios.data.impl.redis;
 
+import com.google.gson.Gson;
 import net.staticstudios.data.util.DataSourceConfig;
-import net.staticstudios.data.util.TaskQueue;
+import net.staticstudios.data.util.RedisPipelineQueue;
 import net.staticstudios.data.util.redis.RedisUtils;
 import net.staticstudios.utils.ShutdownStage;
 import net.staticstudios.utils.ThreadUtils;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPubSub;
 import redis.clients.jedis.exceptions.JedisConnectionException;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class RedisListener extends JedisPubSub {
+    /**
+     * The channel new values are published to when value publishing is enabled.
+     */
+    public static final String CHANGE_CHANNEL = "static-data:changes";
     private static final Logger logger = LoggerFactory.getLogger(RedisListener.class);
-    private final Set<String> listenedPartialKeys = ConcurrentHashMap.newKeySet();
-    private final Map<Pattern, RedisEventHandler> handlers = new ConcurrentHashMap<>();
-    private final TaskQueue taskQueue;
+    private static final Gson GSON = new Gson();
+    private final Map<String, RedisEventHandler> handlers = new ConcurrentHashMap<>();
+    private final RedisPipelineQueue redisQueue;
+    private final boolean publishedValues;
+    private final ExecutorService eventExecutor;
+    private CompletableFuture<Void> lastEvent = CompletableFuture.completedFuture(null);
 
-    public RedisListener(DataSourceConfig ds, TaskQueue taskQueue) {
-        this.taskQueue = taskQueue;
+    /**
+     * @param ds              the data source config
+     * @param redisQueue      the queue used to read values back after a SET keyspace event
+     * @param publishedValues whether to take new values from {@link #CHANGE_CHANNEL} instead of reading them back after SET keyspace events
+     */
+    public RedisListener(DataSourceConfig ds, RedisPipelineQueue redisQueue, boolean publishedValues) {
+        this.redisQueue = redisQueue;
+        this.publishedValues = publishedValues;
+        // handlers touch H2 and may run user code inline, so keep them off both the subscriber thread and the Redis lane
+        this.eventExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r);
+            thread.setName("RedisEventHandler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<String> patterns = new ArrayList<>();
+        for (RedisEvent event : RedisEvent.values()) {
+            patterns.add("__keyevent@0__:" + event.name().toLowerCase());
+        }
+        if (publishedValues) {
+            patterns.add(CHANGE_CHANNEL);
+        }
         Thread listenerThread = new Thread(() -> {
             try (Jedis jedis = new Jedis(ds.redisHost(), ds.redisPort())) {
-                jedis.psubscribe(this, Arrays.stream(RedisEvent.values()).map(e -> "__keyevent@0__:" + e.name().toLowerCase()).toArray(String[]::new));
+                jedis.psubscribe(this, patterns.toArray(String[]::new));
             } catch (JedisConnectionException e) {
                 if (ThreadUtils.isShuttingDown()) {
                     return;
@@ -40,39 +71,102 @@ public class RedisListener extends JedisPubSub {
         ThreadUtils.onShutdownRunSync(ShutdownStage.CLEANUP, () -> {
             this.punsubscribe();
             listenerThread.interrupt();
+            eventExecutor.shutdown();
         });
     }
 
 
+    /**
+     * Route keys matching the given partial key to a handler. Only the first handler registered for a partial key is kept.
+     *
+     * @param partialKey the partial key, as built by {@link RedisUtils#buildPartialRedisKey}
+     * @param handler    the handler
+     */
     public void listen(String partialKey, RedisEventHandler handler) {
-        if (listenedPartialKeys.add(partialKey)) {
-            handlers.put(RedisUtils.globToRegex(partialKey), handler);
-        }
+        handlers.putIfAbsent(partialKey, handler);
     }
 
     @Override
     public void onPMessage(String pattern, String channel, String key) {
         logger.trace("Received message: {} on channel: {} with pattern: {}", key, channel, pattern);
+        if (channel.equals(CHANGE_CHANNEL)) {
+            handleChangeMessage(key);
+            return;
+        }
         String eventString = channel.split(":")[1];
         RedisEvent event = RedisEvent.valueOf(eventString.toUpperCase());
         if (!key.startsWith("static-data:")) {
             return;
         }
 
-        for (Map.Entry<Pattern, RedisEventHandler> entry : handlers.entrySet()) {
-            if (entry.getKey().matcher(key).matches()) {
-                switch (event) {
-                    case SET -> taskQueue.submitTask((connection, jedis) -> {
-                        String encoded = jedis.get(key);
-                        if (encoded == null) {
-                            return;
-                        }
-                        entry.getValue().handle(event, key, encoded);
-                    });
-                    case DEL, EXPIRED -> entry.getValue().handle(event, key, null);
+        RedisUtils.DeconstructedKey deconstructedKey = deconstruct(key);
+        if (deconstructedKey == null) {
+            return;
+        }
+        RedisEventHandler handler = handlers.get(deconstructedKey.partialKey());
+        if (handler == null) {
+            return;
+        }
+        switch (event) {
+            case SET -> {
+                if (!publishedValues) {
+                    dispatch(handler, event, key, deconstructedKey, redisQueue.get(key));
                 }
+            }
+            case DEL, EXPIRED -> dispatch(handler, event, key, deconstructedKey, CompletableFuture.completedFuture(null));
+        }
+    }
+
+    private void handleChangeMessage(String message) {
+        try {
+            RedisChangeMessage change = GSON.fromJson(message, RedisChangeMessage.class);
+            if (change.key() == null || change.value() == null || !change.key().startsWith("static-data:")) {
+                return;
+            }
+
+            // the new value travels with the message, so unlike a keyspace event there is nothing to read back
+            RedisUtils.DeconstructedKey deconstructedKey = deconstruct(change.key());
+            if (deconstructedKey == null) {
                 return;
             }
+            RedisEventHandler handler = handlers.get(deconstructedKey.partialKey());
+            if (handler != null) {
+                dispatch(handler, RedisEvent.SET, change.key(), deconstructedKey, CompletableFuture.completedFuture(change.value()));
+            }
+        } catch (Exception e) {
+            logger.error("Error handling Redis change message {}", message, e);
+        }
+    }
+
+    /**
+     * Run a handler on the event executor once its value is available.
+     * Events are chained in the order they were received, so a SET whose value is still being read cannot be overtaken by a later DEL.
+     * Only called from the subscriber thread.
+     */
+    private void dispatch(RedisEventHandler handler, RedisEvent event, String key, RedisUtils.DeconstructedKey deconstructedKey, CompletableFuture<String> value) {
+        CompletableFuture<String> safeValue = value.exceptionally(e -> {
+            logger.error("Error reading Redis value for key {}", key, e);
+            return null;
+        });
+        lastEvent = lastEvent.thenCombineAsync(safeValue, (ignored, encoded) -> {
+            if (event == RedisEvent.SET && encoded == null) {
+                return null;
+            }
+            try {
+                handler.handle(event, key, deconstructedKey, encoded);
+            } catch (Exception e) {
+                logger.error("Error handling Redis event {} for key {}", event, key, e);
+            }
+            return null;
+        }, eventExecutor);
+    }
+
+    private @Nullable RedisUtils.DeconstructedKey deconstruct(String key) {
+        try {
+            return RedisUtils.deconstruct(key);
+        } catch (IllegalArgumentException e) {
+            logger.trace("Ignoring malformed key {}", key);
+            return null;
         }
     }
 }
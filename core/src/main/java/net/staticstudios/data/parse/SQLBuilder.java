@@ -1,6 +1,7 @@
 package net.staticstudios.data.parse;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterables;
 import net.staticstudios.data.*;
 import net.staticstudios.data.impl.data.PersistentManyToManyCollectionImpl;
 import net.staticstudios.data.util.*;
@@ -76,6 +77,9 @@ public class SQLBuilder {
         for (Class<? extends UniqueData> visitedClass : visited) {
             parseIndividualRelations(visitedClass, schemas);
         }
+        for (Class<? extends UniqueData> visitedClass : visited) {
+            parseIndividualIndexes(visitedClass, schemas);
+        }
 
         for (SQLSchema newSchema : schemas.values()) {
             if (!this.parsedSchemas.containsKey(newSchema.getName())) {
@@ -99,6 +103,10 @@ public class SQLBuilder {
                     newColumn.setTable(existingTable);
                     existingTable.addColumn(newColumn);
                 }
+                for (SQLIndex newIndex : newTable.getIndexes()) {
+                    newIndex.setTable(existingTable);
+                    existingTable.addIndex(newIndex);
+                }
             }
         }
 
@@ -177,7 +185,7 @@ public class SQLBuilder {
             for (SQLTable table : schema.getTables()) {
                 for (SQLColumn column : table.getColumns()) {
                     if (column.isIndexed() && !column.isUnique()) {
-                        String indexName = "idx_" + schema.getName() + "_" + table.getName() + "_" + column.getName();
+                        String indexName = SQLIndex.getNamePrefix(table) + column.getName();
                         @Language("SQL") String h2 = "CREATE INDEX IF NOT EXISTS " + indexName + " ON \"" + schema.getName() + "\".\"" + table.getName() + "\" (\"" + column.getName() + "\");";
                         if (column.isVirtual()) {
                             statements.add(DDLStatement.of(h2, ""));
@@ -186,6 +194,9 @@ public class SQLBuilder {
                         }
                     }
                 }
+                for (SQLIndex index : table.getIndexes()) {
+                    statements.add(getIndexDef(index));
+                }
             }
         }
 
@@ -264,6 +275,92 @@ public class SQLBuilder {
         return statements;
     }
 
+    /**
+     * Get the statements which drop the indexes this library created on a parsed table in a previous run, but which are no longer declared.
+     * Only indexes named with {@link SQLIndex#getNamePrefix(SQLTable)} are considered, so indexes created by hand under other names are kept.
+     * This must only be called once every class has been parsed, otherwise indexes declared by classes which are yet to be parsed are dropped.
+     * H2 is rebuilt on every start, so these statements only run against Postgres.
+     *
+     * @return the drop statements, one per table
+     */
+    public List<DDLStatement> getStaleIndexDrops() {
+        List<DDLStatement> statements = new ArrayList<>();
+        for (SQLSchema schema : parsedSchemas.values()) {
+            for (SQLTable table : schema.getTables()) {
+                List<String> declared = new ArrayList<>();
+                for (SQLColumn column : table.getColumns()) {
+                    if (column.isIndexed() && !column.isUnique() && !column.isVirtual()) {
+                        // column indexes are created with an unquoted name, which Postgres folds to lower case
+                        declared.add((SQLIndex.getNamePrefix(table) + column.getName()).toLowerCase(Locale.ROOT));
+                    }
+                }
+                for (SQLIndex index : table.getIndexes()) {
+                    if (!index.isVirtual()) {
+                        declared.add(index.getName());
+                    }
+                }
+
+                StringBuilder sb = new StringBuilder();
+                sb.append("DO $$ DECLARE stale record; BEGIN ");
+                sb.append("FOR stale IN SELECT indexname FROM pg_indexes WHERE schemaname = '").append(schema.getName()).append("' AND tablename = '").append(table.getName()).append("' ");
+                sb.append("AND starts_with(indexname, '").append(SQLIndex.getNamePrefix(table)).append("') ");
+                sb.append("AND indexname <> ALL (ARRAY[");
+                for (String name : declared) {
+                    // Postgres truncates identifiers to 63 bytes
+                    sb.append("'").append(name, 0, Math.min(name.length(), 63)).append("', ");
+                }
+                if (!declared.isEmpty()) {
+                    sb.setLength(sb.length() - 2);
+                }
+                sb.append("]::text[]) LOOP ");
+                sb.append("EXECUTE format('DROP INDEX IF EXISTS %I.%I', '").append(schema.getName()).append("', stale.indexname); ");
+                sb.append("END LOOP; END $$;");
+                statements.add(DDLStatement.of("", sb.toString()));
+            }
+        }
+        return statements;
+    }
+
+    private DDLStatement getIndexDef(SQLIndex index) {
+        SQLTable table = index.getTable();
+        StringBuilder sb = new StringBuilder();
+        sb.append("CREATE ").append(index.isUnique() ? "UNIQUE " : "").append("INDEX IF NOT EXISTS \"").append(index.getName()).append("\"");
+        sb.append(" ON \"").append(table.getSchema().getName()).append("\".\"").append(table.getName()).append("\" (");
+        for (String column : index.getColumns()) {
+            sb.append("\"").append(column).append("\", ");
+        }
+        sb.setLength(sb.length() - 2);
+        sb.append(")");
+        String keyDef = sb.toString();
+
+        // H2 has no INCLUDE clause. Trailing key columns give the same covering behaviour, but would change what a unique index enforces.
+        String h2 = keyDef + ";";
+        if (!index.getInclude().isEmpty() && !index.isUnique()) {
+            sb.setLength(sb.length() - 1);
+            for (String column : index.getInclude()) {
+                sb.append(", \"").append(column).append("\"");
+            }
+            sb.append(");");
+            h2 = sb.toString();
+        }
+
+        if (index.isVirtual()) {
+            return DDLStatement.of(h2, "");
+        }
+
+        sb = new StringBuilder(keyDef);
+        if (!index.getInclude().isEmpty()) {
+            sb.append(" INCLUDE (");
+            for (String column : index.getInclude()) {
+                sb.append("\"").append(column).append("\", ");
+            }
+            sb.setLength(sb.length() - 2);
+            sb.append(")");
+        }
+        sb.append(";");
+        return DDLStatement.of(h2, sb.toString());
+    }
+
     private Set<Class<? extends UniqueData>> walk(Class<? extends UniqueData> clazz) {
         Preconditions.checkNotNull(clazz, "Class cannot be null");
         Preconditions.checkArgument(UniqueData.class.isAssignableFrom(clazz), "Class " + clazz.getName() + " is not a UniqueData type");
@@ -339,6 +436,46 @@ public class SQLBuilder {
         }
     }
 
+    private void parseIndividualIndexes(Class<? extends UniqueData> clazz, Map<String, SQLSchema> schemas) {
+        Index[] indexAnnotations = clazz.getAnnotationsByType(Index.class);
+        if (indexAnnotations.length == 0) {
+            return;
+        }
+        logger.trace("Parsing indexes for class {}", clazz.getName());
+        Data dataAnnotation = clazz.getAnnotation(Data.class);
+        Preconditions.checkNotNull(dataAnnotation, "Data annotation is null for class " + clazz.getName());
+
+        String dataSchema = ValueUtils.parseValue(dataAnnotation.schema());
+        String dataTable = ValueUtils.parseValue(dataAnnotation.table());
+        SQLTable table = Objects.requireNonNull(schemas.get(dataSchema).getTable(dataTable));
+
+        for (Index indexAnnotation : indexAnnotations) {
+            List<String> columns = new ArrayList<>();
+            for (String column : indexAnnotation.columns()) {
+                columns.add(resolveIndexColumn(clazz, table, ValueUtils.parseValue(column)));
+            }
+            List<String> include = new ArrayList<>();
+            for (String column : indexAnnotation.include()) {
+                include.add(resolveIndexColumn(clazz, table, ValueUtils.parseValue(column)));
+            }
+            boolean virtual = false;
+            for (String column : Iterables.concat(columns, include)) {
+                SQLColumn sqlColumn = table.getColumn(column);
+                virtual |= sqlColumn != null && sqlColumn.isVirtual();
+            }
+            table.addIndex(new SQLIndex(table, columns, include, indexAnnotation.unique(), virtual));
+        }
+    }
+
+    private String resolveIndexColumn(Class<? extends UniqueData> clazz, SQLTable table, String name) {
+        if (table.getColumn(name) != null || table.getIdColumns().stream().anyMatch(idColumn -> idColumn.name().equals(name))) {
+            return name;
+        }
+        String virtualColumnName = RedisUtils.getVirtualColumnName(name);
+        Preconditions.checkArgument(table.getColumn(virtualColumnName) != null, "@Index on class " + clazz.getName() + " references unknown column or cached value '" + name + "' in table " + table.getName());
+        return virtualColumnName;
+    }
+
     private void parseColumn(Class<? extends UniqueData> clazz, Map<String, SQLSchema> schemas, Data dataAnnotation, UniqueDataMetadata metadata, Field field) {
         if (!field.getType().equals(PersistentValue.class)) {
             return;
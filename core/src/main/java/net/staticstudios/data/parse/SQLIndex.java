@@ -0,0 +1,98 @@
+package net.staticstudios.data.parse;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+
+public class SQLIndex {
+    private final List<String> columns;
+    private final List<String> include;
+    private final boolean unique;
+    private final boolean virtual;
+    private SQLTable table;
+
+    public SQLIndex(SQLTable table, List<String> columns, List<String> include, boolean unique, boolean virtual) {
+        Preconditions.checkArgument(!columns.isEmpty(), "Index on table " + table.getName() + " must have at least one column");
+        this.table = table;
+        this.columns = List.copyOf(columns);
+        this.include = List.copyOf(include);
+        this.unique = unique;
+        this.virtual = virtual;
+    }
+
+    public void setTable(SQLTable table) {
+        this.table = table;
+    }
+
+    public SQLTable getTable() {
+        return table;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public List<String> getInclude() {
+        return include;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    /**
+     * Whether this index covers a virtual column, in which case it only exists in H2.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * The name is derived from a 64-bit digest of the full definition, so changing an index declaration creates a new index rather than silently keeping the old one.
+     * The old index is dropped at startup by {@link SQLBuilder#getStaleIndexDrops()}.
+     */
+    public String getName() {
+        String definition = (unique ? "unique:" : "") + String.join(",", columns) + (include.isEmpty() ? "" : ":" + String.join(",", include));
+        String digest = Hashing.sha256().hashString(definition, StandardCharsets.UTF_8).toString().substring(0, 16);
+        return getNamePrefix(table) + digest;
+    }
+
+    /**
+     * Get the prefix shared by the names of every index this library creates on a table.
+     *
+     * @param table the table
+     * @return the prefix
+     */
+    public static String getNamePrefix(SQLTable table) {
+        return "idx_" + table.getSchema().getName() + "_" + table.getName() + "_";
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof SQLIndex other)) return false;
+        return unique == other.unique &&
+                virtual == other.virtual &&
+                Objects.equals(columns, other.columns) &&
+                Objects.equals(include, other.include) &&
+                Objects.equals(table, other.table);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(columns, include, unique, virtual, table);
+    }
+
+    @Override
+    public String toString() {
+        return "SQLIndex{" +
+                "columns=" + columns +
+                ", include=" + include +
+                ", unique=" + unique +
+                ", virtual=" + virtual +
+                '}';
+    }
+}
@@ -12,6 +12,7 @@ public class SQLTable {
     private final Map<String, SQLColumn> columns;
     private final Set<ForeignKey> foreignKeys;
     private final Set<SQLTrigger> triggers;
+    private final Set<SQLIndex> indexes;
     private SQLSchema schema;
 
     public SQLTable(SQLSchema schema, String name, List<ColumnMetadata> idColumns) {
@@ -21,6 +22,7 @@ public class SQLTable {
         this.columns = new HashMap<>();
         this.foreignKeys = new HashSet<>();
         this.triggers = new HashSet<>();
+        this.indexes = new LinkedHashSet<>();
     }
 
     public void setSchema(SQLSchema schema) {
@@ -73,6 +75,15 @@ public class SQLTable {
         return Collections.unmodifiableSet(triggers);
     }
 
+    public void addIndex(SQLIndex index) {
+        Preconditions.checkNotNull(index, "Index cannot be null");
+        indexes.add(index);
+    }
+
+    public Set<SQLIndex> getIndexes() {
+        return Collections.unmodifiableSet(indexes);
+    }
+
     public List<ColumnMetadata> getIdColumns() {
         return idColumns;
     }
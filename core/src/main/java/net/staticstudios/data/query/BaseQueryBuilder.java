@@ -1,18 +1,44 @@
 package net.staticstudios.data.query;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Iterators;
 import net.staticstudios.data.DataManager;
 import net.staticstudios.data.Order;
 import net.staticstudios.data.UniqueData;
+import net.staticstudios.data.impl.data.PersistentManyToManyCollectionImpl;
+import net.staticstudios.data.impl.data.PersistentOneToManyCollectionImpl;
+import net.staticstudios.data.impl.data.ReferenceImpl;
+import net.staticstudios.data.util.ColumnMetadata;
 import net.staticstudios.data.util.ColumnValuePairs;
+import net.staticstudios.data.util.PersistentCollectionMetadata;
+import net.staticstudios.data.util.PersistentManyToManyCollectionMetadata;
+import net.staticstudios.data.util.PersistentOneToManyCollectionMetadata;
+import net.staticstudios.data.util.PersistentValueMetadata;
+import net.staticstudios.data.util.ReferenceMetadata;
+import net.staticstudios.data.util.SchemaTable;
 import net.staticstudios.data.util.UniqueDataMetadata;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @SuppressWarnings("unused")
 public abstract class BaseQueryBuilder<T extends UniqueData, W extends BaseQueryWhere> {
+    private static final Cache<QueryShape, String> QUERY_PLAN_CACHE = Caffeine.newBuilder()
+            .maximumSize(1_024)
+            .build();
+    private static final int DEFAULT_FETCH_SIZE = 500;
     protected final DataManager dataManager;
     protected final Class<T> type;
     protected final W where;
@@ -22,6 +48,10 @@ public abstract class BaseQueryBuilder<T extends UniqueData, W extends BaseQuery
     private Order order = null;
     private int limit = -1;
     private int offset = -1;
+    private boolean cached = false;
+    private @Nullable T after = null;
+    private final Set<String> includes = new LinkedHashSet<>();
+    private final List<ProjectedColumn> projection = new ArrayList<>();
 
     protected BaseQueryBuilder(DataManager dataManager, Class<T> type, W where) {
         this.dataManager = dataManager;
@@ -44,27 +74,377 @@ public abstract class BaseQueryBuilder<T extends UniqueData, W extends BaseQuery
         this.offset = offset;
     }
 
+    protected void addInclude(String fieldName) {
+        this.includes.add(fieldName);
+    }
+
+    protected void setCached(boolean cached) {
+        this.cached = cached;
+    }
+
+    /**
+     * Only match rows which come after the given row in this query's order.
+     * Ties are broken by the id columns, so the first page should use the same order and limit.
+     */
+    protected void setAfter(@Nullable T after) {
+        this.after = after;
+    }
+
+    protected void addSelect(String schema, String table, String column, Class<?> valueType) {
+        this.projection.add(new ProjectedColumn(schema, table, column, valueType));
+    }
+
     public @Nullable T findOne() {
         UniqueDataMetadata metadata = dataManager.getMetadata(type);
-        ColumnValuePairs specialCaseColumnValuePairs = where.isSpecialOnlyUseIdColumns(metadata);
+        ColumnValuePairs specialCaseColumnValuePairs = after == null ? where.isSpecialOnlyUseIdColumns(metadata) : null;
         if (specialCaseColumnValuePairs != null) {
-            return dataManager.getInstance(type, specialCaseColumnValuePairs);
+            T instance = dataManager.getInstance(type, specialCaseColumnValuePairs);
+            if (instance != null) {
+                preload(List.of(instance));
+            }
+            return instance;
+        }
+
+        Set<ColumnValuePairs> indexedIds = orderByColumn == null && offset <= 0 && after == null && !cached ? lookupHeapIndex(metadata) : null;
+        if (indexedIds != null) {
+            for (ColumnValuePairs id : indexedIds) {
+                T instance = dataManager.getInstance(type, id);
+                if (instance != null) {
+                    preload(List.of(instance));
+                    return instance;
+                }
+            }
+            return null;
         }
 
         ComputedClause computed = compute();
-        List<T> result = dataManager.query(type, computed.sql(), computed.parameters());
+        List<T> result = dataManager.query(type, computed.sql(), computed.parameters(), getCacheDependencies());
         if (result.isEmpty()) {
             return null;
         }
+        preload(List.of(result.getFirst()));
         return result.getFirst();
     }
 
     public @NotNull List<T> findAll() { //todo: in the IJ plugin make sure the annotations are present for find all and fine one (nullable and notnull)
+        if (orderByColumn == null && limit <= 0 && offset <= 0 && after == null) {
+            List<ColumnValuePairs> specialCaseIds = where.isSpecialOnlyUseIdColumnIn(dataManager.getMetadata(type));
+            if (specialCaseIds != null) {
+                List<T> result = dataManager.getInstances(type, specialCaseIds);
+                preload(result);
+                return result;
+            }
+
+            Set<ColumnValuePairs> indexedIds = cached ? null : lookupHeapIndex(dataManager.getMetadata(type));
+            if (indexedIds != null) {
+                List<T> result = dataManager.getInstances(type, indexedIds);
+                preload(result);
+                return result;
+            }
+        }
+
+        ComputedClause computed = compute();
+        List<T> result = dataManager.query(type, computed.sql(), computed.parameters(), getCacheDependencies());
+        preload(result);
+        return result;
+    }
+
+    /**
+     * Count the rows matching this query without creating any instances.
+     * Any order, limit, offset or keyset position is ignored.
+     *
+     * @return the number of matching rows
+     */
+    public long count() {
+        ComputedClause computed = computeFilter();
+        Long count = dataManager.aggregate(type, "COUNT(*)", computed.sql(), computed.parameters(), Long.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Check if any row matches this query without creating any instances.
+     * Any order, limit, offset or keyset position is ignored.
+     *
+     * @return true if at least one row matches
+     */
+    public boolean exists() {
+        ComputedClause computed = computeFilter();
+        return dataManager.aggregate(type, "1", computed.sql() + " LIMIT 1", computed.parameters(), Integer.class) != null;
+    }
+
+    protected long sumLong(String schema, String table, String column) {
+        Number sum = aggregate("SUM", schema, table, column, Number.class);
+        return sum == null ? 0 : sum.longValue();
+    }
+
+    protected double sumDouble(String schema, String table, String column) {
+        Number sum = aggregate("SUM", schema, table, column, Number.class);
+        return sum == null ? 0 : sum.doubleValue();
+    }
+
+    protected BigDecimal sumBigDecimal(String schema, String table, String column) {
+        BigDecimal sum = aggregate("SUM", schema, table, column, BigDecimal.class);
+        return sum == null ? BigDecimal.ZERO : sum;
+    }
+
+    /**
+     * @return the average, or {@link Double#NaN} if no rows match
+     */
+    protected double avg(String schema, String table, String column) {
+        Number avg = aggregate("AVG", schema, table, column, Number.class);
+        return avg == null ? Double.NaN : avg.doubleValue();
+    }
+
+    protected <V> @Nullable V min(String schema, String table, String column, Class<V> valueType) {
+        return aggregate("MIN", schema, table, column, valueType);
+    }
+
+    protected <V> @Nullable V max(String schema, String table, String column, Class<V> valueType) {
+        return aggregate("MAX", schema, table, column, valueType);
+    }
+
+    private <V> @Nullable V aggregate(String function, String schema, String table, String column, Class<V> resultType) {
+        ComputedClause computed = computeFilter();
+        String expression = function + "(\"" + schema + "\".\"" + table + "\".\"" + column + "\")";
+        return dataManager.aggregate(type, expression, computed.sql(), computed.parameters(), resultType);
+    }
+
+    /**
+     * Read only the selected columns of each matching row into records, without creating any UniqueData instances.
+     * The record's canonical constructor must take the selected columns, in the order they were selected.
+     *
+     * @param recordType the record class to create for each row
+     * @param <R>        the type of record
+     * @return one record per matching row
+     */
+    public <R extends Record> @NotNull List<R> into(Class<R> recordType) {
+        Preconditions.checkState(!projection.isEmpty(), "No columns have been selected");
+        RecordComponent[] components = recordType.getRecordComponents();
+        Preconditions.checkArgument(components.length == projection.size(), "Record %s has %s components, but %s columns were selected", recordType.getName(), components.length, projection.size());
+
+        Class<?>[] componentTypes = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+            componentTypes[i] = components[i].getType();
+        }
+        Constructor<R> constructor;
+        try {
+            constructor = recordType.getDeclaredConstructor(componentTypes);
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+        }
+
+        List<String> selectExpressions = new ArrayList<>(projection.size());
+        List<Class<?>> valueTypes = new ArrayList<>(projection.size());
+        for (ProjectedColumn column : projection) {
+            selectExpressions.add("\"" + column.schema() + "\".\"" + column.table() + "\".\"" + column.column() + "\"");
+            valueTypes.add(column.valueType());
+        }
+
         ComputedClause computed = compute();
-        return dataManager.query(type, computed.sql(), computed.parameters());
+        List<Object[]> rows = dataManager.project(type, selectExpressions, valueTypes, computed.sql(), computed.parameters());
+        List<R> records = new ArrayList<>(rows.size());
+        try {
+            for (Object[] row : rows) {
+                records.add(constructor.newInstance(row));
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+        return records;
+    }
+
+    public @NotNull CompletableFuture<T> findOneAsync() {
+        return findOneAsync(null);
+    }
+
+    /**
+     * Run {@link #findOne()} on the DataManager's query executor.
+     * This builder should not be modified after calling this method.
+     *
+     * @param completionExecutor the executor to complete the future on, or null to complete it on the query executor
+     * @return a future which completes with the result
+     */
+    public @NotNull CompletableFuture<T> findOneAsync(@Nullable Executor completionExecutor) {
+        return completeOn(CompletableFuture.supplyAsync(this::findOne, dataManager.getQueryExecutor()), completionExecutor);
+    }
+
+    public @NotNull CompletableFuture<List<T>> findAllAsync() {
+        return findAllAsync(null);
+    }
+
+    /**
+     * Run {@link #findAll()} on the DataManager's query executor.
+     * This builder should not be modified after calling this method.
+     *
+     * @param completionExecutor the executor to complete the future on, or null to complete it on the query executor
+     * @return a future which completes with the results
+     */
+    public @NotNull CompletableFuture<List<T>> findAllAsync(@Nullable Executor completionExecutor) {
+        return completeOn(CompletableFuture.supplyAsync(this::findAll, dataManager.getQueryExecutor()), completionExecutor);
+    }
+
+    private static <R> CompletableFuture<R> completeOn(CompletableFuture<R> future, @Nullable Executor completionExecutor) {
+        if (completionExecutor == null) {
+            return future;
+        }
+        return future.whenCompleteAsync((result, throwable) -> {
+        }, completionExecutor);
+    }
+
+    public @NotNull Stream<T> stream() {
+        return stream(DEFAULT_FETCH_SIZE);
+    }
+
+    /**
+     * Lazily iterate over the results of this query, reading and materializing {@code fetchSize} rows at a time.
+     * The returned stream holds a database cursor, so it should be closed, e.g. with try-with-resources.
+     * Results are never served from or stored in the query cache.
+     *
+     * @param fetchSize how many rows to read at a time
+     * @return a stream of the matching instances
+     */
+    public @NotNull Stream<T> stream(int fetchSize) {
+        ComputedClause computed = compute();
+        Stream<T> stream = dataManager.stream(type, computed.sql(), computed.parameters(), fetchSize);
+        if (includes.isEmpty()) {
+            return stream;
+        }
+
+        Iterator<List<T>> batches = Iterators.partition(stream.iterator(), fetchSize);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(batches, Spliterator.ORDERED), false)
+                .flatMap(batch -> {
+                    preload(batch);
+                    return batch.stream();
+                })
+                .onClose(stream::close);
+    }
+
+    public void forEach(Consumer<? super T> action) {
+        forEach(DEFAULT_FETCH_SIZE, action);
+    }
+
+    public void forEach(int fetchSize, Consumer<? super T> action) {
+        try (Stream<T> stream = stream(fetchSize)) {
+            stream.forEach(action);
+        }
+    }
+
+    /**
+     * Evaluate this query once, then keep its result set up to date as rows change, instead of polling it.
+     * Live queries cannot be ordered, limited, offset or paged, since their result set is unordered.
+     * The returned query should be closed once it is no longer needed.
+     *
+     * @return a live view of this query's results
+     */
+    public @NotNull LiveQuery<T> live() {
+        Preconditions.checkState(orderByColumn == null && limit <= 0 && offset <= 0 && after == null, "Live queries cannot be ordered, limited, offset or paged");
+        UniqueDataMetadata metadata = dataManager.getMetadata(type);
+        ComputedClause filter = computeFilter();
+        StringBuilder rowSql = new StringBuilder(filter.sql());
+        rowSql.append(where.isEmpty() ? "WHERE " : " AND ");
+        for (ColumnMetadata idColumn : metadata.idColumns()) {
+            rowSql.append("\"").append(metadata.schema()).append("\".\"").append(metadata.table()).append("\".\"").append(idColumn.name()).append("\" = ? AND ");
+        }
+        rowSql.setLength(rowSql.length() - 5);
+
+        LiveQuery<T> liveQuery = new LiveQuery<>(dataManager, type, filter.sql(), rowSql.toString(), filter.parameters(), getDependencies());
+        // register before the first evaluation, so no change can slip in between the two
+        dataManager.registerLiveQuery(liveQuery);
+        liveQuery.refresh();
+        return liveQuery;
+    }
+
+    private @Nullable Set<ColumnValuePairs> lookupHeapIndex(UniqueDataMetadata metadata) {
+        Map<String, Object> equalities = where.isSpecialOnlyUseEqualsClauses(metadata);
+        if (equalities == null) {
+            return null;
+        }
+        return dataManager.lookupHeapIndex(type, equalities);
+    }
+
+    /**
+     * Get the tables which this query reads from, or null if this query should not be cached.
+     */
+    private @Nullable Set<SchemaTable> getCacheDependencies() {
+        if (!cached) {
+            return null;
+        }
+        return getDependencies();
+    }
+
+    /**
+     * Get the tables which this query reads from.
+     */
+    private Set<SchemaTable> getDependencies() {
+        UniqueDataMetadata metadata = dataManager.getMetadata(type);
+        Set<SchemaTable> dependencies = new HashSet<>();
+        dependencies.add(new SchemaTable(metadata.schema(), metadata.table()));
+        for (InnerJoin join : where.getInnerJoins()) {
+            dependencies.add(new SchemaTable(join.referencedSchema(), join.referencedTable()));
+        }
+        return dependencies;
+    }
+
+    private void preload(List<T> result) {
+        if (includes.isEmpty() || result.isEmpty()) {
+            return;
+        }
+
+        UniqueDataMetadata metadata = dataManager.getMetadata(type);
+        for (String fieldName : includes) {
+            ReferenceMetadata referenceMetadata = null;
+            for (Map.Entry<Field, ReferenceMetadata> entry : metadata.referenceMetadata().entrySet()) {
+                if (entry.getKey().getName().equals(fieldName)) {
+                    referenceMetadata = entry.getValue();
+                    break;
+                }
+            }
+            if (referenceMetadata != null) {
+                ReferenceImpl.preload(dataManager, referenceMetadata, result);
+                continue;
+            }
+
+            PersistentCollectionMetadata collectionMetadata = null;
+            for (Map.Entry<Field, PersistentCollectionMetadata> entry : metadata.persistentCollectionMetadata().entrySet()) {
+                if (entry.getKey().getName().equals(fieldName)) {
+                    collectionMetadata = entry.getValue();
+                    break;
+                }
+            }
+            if (collectionMetadata instanceof PersistentOneToManyCollectionMetadata oneToManyMetadata) {
+                PersistentOneToManyCollectionImpl.preload(dataManager, oneToManyMetadata, result);
+                continue;
+            }
+            Preconditions.checkArgument(collectionMetadata instanceof PersistentManyToManyCollectionMetadata, "No reference or collection of UniqueData named %s in UniqueData class %s", fieldName, type.getName());
+            PersistentManyToManyCollectionImpl.preload(dataManager, (PersistentManyToManyCollectionMetadata) collectionMetadata, result);
+        }
     }
 
     private ComputedClause compute() {
+        return compute(orderBySchema, orderByTable, orderByColumn, order, limit, offset, after);
+    }
+
+    /**
+     * Compute only the joins and where clause of this query, ignoring any order, limit, offset or keyset position.
+     */
+    private ComputedClause computeFilter() {
+        return compute(null, null, null, null, -1, -1, null);
+    }
+
+    private ComputedClause compute(String orderBySchema, String orderByTable, String orderByColumn, Order order, int limit, int offset, @Nullable T after) {
+        UniqueDataMetadata metadata = dataManager.getMetadata(type);
+        QueryShape shape = new QueryShape(type, Set.copyOf(where.getInnerJoins()), where.shape(dataManager, metadata), orderBySchema, orderByTable, orderByColumn, order, limit, offset, after != null);
+        String sql = QUERY_PLAN_CACHE.get(shape, k -> buildSql(metadata, k));
+        List<Object> parameters = new ArrayList<>();
+        where.collectParameters(dataManager, metadata, parameters);
+        if (after != null) {
+            collectSeekParameters(metadata, shape, after, parameters);
+        }
+        return new ComputedClause(sql, parameters);
+    }
+
+    private String buildSql(UniqueDataMetadata metadata, QueryShape shape) {
         StringBuilder sb = new StringBuilder();
         List<Object> parameters = new ArrayList<>();
         if (!where.isEmpty()) {
@@ -81,18 +461,78 @@ public abstract class BaseQueryBuilder<T extends UniqueData, W extends BaseQuery
             }
             sb.append("WHERE ");
 
-            where.buildWhereClause(dataManager, dataManager.getMetadata(type), sb, parameters);
+            where.buildWhereClause(dataManager, metadata, sb, parameters);
+        }
+
+        List<String> orderColumns = getOrderColumns(metadata, shape);
+        String direction = shape.order() == Order.DESCENDING ? "DESC" : "ASC";
+        if (shape.seek()) {
+            sb.append(where.isEmpty() ? "WHERE (" : " AND (");
+            sb.append(String.join(", ", orderColumns));
+            sb.append(shape.order() == Order.DESCENDING ? ") < (" : ") > (");
+            sb.append(String.join(", ", Collections.nCopies(orderColumns.size(), "?")));
+            sb.append(")");
+        }
+        if (!orderColumns.isEmpty()) {
+            sb.append(" ORDER BY ");
+            for (int i = 0; i < orderColumns.size(); i++) {
+                if (i > 0) {
+                    sb.append(", ");
+                }
+                sb.append(orderColumns.get(i)).append(" ").append(direction);
+            }
+        }
+        if (shape.limit() > 0) {
+            sb.append(" LIMIT ").append(shape.limit());
+        }
+        if (shape.offset() > 0) {
+            sb.append(" OFFSET ").append(shape.offset());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Get the fully qualified columns to order by.
+     * When paging, the id columns are appended as tie-breakers so that every row has a unique position.
+     */
+    private List<String> getOrderColumns(UniqueDataMetadata metadata, QueryShape shape) {
+        List<String> orderColumns = new ArrayList<>();
+        if (shape.orderByColumn() != null) {
+            orderColumns.add("\"" + shape.orderBySchema() + "\".\"" + shape.orderByTable() + "\".\"" + shape.orderByColumn() + "\"");
         }
-        if (limit > 0) {
-            sb.append(" LIMIT ").append(limit);
+        if (shape.seek() || (shape.orderByColumn() != null && shape.limit() > 0)) {
+            for (ColumnMetadata idColumn : metadata.idColumns()) {
+                String qualified = "\"" + metadata.schema() + "\".\"" + metadata.table() + "\".\"" + idColumn.name() + "\"";
+                if (!orderColumns.contains(qualified)) {
+                    orderColumns.add(qualified);
+                }
+            }
         }
-        if (offset > 0) {
-            sb.append(" OFFSET ").append(offset);
+        return orderColumns;
+    }
+
+    private void collectSeekParameters(UniqueDataMetadata metadata, QueryShape shape, T after, List<Object> parameters) {
+        if (shape.orderByColumn() != null) {
+            Preconditions.checkState(shape.orderBySchema().equals(metadata.schema()) && shape.orderByTable().equals(metadata.table()),
+                    "Keyset pagination requires ordering by a column in %s.%s", metadata.schema(), metadata.table());
+            PersistentValueMetadata orderByMetadata = null;
+            for (PersistentValueMetadata persistentValueMetadata : metadata.persistentValueMetadata().values()) {
+                if (persistentValueMetadata.getSchema().equals(shape.orderBySchema()) && persistentValueMetadata.getTable().equals(shape.orderByTable()) && persistentValueMetadata.getColumn().equals(shape.orderByColumn())) {
+                    orderByMetadata = persistentValueMetadata;
+                    break;
+                }
+            }
+            Preconditions.checkState(orderByMetadata != null, "No persistent value found for column %s", shape.orderByColumn());
+            Object value = dataManager.get(shape.orderBySchema(), shape.orderByTable(), shape.orderByColumn(), after.getIdColumns(), List.of(), orderByMetadata.getColumnMetadata().type());
+            Preconditions.checkState(value != null, "Cannot page after a row whose %s is null", shape.orderByColumn());
+            parameters.add(value);
         }
-        if (orderByColumn != null) {
-            sb.append(" ORDER BY \"").append(orderBySchema).append("\".\"").append(orderByTable).append("\".\"").append(orderByColumn).append("\" ").append(order == Order.ASCENDING ? "ASC" : "DESC");
+        for (ColumnMetadata idColumn : metadata.idColumns()) {
+            if (idColumn.name().equals(shape.orderByColumn()) && metadata.table().equals(shape.orderByTable()) && metadata.schema().equals(shape.orderBySchema())) {
+                continue;
+            }
+            parameters.add(ColumnValuePairs.getValue(idColumn.name(), after.getIdColumns()));
         }
-        return new ComputedClause(sb.toString(), parameters);
     }
 
     @Override
@@ -102,4 +542,15 @@ public abstract class BaseQueryBuilder<T extends UniqueData, W extends BaseQuery
 
     record ComputedClause(String sql, List<Object> parameters) {
     }
+
+    private record ProjectedColumn(String schema, String table, String column, Class<?> valueType) {
+    }
+
+    /**
+     * Everything which affects the SQL built for a query, excluding the parameter values.
+     */
+    private record QueryShape(Class<?> type, Set<InnerJoin> innerJoins, Object where, String orderBySchema,
+                              String orderByTable, String orderByColumn, Order order, int limit, int offset,
+                              boolean seek) {
+    }
 }
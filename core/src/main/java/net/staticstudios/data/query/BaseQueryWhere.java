@@ -37,6 +37,26 @@ public abstract class BaseQueryWhere {
         }
     }
 
+    private static Object shapeRecursive(Node node, DataManager dataManager, UniqueDataMetadata holderMetadata) {
+        if (node == null) {
+            return null;
+        }
+        return Arrays.asList(
+                node.clause.shape(dataManager, holderMetadata),
+                shapeRecursive(node.lhs, dataManager, holderMetadata),
+                shapeRecursive(node.rhs, dataManager, holderMetadata)
+        );
+    }
+
+    private static void collectParametersRecursive(Node node, DataManager dataManager, UniqueDataMetadata holderMetadata, List<Object> parameters) {
+        if (node == null) {
+            return;
+        }
+        collectParametersRecursive(node.lhs, dataManager, holderMetadata, parameters);
+        parameters.addAll(node.clause.parameters(dataManager, holderMetadata));
+        collectParametersRecursive(node.rhs, dataManager, holderMetadata, parameters);
+    }
+
     protected void addInnerJoin(String referringSchema, String referringTable, String[] columnsInReferringTable, String referencedSchema, String referencedTable, String[] columnsInReferencedTable) {
         innerJoins.add(new InnerJoin(referringSchema, referringTable, columnsInReferringTable, referencedSchema, referencedTable, columnsInReferencedTable));
     }
@@ -207,6 +227,17 @@ public abstract class BaseQueryWhere {
         buildWhereClauseRecursive(root, dataManager, holderMetadata, sb, parameters);
     }
 
+    /**
+     * Get the shape of this where clause, which identifies the SQL built by {@link #buildWhereClause(DataManager, UniqueDataMetadata, StringBuilder, List)} without the parameter values.
+     */
+    public Object shape(DataManager dataManager, UniqueDataMetadata holderMetadata) {
+        return shapeRecursive(root, dataManager, holderMetadata);
+    }
+
+    public void collectParameters(DataManager dataManager, UniqueDataMetadata holderMetadata, List<Object> parameters) {
+        collectParametersRecursive(root, dataManager, holderMetadata, parameters);
+    }
+
     public ColumnValuePairs isSpecialOnlyUseIdColumns(UniqueDataMetadata metadata) {
         if (root == null) {
             return null;
@@ -226,6 +257,57 @@ public abstract class BaseQueryWhere {
         return null;
     }
 
+    public List<ColumnValuePairs> isSpecialOnlyUseIdColumnIn(UniqueDataMetadata metadata) {
+        if (root == null || metadata.idColumns().size() != 1) {
+            return null;
+        }
+
+        String idColumn = metadata.idColumns().getFirst().name();
+        if (root.clause instanceof InClause inClause &&
+                Objects.equals(inClause.getSchema(), metadata.schema()) &&
+                Objects.equals(inClause.getTable(), metadata.table()) &&
+                Objects.equals(inClause.getColumn(), idColumn)) {
+            List<ColumnValuePairs> ids = new ArrayList<>(inClause.getValues().length);
+            for (Object value : inClause.getValues()) {
+                if (value == null) {
+                    continue;
+                }
+                ids.add(new ColumnValuePairs(new ColumnValuePair(idColumn, value)));
+            }
+            return ids;
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the column values of this where clause, if it only ANDs together equality checks on columns in the holder's table.
+     *
+     * @return the column values to match, or null if this clause has any other shape
+     */
+    public @Nullable Map<String, Object> isSpecialOnlyUseEqualsClauses(UniqueDataMetadata metadata) {
+        if (root == null || !innerJoins.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Object> equalities = new HashMap<>();
+        if (isSpecialOnlyUseEqualsClausesRecursive(root, metadata.schema(), metadata.table(), equalities)) {
+            return equalities;
+        }
+        return null;
+    }
+
+    private boolean isSpecialOnlyUseEqualsClausesRecursive(Node node, String schema, String table, Map<String, Object> equalities) {
+        if (node.clause instanceof EqualsClause equalsClause) {
+            return Objects.equals(equalsClause.getSchema(), schema) &&
+                    Objects.equals(equalsClause.getTable(), table) &&
+                    equalities.putIfAbsent(equalsClause.getColumn(), equalsClause.getValue()) == null;
+        } else if (node.clause instanceof AndClause) {
+            return isSpecialOnlyUseEqualsClausesRecursive(node.lhs, schema, table, equalities) && isSpecialOnlyUseEqualsClausesRecursive(node.rhs, schema, table, equalities);
+        }
+        return false;
+    }
+
     private boolean isSpecialOnlyUseIdColumnsRecursive(Node node, String schema, String table, List<String> columns, List<ColumnValuePair> columnValuePairs) {
         if (node.clause instanceof EqualsClause equalsClause) {
             if (Objects.equals(equalsClause.getSchema(), schema) &&
@@ -0,0 +1,229 @@
+package net.staticstudios.data.query;
+
+import net.staticstudios.data.DataManager;
+import net.staticstudios.data.UniqueData;
+import net.staticstudios.data.util.ColumnMetadata;
+import net.staticstudios.data.util.ColumnValuePair;
+import net.staticstudios.data.util.ColumnValuePairs;
+import net.staticstudios.data.util.SchemaTable;
+import net.staticstudios.data.util.UniqueDataMetadata;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The result set of a query which is kept up to date as rows change.
+ * Changes to a row in the queried table only re-check that row, while changes to a joined table re-evaluate the whole query.
+ * Listeners are called on the update handler executor with the instance which entered or left the result set.
+ * Close a live query once it is no longer needed, so it stops receiving row changes.
+ *
+ * @param <T> the type of UniqueData
+ */
+public class LiveQuery<T extends UniqueData> implements AutoCloseable {
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final DataManager dataManager;
+    private final Class<T> type;
+    private final UniqueDataMetadata metadata;
+    private final String filterSql;
+    private final String rowSql;
+    private final List<Object> parameters;
+    private final Set<SchemaTable> dependencies;
+    private final Map<ColumnValuePairs, T> results = new LinkedHashMap<>();
+    private final List<Consumer<? super T>> addListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<? super T>> removeListeners = new CopyOnWriteArrayList<>();
+    private volatile boolean closed = false;
+
+    LiveQuery(DataManager dataManager, Class<T> type, String filterSql, String rowSql, List<Object> parameters, Set<SchemaTable> dependencies) {
+        this.dataManager = dataManager;
+        this.type = type;
+        this.metadata = dataManager.getMetadata(type);
+        this.filterSql = filterSql;
+        this.rowSql = rowSql;
+        this.parameters = List.copyOf(parameters);
+        this.dependencies = Set.copyOf(dependencies);
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Get the tables whose row changes may affect this query.
+     *
+     * @return the tables this query depends on
+     */
+    public Set<SchemaTable> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Get a snapshot of the instances currently matching this query.
+     *
+     * @return the current results
+     */
+    public synchronized @NotNull List<T> getResults() {
+        return new ArrayList<>(results.values());
+    }
+
+    public synchronized boolean contains(T instance) {
+        return results.containsKey(instance.getIdColumns());
+    }
+
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * Register a listener for instances which start matching this query.
+     * Instances which already matched when the listener was added are not replayed.
+     *
+     * @param listener the listener
+     * @return this live query
+     */
+    public LiveQuery<T> onAdd(Consumer<? super T> listener) {
+        addListeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Register a listener for instances which stop matching this query, including deleted instances.
+     *
+     * @param listener the listener
+     * @return this live query
+     */
+    public LiveQuery<T> onRemove(Consumer<? super T> listener) {
+        removeListeners.add(listener);
+        return this;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        dataManager.unregisterLiveQuery(this);
+        synchronized (this) {
+            results.clear();
+        }
+    }
+
+    /**
+     * Evaluate the whole query and update the result set, calling listeners for any difference.
+     */
+    public void refresh() {
+        List<T> added = new ArrayList<>();
+        List<T> removed = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            Map<ColumnValuePairs, T> current = new LinkedHashMap<>();
+            for (T instance : dataManager.query(type, filterSql, parameters)) {
+                current.put(instance.getIdColumns(), instance);
+            }
+            for (Iterator<Map.Entry<ColumnValuePairs, T>> it = results.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<ColumnValuePairs, T> entry = it.next();
+                if (!current.containsKey(entry.getKey())) {
+                    it.remove();
+                    removed.add(entry.getValue());
+                }
+            }
+            for (Map.Entry<ColumnValuePairs, T> entry : current.entrySet()) {
+                if (results.putIfAbsent(entry.getKey(), entry.getValue()) == null) {
+                    added.add(entry.getValue());
+                }
+            }
+        }
+        fireListeners(added, removed);
+    }
+
+    @ApiStatus.Internal
+    public void handleRowChange(String schema, String table, List<String> columnNames, @Nullable Object[] oldValues, @Nullable Object[] newValues) {
+        if (closed) {
+            return;
+        }
+        if (!metadata.schema().equals(schema) || !metadata.table().equals(table)) {
+            refresh();
+            return;
+        }
+
+        ColumnValuePairs oldId = readId(columnNames, oldValues);
+        ColumnValuePairs newId = readId(columnNames, newValues);
+        if (oldId != null && !oldId.equals(newId)) {
+            recheck(oldId);
+        }
+        if (newId != null) {
+            recheck(newId);
+        }
+    }
+
+    private void recheck(ColumnValuePairs id) {
+        T added = null;
+        T removed = null;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            List<Object> rowParameters = new ArrayList<>(parameters);
+            for (ColumnMetadata idColumn : metadata.idColumns()) {
+                rowParameters.add(ColumnValuePairs.getValue(idColumn.name(), id));
+            }
+            List<T> match = dataManager.query(type, rowSql, rowParameters);
+            if (match.isEmpty()) {
+                removed = results.remove(id);
+            } else if (!results.containsKey(id)) {
+                added = match.getFirst();
+                results.put(id, added);
+            }
+        }
+        fireListeners(added == null ? List.of() : List.of(added), removed == null ? List.of() : List.of(removed));
+    }
+
+    private void fireListeners(List<T> added, List<T> removed) {
+        for (T instance : removed) {
+            for (Consumer<? super T> listener : removeListeners) {
+                try {
+                    listener.accept(instance);
+                } catch (Exception e) {
+                    logger.error("Error in live query remove listener for {}", type.getName(), e);
+                }
+            }
+        }
+        for (T instance : added) {
+            for (Consumer<? super T> listener : addListeners) {
+                try {
+                    listener.accept(instance);
+                } catch (Exception e) {
+                    logger.error("Error in live query add listener for {}", type.getName(), e);
+                }
+            }
+        }
+    }
+
+    private @Nullable ColumnValuePairs readId(List<String> columnNames, @Nullable Object[] values) {
+        if (values == null) {
+            return null;
+        }
+        ColumnValuePair[] idColumns = new ColumnValuePair[metadata.idColumns().size()];
+        for (int i = 0; i < idColumns.length; i++) {
+            String idColumn = metadata.idColumns().get(i).name();
+            int index = columnNames.indexOf(idColumn);
+            if (index == -1 || values[index] == null) {
+                return null;
+            }
+            idColumns[i] = new ColumnValuePair(idColumn, values[index]);
+        }
+        return new ColumnValuePairs(idColumns);
+    }
+}
@@ -34,6 +34,16 @@ public class QueryBuilder<U extends UniqueData> extends BaseQueryBuilder<U, Quer
         return this;
     }
 
+    public final QueryBuilder<U> after(U lastRow) {
+        super.setAfter(lastRow);
+        return this;
+    }
+
+    public final QueryBuilder<U> cached() {
+        super.setCached(true);
+        return this;
+    }
+
     public final QueryBuilder<U> orderBy(String schema, String table, String column, Order order) {
         super.setOrderBy(schema, table, column, order);
         return this;
@@ -5,9 +5,19 @@ import java.util.List;
 
 public class AndClause implements ConditionalClause {
 
+    @Override
+    public Object shape() {
+        return AndClause.class;
+    }
+
+    @Override
+    public List<Object> parameters() {
+        return Collections.emptyList();
+    }
+
     @Override
     public List<Object> append(StringBuilder sb) {
         sb.append(" AND ");
-        return Collections.emptyList();
+        return parameters();
     }
 }
@@ -17,9 +17,19 @@ public class BetweenClause implements ValueClause {
         this.max = max;
     }
 
+    @Override
+    public Object shape() {
+        return List.of(BetweenClause.class, schema, table, column);
+    }
+
+    @Override
+    public List<Object> parameters() {
+        return List.of(min, max);
+    }
+
     @Override
     public List<Object> append(StringBuilder sb) {
         sb.append("\"").append(schema).append("\".\"").append(table).append("\".\"").append(column).append("\" BETWEEN ? AND ?");
-        return List.of(min, max);
+        return parameters();
     }
 }
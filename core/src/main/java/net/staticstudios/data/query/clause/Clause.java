@@ -12,4 +12,27 @@ public interface Clause {
     default List<Object> append(StringBuilder sb, DataManager dataManager, UniqueDataMetadata holderMetadata) {
         return append(sb);
     }
+
+    /**
+     * Identifies the SQL appended by this clause, without its parameter values.
+     * Clauses with equal shapes must append identical SQL.
+     *
+     * @return the shape of this clause
+     */
+    Object shape();
+
+    default Object shape(DataManager dataManager, UniqueDataMetadata holderMetadata) {
+        return shape();
+    }
+
+    /**
+     * Get the parameters this clause binds, in the same order as {@link #append(StringBuilder)} would return them.
+     *
+     * @return the parameters
+     */
+    List<Object> parameters();
+
+    default List<Object> parameters(DataManager dataManager, UniqueDataMetadata holderMetadata) {
+        return parameters();
+    }
 }
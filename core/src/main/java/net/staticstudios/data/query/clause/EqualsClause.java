@@ -31,9 +31,19 @@ public class EqualsClause implements ValueClause {
         return value;
     }
 
+    @Override
+    public Object shape() {
+        return List.of(EqualsClause.class, schema, table, column);
+    }
+
+    @Override
+    public List<Object> parameters() {
+        return List.of(value);
+    }
+
     @Override
     public List<Object> append(StringBuilder sb) {
         sb.append("\"").append(schema).append("\".\"").append(table).append("\".\"").append(column).append("\" = ?");
-        return List.of(value);
+        return parameters();
     }
 }
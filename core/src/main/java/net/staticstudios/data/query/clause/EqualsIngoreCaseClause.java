@@ -15,9 +15,19 @@ public class EqualsIngoreCaseClause implements ValueClause {
         this.value = value;
     }
 
+    @Override
+    public Object shape() {
+        return List.of(EqualsIngoreCaseClause.class, schema, table, column);
+    }
+
+    @Override
+    public List<Object> parameters() {
+        return List.of(value);
+    }
+
     @Override
     public List<Object> append(StringBuilder sb) {
         sb.append("UPPER(\"").append(schema).append("\".\"").append(table).append("\".\"").append(column).append("\") = UPPER(?)");
-        return List.of(value);
+        return parameters();
     }
 }
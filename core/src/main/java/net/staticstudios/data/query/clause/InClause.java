@@ -15,6 +15,32 @@ public class InClause implements ValueClause {
         this.values = values;
     }
 
+    public String getSchema() {
+        return schema;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public Object[] getValues() {
+        return values;
+    }
+
+    @Override
+    public Object shape() {
+        return List.of(InClause.class, schema, table, column, values.length);
+    }
+
+    @Override
+    public List<Object> parameters() {
+        return List.of(values);
+    }
+
     @Override
     public List<Object> append(StringBuilder sb) {
         sb.append("\"").append(schema).append("\".\"").append(table).append("\".\"").append(column).append("\" IN (");
@@ -25,6 +51,6 @@ public class InClause implements ValueClause {
             }
         }
         sb.append(")");
-        return List.of(values);
+        return parameters();
     }
 }
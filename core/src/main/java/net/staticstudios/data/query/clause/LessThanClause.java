@@ -15,9 +15,19 @@ public class LessThanClause implements ValueClause {
         this.value = value;
     }
 
+    @Override
+    public Object shape() {
+        return List.of(LessThanClause.class, schema, table, column);
+    }
+
+    @Override
+    public List<Object> parameters() {
+        return List.of(value);
+    }
+
     @Override
     public List<Object> append(StringBuilder sb) {
         sb.append("\"").append(schema).append("\".\"").append(table).append("\".\"").append(column).append("\" < ?");
-        return List.of(value);
+        return parameters();
     }
 }
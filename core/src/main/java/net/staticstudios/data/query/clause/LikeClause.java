@@ -15,9 +15,19 @@ public class LikeClause implements ValueClause {
         this.format = format;
     }
 
+    @Override
+    public Object shape() {
+        return List.of(LikeClause.class, schema, table, column);
+    }
+
+    @Override
+    public List<Object> parameters() {
+        return List.of(format);
+    }
+
     @Override
     public List<Object> append(StringBuilder sb) {
         sb.append("\"").append(schema).append("\".\"").append(table).append("\".\"").append(column).append("\" LIKE ?");
-        return List.of(format);
+        return parameters();
     }
 }
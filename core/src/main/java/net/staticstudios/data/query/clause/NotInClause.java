@@ -15,6 +15,16 @@ public class NotInClause implements ValueClause {
         this.values = values;
     }
 
+    @Override
+    public Object shape() {
+        return List.of(NotInClause.class, schema, table, column, values.length);
+    }
+
+    @Override
+    public List<Object> parameters() {
+        return List.of(values);
+    }
+
     @Override
     public List<Object> append(StringBuilder sb) {
         sb.append("\"").append(schema).append("\".\"").append(table).append("\".\"").append(column).append("\" NOT IN (");
@@ -25,6 +35,6 @@ public class NotInClause implements ValueClause {
             }
         }
         sb.append(")");
-        return List.of(values);
+        return parameters();
     }
 }
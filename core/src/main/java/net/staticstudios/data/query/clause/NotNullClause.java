@@ -13,9 +13,19 @@ public class NotNullClause implements ValueClause {
         this.column = column;
     }
 
+    @Override
+    public Object shape() {
+        return List.of(NotNullClause.class, schema, table, column);
+    }
+
+    @Override
+    public List<Object> parameters() {
+        return List.of();
+    }
+
     @Override
     public List<Object> append(StringBuilder sb) {
         sb.append("\"").append(schema).append("\".\"").append(table).append("\".\"").append(column).append("\" IS NOT NULL");
-        return List.of();
+        return parameters();
     }
 }
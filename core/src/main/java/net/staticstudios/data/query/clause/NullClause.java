@@ -13,9 +13,19 @@ public class NullClause implements ValueClause {
         this.column = column;
     }
 
+    @Override
+    public Object shape() {
+        return List.of(NullClause.class, schema, table, column);
+    }
+
+    @Override
+    public List<Object> parameters() {
+        return List.of();
+    }
+
     @Override
     public List<Object> append(StringBuilder sb) {
         sb.append("\"").append(schema).append("\".\"").append(table).append("\".\"").append(column).append("\" IS NULL");
-        return List.of();
+        return parameters();
     }
 }
@@ -5,9 +5,19 @@ import java.util.List;
 
 public class OrClause implements ConditionalClause {
 
+    @Override
+    public Object shape() {
+        return OrClause.class;
+    }
+
+    @Override
+    public List<Object> parameters() {
+        return Collections.emptyList();
+    }
+
     @Override
     public List<Object> append(StringBuilder sb) {
         sb.append(" OR ");
-        return Collections.emptyList();
+        return parameters();
     }
 }
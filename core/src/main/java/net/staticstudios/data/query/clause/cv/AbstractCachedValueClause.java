@@ -7,6 +7,7 @@ import net.staticstudios.data.util.CachedValueMetadata;
 import net.staticstudios.data.util.UniqueDataMetadata;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
 import java.util.Objects;
 
 public abstract class AbstractCachedValueClause implements ValueClause {
@@ -20,13 +21,27 @@ public abstract class AbstractCachedValueClause implements ValueClause {
         this.identifier = identifier;
     }
 
-    protected @Nullable String encodeValue(Object value, DataManager dataManager, UniqueDataMetadata holderMetadata) {
+    @Override
+    public Object shape() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Object> parameters() {
+        throw new UnsupportedOperationException();
+    }
+
+    protected boolean isFallbackValue(Object value, UniqueDataMetadata holderMetadata) {
         CachedValueMetadata cachedValueMetadata = holderMetadata.cachedValueMetadata().values().stream()
                 .filter(meta -> meta.identifier().equals(identifier))
                 .findFirst()
                 .orElseThrow(() -> new IllegalStateException("No cached value metadata found for identifier: " + identifier));
 
-        if (Objects.equals(cachedValueMetadata.fallbackValue(), value)) {
+        return Objects.equals(cachedValueMetadata.fallbackValue(), value);
+    }
+
+    protected @Nullable String encodeValue(Object value, DataManager dataManager, UniqueDataMetadata holderMetadata) {
+        if (isFallbackValue(value, holderMetadata)) {
             return null;
         }
 
@@ -22,6 +22,20 @@ public class CachedValueInClause extends AbstractCachedValueClause {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public Object shape(DataManager dataManager, UniqueDataMetadata holderMetadata) {
+        return List.of(CachedValueInClause.class, schema, table, identifier, values.length);
+    }
+
+    @Override
+    public List<Object> parameters(DataManager dataManager, UniqueDataMetadata holderMetadata) {
+        List<Object> encoded = new ArrayList<>();
+        for (Object value : values) {
+            encoded.add(encodeValue(value, dataManager, holderMetadata));
+        }
+        return encoded;
+    }
+
     @Override
     public List<Object> append(StringBuilder sb, DataManager dataManager, UniqueDataMetadata holderMetadata) {
         sb.append("\"").append(schema).append("\".\"").append(table).append("\".\"").append(RedisUtils.getVirtualColumnName(identifier)).append("\" IN (");
@@ -33,10 +47,6 @@ public class CachedValueInClause extends AbstractCachedValueClause {
         }
         sb.append(")");
 
-        List<Object> encoded = new ArrayList<>();
-        for (Object value : values) {
-            encoded.add(encodeValue(value, dataManager, holderMetadata));
-        }
-        return encoded;
+        return parameters(dataManager, holderMetadata);
     }
 }
@@ -20,6 +20,20 @@ public class CachedValueNotEqualsClause extends AbstractCachedValueClause {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public Object shape(DataManager dataManager, UniqueDataMetadata holderMetadata) {
+        return List.of(CachedValueNotEqualsClause.class, schema, table, identifier, isFallbackValue(value, holderMetadata));
+    }
+
+    @Override
+    public List<Object> parameters(DataManager dataManager, UniqueDataMetadata holderMetadata) {
+        @Nullable String encoded = encodeValue(value, dataManager, holderMetadata);
+        if (encoded == null) {
+            return List.of();
+        }
+        return List.of(encoded);
+    }
+
     @Override
     public List<Object> append(StringBuilder sb, DataManager dataManager, UniqueDataMetadata holderMetadata) {
         @Nullable String encoded = encodeValue(value, dataManager, holderMetadata);
@@ -20,6 +20,20 @@ public class CachedValueNotInClause extends AbstractCachedValueClause {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public Object shape(DataManager dataManager, UniqueDataMetadata holderMetadata) {
+        return List.of(CachedValueNotInClause.class, schema, table, identifier, values.length);
+    }
+
+    @Override
+    public List<Object> parameters(DataManager dataManager, UniqueDataMetadata holderMetadata) {
+        List<Object> encoded = new ArrayList<>();
+        for (Object value : values) {
+            encoded.add(encodeValue(value, dataManager, holderMetadata));
+        }
+        return encoded;
+    }
+
     @Override
     public List<Object> append(StringBuilder sb, DataManager dataManager, UniqueDataMetadata holderMetadata) {
         sb.append("\"").append(schema).append("\".\"").append(table).append("\".\"").append(RedisUtils.getVirtualColumnName(identifier)).append("\" NOT IN (");
@@ -31,10 +45,6 @@ public class CachedValueNotInClause extends AbstractCachedValueClause {
         }
         sb.append(")");
 
-        List<Object> encoded = new ArrayList<>();
-        for (Object value : values) {
-            encoded.add(encodeValue(value, dataManager, holderMetadata));
-        }
-        return encoded;
+        return parameters(dataManager, holderMetadata);
     }
 }
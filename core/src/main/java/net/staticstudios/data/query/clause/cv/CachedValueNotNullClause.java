@@ -17,6 +17,16 @@ public class CachedValueNotNullClause extends AbstractCachedValueClause {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public Object shape(DataManager dataManager, UniqueDataMetadata holderMetadata) {
+        return List.of(CachedValueNotNullClause.class, schema, table, identifier);
+    }
+
+    @Override
+    public List<Object> parameters(DataManager dataManager, UniqueDataMetadata holderMetadata) {
+        return List.of();
+    }
+
     @Override
     public List<Object> append(StringBuilder sb, DataManager dataManager, UniqueDataMetadata holderMetadata) {
         sb.append("\"").append(schema).append("\".\"").append(table).append("\".\"").append(RedisUtils.getVirtualColumnName(identifier)).append("\" IS NOT NULL");
@@ -0,0 +1,10 @@
+package net.staticstudios.data.util;
+
+import net.staticstudios.data.UniqueData;
+
+import java.util.List;
+
+public interface BatchValueUpdateHandler<U extends UniqueData, T> {
+
+    void handle(List<BatchedValueUpdate<U, T>> updates);
+}
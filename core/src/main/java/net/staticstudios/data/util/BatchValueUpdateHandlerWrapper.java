@@ -0,0 +1,117 @@
+package net.staticstudios.data.util;
+
+import net.staticstudios.data.UniqueData;
+
+import java.util.*;
+
+/**
+ * Collects the changes for a batch update handler until its window elapses.
+ * Changes to the same holder within a window are collapsed into one, and dropped if the value ended up where it started.
+ */
+public class BatchValueUpdateHandlerWrapper<U extends UniqueData, T> {
+    private final BatchValueUpdateHandler<U, T> batchHandler;
+    private final long windowMillis;
+    private final Class<T> dataType;
+    private final Class<? extends UniqueData> holderClass;
+    private String name;
+    private final Object lock = new Object();
+    private Map<UniqueData, Object[]> pending = new LinkedHashMap<>();
+    private boolean flushScheduled = false;
+
+    public BatchValueUpdateHandlerWrapper(BatchValueUpdateHandler<U, T> batchHandler, long windowMillis, Class<T> dataType, Class<? extends UniqueData> holderClass) {
+        this.batchHandler = batchHandler;
+        this.windowMillis = windowMillis;
+        this.dataType = dataType;
+        this.holderClass = holderClass;
+    }
+
+    public BatchValueUpdateHandler<U, T> getBatchHandler() {
+        return batchHandler;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public Class<T> getDataType() {
+        return dataType;
+    }
+
+    public Class<? extends UniqueData> getHolderClass() {
+        return holderClass;
+    }
+
+    /**
+     * Get the name this handler is reported under in statistics and slow handler warnings.
+     *
+     * @return the name of this handler
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Add a change to the current batch.
+     *
+     * @return true if this is the first change since the last flush, in which case the caller must schedule a flush
+     */
+    public boolean add(UniqueData holder, Object oldValue, Object newValue) {
+        synchronized (lock) {
+            pending.merge(holder, new Object[]{oldValue, newValue}, (previous, next) -> new Object[]{previous[0], next[1]});
+            if (flushScheduled) {
+                return false;
+            }
+            flushScheduled = true;
+            return true;
+        }
+    }
+
+    /**
+     * Take the changes collected so far, starting a new batch.
+     *
+     * @return the collapsed changes, in the order their holders first changed
+     */
+    public List<BatchedValueUpdate<U, T>> drain() {
+        Map<UniqueData, Object[]> drained;
+        synchronized (lock) {
+            drained = pending;
+            pending = new LinkedHashMap<>();
+            flushScheduled = false;
+        }
+        List<BatchedValueUpdate<U, T>> updates = new ArrayList<>(drained.size());
+        for (Map.Entry<UniqueData, Object[]> entry : drained.entrySet()) {
+            Object[] values = entry.getValue();
+            if (Objects.equals(values[0], values[1])) {
+                continue;
+            }
+            updates.add(unsafeUpdate(entry.getKey(), values[0], values[1]));
+        }
+        return updates;
+    }
+
+    public void handleBatch(List<BatchedValueUpdate<U, T>> updates) {
+        batchHandler.handle(updates);
+    }
+
+    @SuppressWarnings("unchecked")
+    private BatchedValueUpdate<U, T> unsafeUpdate(UniqueData holder, Object oldValue, Object newValue) {
+        return new BatchedValueUpdate<>((U) holder, (T) oldValue, (T) newValue);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(batchHandler, windowMillis, dataType, holderClass);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        BatchValueUpdateHandlerWrapper<?, ?> that = (BatchValueUpdateHandlerWrapper<?, ?>) obj;
+        return windowMillis == that.windowMillis && dataType.equals(that.dataType) && holderClass.equals(that.holderClass) && batchHandler.equals(that.batchHandler);
+    }
+}
@@ -0,0 +1,15 @@
+package net.staticstudios.data.util;
+
+import net.staticstudios.data.UniqueData;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A change to a single cell within a batch. If the cell changed several times within the batch window,
+ * this holds the value from before the first change and the value after the last one.
+ *
+ * @param holder   the holder of the changed value
+ * @param oldValue the value before the first change
+ * @param newValue the value after the last change
+ */
+public record BatchedValueUpdate<U extends UniqueData, T>(U holder, @Nullable T oldValue, @Nullable T newValue) {
+}
@@ -3,6 +3,7 @@ package net.staticstudios.data.util;
 import java.util.Objects;
 
 public class Cell {
+    private static final String WHOLE_TABLE_COLUMN = "*";
     private final String schema;
     private final String table;
     private final String column;
@@ -15,6 +16,22 @@ public class Cell {
         this.idColumnValuePairs = idColumnValuePairs;
     }
 
+    /**
+     * A cell which represents every row and column in a table.
+     * Use this for results which must be invalidated whenever anything in the table changes.
+     */
+    public static Cell wholeTable(String schema, String table) {
+        return new Cell(schema, table, WHOLE_TABLE_COLUMN, ColumnValuePairs.EMPTY);
+    }
+
+    /**
+     * A cell which represents a single column in every row of a table.
+     * Use this for results which must be invalidated whenever the column changes in any row, including when a row is inserted or deleted.
+     */
+    public static Cell wholeColumn(String schema, String table, String column) {
+        return new Cell(schema, table, column, ColumnValuePairs.EMPTY);
+    }
+
     public String getSchema() {
         return schema;
     }
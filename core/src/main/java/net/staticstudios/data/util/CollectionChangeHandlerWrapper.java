@@ -10,6 +10,7 @@ public class CollectionChangeHandlerWrapper<U extends UniqueData, T> {
     private final Class<? extends UniqueData> holderClass;
     private final Type type;
     private PersistentCollectionMetadata collectionMetadata;
+    private String name;
 
     public CollectionChangeHandlerWrapper(CollectionChangeHandler<U, T> handler, Class<T> dataType, Class<? extends UniqueData> holderClass, Type type) {
         this.handler = handler;
@@ -47,6 +48,19 @@ public class CollectionChangeHandlerWrapper<U extends UniqueData, T> {
         return collectionMetadata;
     }
 
+    /**
+     * Get the name this handler is reported under in statistics and slow handler warnings.
+     *
+     * @return the name of this handler
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(handler, dataType, holderClass, type);
@@ -0,0 +1,66 @@
+package net.staticstudios.data.util;
+
+import net.staticstudios.data.UniqueData;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The handlers registered against a single table, resolved against the table's column layout.
+ * Triggers fire once per changed row, so everything which only depends on the registered handlers and the column order,
+ * such as holder classes and the ordinals of id columns, is resolved once here instead of on every change.
+ *
+ * @param schema                   the schema of the table
+ * @param table                    the table
+ * @param columnNames              the column names, in the order the trigger receives row values
+ * @param generation               the handler generation this table was built for
+ * @param valueHandlers            the persistent value handler groups, indexed by column ordinal
+ * @param collectionChangeHandlers the collection change handlers for this table
+ * @param referenceUpdateHandlers  the reference update handlers for this table
+ * @param ordinals                 the position of each column in the row values, used by the collection and reference handler paths
+ */
+public record HandlerDispatchTable(String schema,
+                                   String table,
+                                   List<String> columnNames,
+                                   long generation,
+                                   ValueHandlerGroup[][] valueHandlers,
+                                   List<CollectionChangeHandlerWrapper<?, ?>> collectionChangeHandlers,
+                                   List<ReferenceUpdateHandlerWrapper<?, ?>> referenceUpdateHandlers,
+                                   Map<String, Integer> ordinals) {
+    private static final ValueHandlerGroup[] NO_VALUE_HANDLERS = new ValueHandlerGroup[0];
+
+    public static ValueHandlerGroup[] noValueHandlers() {
+        return NO_VALUE_HANDLERS;
+    }
+
+    public ValueHandlerGroup[] getValueHandlers(int ordinal) {
+        return valueHandlers[ordinal];
+    }
+
+    /**
+     * Get the position of a column in the row values, or -1 if the table has no such column.
+     *
+     * @param column the column name
+     * @return the ordinal of the column
+     */
+    public int ordinal(String column) {
+        Integer ordinal = ordinals.get(column);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * The persistent value handlers of a single holder class for a single column.
+     *
+     * @param holderClass   the holder class
+     * @param idColumns     the id column names of the holder class, in id order
+     * @param idOrdinals    the ordinals of the id columns in the row values, in id order
+     * @param handlers      the handlers called once per change
+     * @param batchHandlers the handlers which collect changes into batches
+     */
+    public record ValueHandlerGroup(Class<? extends UniqueData> holderClass,
+                                    String[] idColumns,
+                                    int[] idOrdinals,
+                                    List<ValueUpdateHandlerWrapper<?, ?>> handlers,
+                                    List<BatchValueUpdateHandlerWrapper<?, ?>> batchHandlers) {
+    }
+}
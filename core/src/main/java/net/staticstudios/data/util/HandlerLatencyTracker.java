@@ -0,0 +1,100 @@
+package net.staticstudios.data.util;
+
+import net.staticstudios.data.HandlerStatistics;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks how long each update handler waits to run and how long it takes, along with the number of handlers waiting to run.
+ */
+public class HandlerLatencyTracker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HandlerLatencyTracker.class);
+    private final Map<String, Histograms> handlers = new ConcurrentHashMap<>();
+    private final AtomicLong backlog = new AtomicLong();
+    private final long slowHandlerThresholdNanos;
+
+    /**
+     * @param slowHandlerThresholdMillis the run time above which a handler is logged as slow, or a negative value to disable slow handler logging
+     */
+    public HandlerLatencyTracker(long slowHandlerThresholdMillis) {
+        this.slowHandlerThresholdNanos = slowHandlerThresholdMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(slowHandlerThresholdMillis);
+    }
+
+    /**
+     * Wrap a handler invocation so its queue wait and run time are recorded when it runs.
+     *
+     * @param name    the name of the handler
+     * @param handler the handler invocation
+     * @return the wrapped invocation
+     */
+    public Runnable track(@Nullable String name, Runnable handler) {
+        String handlerName = name == null ? "unknown" : name;
+        Histograms histograms = handlers.computeIfAbsent(handlerName, k -> new Histograms());
+        long submitted = System.nanoTime();
+        backlog.incrementAndGet();
+        return () -> {
+            long start = System.nanoTime();
+            backlog.decrementAndGet();
+            histograms.queueWait.record(start - submitted);
+            try {
+                handler.run();
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                histograms.run.record(elapsed);
+                if (slowHandlerThresholdNanos >= 0 && elapsed >= slowHandlerThresholdNanos) {
+                    LOGGER.warn("Update handler {} took {}ms", handlerName, TimeUnit.NANOSECONDS.toMillis(elapsed));
+                }
+            }
+        };
+    }
+
+    /**
+     * Get the number of handler invocations which have been submitted but have not started yet.
+     *
+     * @return the handler backlog
+     */
+    public long getBacklog() {
+        return backlog.get();
+    }
+
+    /**
+     * Remove a tracked invocation from the backlog after the executor refused to run it.
+     */
+    public void rejected() {
+        backlog.decrementAndGet();
+    }
+
+    public Map<String, HandlerStatistics> snapshot() {
+        Map<String, HandlerStatistics> snapshot = new HashMap<>();
+        handlers.forEach((name, histograms) -> {
+            long count = histograms.run.getCount();
+            if (count == 0) {
+                return;
+            }
+            long waits = Math.max(1, histograms.queueWait.getCount());
+            snapshot.put(name, new HandlerStatistics(
+                    name,
+                    count,
+                    histograms.run.getTotalNanos() / count,
+                    histograms.run.getPercentileNanos(0.5),
+                    histograms.run.getPercentileNanos(0.99),
+                    histograms.run.getMaxNanos(),
+                    histograms.queueWait.getTotalNanos() / waits,
+                    histograms.queueWait.getPercentileNanos(0.99)
+            ));
+        });
+        return snapshot;
+    }
+
+    private static class Histograms {
+        private final LatencyHistogram run = new LatencyHistogram();
+        private final LatencyHistogram queueWait = new LatencyHistogram();
+    }
+}
@@ -0,0 +1,264 @@
+package net.staticstudios.data.util;
+
+import net.staticstudios.data.impl.DataAccessor;
+import org.intellij.lang.annotations.Language;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An in-heap secondary index over the indexed columns of a single table, mapping each value to the ids of the rows holding it.
+ * The index is built from H2 on first use and then maintained from committed row changes.
+ * Whenever a change cannot be applied consistently, for example because commit callbacks for the same row ran out of order,
+ * the index is dropped and rebuilt on the next lookup rather than risk serving stale ids.
+ * Each row change is applied under a write lock, so a lookup never sees a row which is halfway between two values.
+ */
+public class HeapIndex {
+    private static final Set<Class<?>> SUPPORTED_TYPES = Set.of(String.class, UUID.class, Integer.class, Long.class, Boolean.class);
+    private static final Object NULL = new Object();
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+    private final String schema;
+    private final String table;
+    private final List<String> idColumns;
+    private final Map<String, Class<?>> columns;
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicReference<Entries> entries = new AtomicReference<>();
+
+    public HeapIndex(String schema, String table, List<String> idColumns, Map<String, Class<?>> columns) {
+        this.schema = schema;
+        this.table = table;
+        this.idColumns = List.copyOf(idColumns);
+        this.columns = Map.copyOf(columns);
+    }
+
+    public static boolean isSupportedType(Class<?> type) {
+        return SUPPORTED_TYPES.contains(type);
+    }
+
+    public boolean isEmpty() {
+        return columns.isEmpty();
+    }
+
+    /**
+     * Find the ids of the rows matching all the given column equalities.
+     *
+     * @param equalities the column values to match
+     * @param dataAccessor the data accessor to build the index with, if it has not been built yet
+     * @return the matching ids, or null if this index cannot answer the lookup
+     */
+    public @Nullable Set<ColumnValuePairs> lookup(Map<String, Object> equalities, DataAccessor dataAccessor) {
+        if (equalities.isEmpty()) {
+            return null;
+        }
+        for (Map.Entry<String, Object> equality : equalities.entrySet()) {
+            Class<?> type = columns.get(equality.getKey());
+            if (type == null || equality.getValue() == null || equality.getValue().getClass() != type) {
+                return null;
+            }
+        }
+
+        Entries current = entries.get();
+        if (current == null) {
+            current = build(dataAccessor);
+            if (current == null) {
+                return null;
+            }
+        }
+
+        current.lock.readLock().lock();
+        try {
+            Set<ColumnValuePairs> result = null;
+            for (Map.Entry<String, Object> equality : equalities.entrySet()) {
+                Set<ColumnValuePairs> ids = current.byValue.get(equality.getKey()).get(equality.getValue());
+                if (ids == null || ids.isEmpty()) {
+                    return Collections.emptySet();
+                }
+                if (result == null) {
+                    result = new LinkedHashSet<>(ids);
+                } else {
+                    result.retainAll(ids);
+                }
+            }
+            return result;
+        } finally {
+            current.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Apply a committed row change to this index. Either row may be null for inserts and deletes.
+     */
+    public void apply(List<String> columnNames, @Nullable Object[] oldRow, @Nullable Object[] newRow) {
+        // bump the version before reading the entries, so a concurrent build can tell it may have missed this change
+        version.incrementAndGet();
+        Entries current = entries.get();
+        if (current == null) {
+            return;
+        }
+
+        ColumnValuePairs id = readId(columnNames, newRow != null ? newRow : oldRow);
+        if (id == null) {
+            invalidate();
+            return;
+        }
+
+        current.lock.writeLock().lock();
+        try {
+            for (Map.Entry<String, Class<?>> column : columns.entrySet()) {
+                int index = columnNames.indexOf(column.getKey());
+                if (index == -1) {
+                    continue;
+                }
+                Object oldValue = oldRow != null ? wrap(oldRow[index]) : null;
+                Object newValue = newRow != null ? wrap(newRow[index]) : null;
+                if (!apply(current, column.getKey(), column.getValue(), id, oldValue, newValue)) {
+                    logger.trace("Heap index for {}.{} is out of sync on column {}, dropping it", schema, table, column.getKey());
+                    invalidate();
+                    return;
+                }
+            }
+        } finally {
+            current.lock.writeLock().unlock();
+        }
+    }
+
+    public void invalidate() {
+        version.incrementAndGet();
+        entries.set(null);
+    }
+
+    private boolean apply(Entries current, String column, Class<?> type, ColumnValuePairs id, @Nullable Object oldValue, @Nullable Object newValue) {
+        Map<ColumnValuePairs, Object> byId = current.byId.get(column);
+        Map<Object, Set<ColumnValuePairs>> byValue = current.byValue.get(column);
+        Object indexed = byId.get(id);
+
+        if (newValue == null) { // delete
+            if (indexed == null) {
+                return true;
+            }
+            if (!indexed.equals(oldValue)) {
+                return false;
+            }
+            remove(byValue, indexed, id);
+            byId.remove(id);
+            return true;
+        }
+
+        if (newValue != NULL && newValue.getClass() != type) {
+            return false;
+        }
+        if (newValue.equals(indexed)) {
+            return true;
+        }
+        if (oldValue != null && !oldValue.equals(indexed)) { // update, but the index does not hold the old value
+            return false;
+        }
+        if (oldValue == null && indexed != null) { // insert of a row which is already indexed with a different value
+            return false;
+        }
+        if (indexed != null) {
+            remove(byValue, indexed, id);
+        }
+        byId.put(id, newValue);
+        if (newValue != NULL) {
+            byValue.compute(newValue, (k, ids) -> {
+                Set<ColumnValuePairs> updated = ids == null ? ConcurrentHashMap.newKeySet() : ids;
+                updated.add(id);
+                return updated;
+            });
+        }
+        return true;
+    }
+
+    private void remove(Map<Object, Set<ColumnValuePairs>> byValue, Object value, ColumnValuePairs id) {
+        if (value == NULL) {
+            return;
+        }
+        byValue.computeIfPresent(value, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+
+    private synchronized @Nullable Entries build(DataAccessor dataAccessor) {
+        Entries current = entries.get();
+        if (current != null) {
+            return current;
+        }
+
+        long startVersion = version.get();
+        List<String> columnNames = new ArrayList<>(idColumns);
+        columnNames.addAll(columns.keySet());
+        StringBuilder sb = new StringBuilder("SELECT ");
+        for (String column : columnNames) {
+            sb.append("\"").append(column).append("\", ");
+        }
+        sb.setLength(sb.length() - 2);
+        sb.append(" FROM \"").append(schema).append("\".\"").append(table).append("\"");
+        @Language("SQL") String sql = sb.toString();
+
+        Entries built = new Entries();
+        for (String column : columns.keySet()) {
+            built.byId.put(column, new ConcurrentHashMap<>());
+            built.byValue.put(column, new ConcurrentHashMap<>());
+        }
+        try (ResultSet rs = dataAccessor.executeQuery(sql, List.of())) {
+            Object[] row = new Object[columnNames.size()];
+            while (rs.next()) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+                ColumnValuePairs id = readId(columnNames, row);
+                for (Map.Entry<String, Class<?>> column : columns.entrySet()) {
+                    Object value = wrap(row[columnNames.indexOf(column.getKey())]);
+                    if (!apply(built, column.getKey(), column.getValue(), id, null, value)) {
+                        logger.warn("Cannot build heap index for {}.{}, column {} holds a value of an unexpected type", schema, table, column.getKey());
+                        return null;
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+
+        entries.compareAndSet(null, built);
+        if (version.get() != startVersion) {
+            // a change was committed while building, which the scan may or may not have seen
+            entries.compareAndSet(built, null);
+            return null;
+        }
+        logger.trace("Built heap index for {}.{} on columns {}", schema, table, columns.keySet());
+        return built;
+    }
+
+    private @Nullable ColumnValuePairs readId(List<String> columnNames, Object[] row) {
+        ColumnValuePair[] pairs = new ColumnValuePair[idColumns.size()];
+        for (int i = 0; i < idColumns.size(); i++) {
+            int index = columnNames.indexOf(idColumns.get(i));
+            if (index == -1 || row[index] == null) {
+                return null;
+            }
+            pairs[i] = new ColumnValuePair(idColumns.get(i), row[index]);
+        }
+        return new ColumnValuePairs(pairs);
+    }
+
+    private static Object wrap(@Nullable Object value) {
+        return value == null ? NULL : value;
+    }
+
+    private static class Entries {
+        private final Map<String, Map<ColumnValuePairs, Object>> byId = new HashMap<>();
+        private final Map<String, Map<Object, Set<ColumnValuePairs>>> byValue = new HashMap<>();
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    }
+}
@@ -0,0 +1,79 @@
+package net.staticstudios.data.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import net.staticstudios.data.QueryStatistics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks a latency histogram per SQL statement, and decides when a slow statement should be logged.
+ * Statements are bounded in number, so dynamically built SQL cannot grow this without limit.
+ */
+public class QueryLatencyTracker {
+    private final Cache<String, LatencyHistogram> histograms;
+    private final Cache<String, Boolean> recentlyLoggedSlowQueries;
+    private final long slowQueryThresholdNanos;
+
+    /**
+     * @param maximumStatements        the maximum number of distinct statements to track
+     * @param slowQueryThresholdMillis the latency above which a statement is considered slow, or a negative value to disable slow query logging
+     */
+    public QueryLatencyTracker(long maximumStatements, long slowQueryThresholdMillis) {
+        this.histograms = Caffeine.newBuilder()
+                .maximumSize(maximumStatements)
+                .executor(Runnable::run)
+                .build();
+        this.recentlyLoggedSlowQueries = Caffeine.newBuilder()
+                .maximumSize(maximumStatements)
+                .expireAfterWrite(1, TimeUnit.MINUTES)
+                .executor(Runnable::run)
+                .build();
+        this.slowQueryThresholdNanos = slowQueryThresholdMillis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(slowQueryThresholdMillis);
+    }
+
+    public LatencyHistogram getHistogram(String sql) {
+        return histograms.get(sql, k -> new LatencyHistogram());
+    }
+
+    /**
+     * Record one execution of a statement.
+     *
+     * @param sql   the statement
+     * @param nanos how long the statement took to execute
+     * @return true if the statement was slow and has not been logged in the last minute
+     */
+    public boolean record(String sql, long nanos) {
+        getHistogram(sql).record(nanos);
+        if (slowQueryThresholdNanos < 0 || nanos < slowQueryThresholdNanos) {
+            return false;
+        }
+        return recentlyLoggedSlowQueries.asMap().putIfAbsent(sql, Boolean.TRUE) == null;
+    }
+
+    public void recordRows(String sql, long rows) {
+        getHistogram(sql).recordRows(rows);
+    }
+
+    public Map<String, QueryStatistics> snapshot() {
+        Map<String, QueryStatistics> snapshot = new HashMap<>();
+        histograms.asMap().forEach((sql, histogram) -> {
+            long count = histogram.getCount();
+            if (count == 0) {
+                return;
+            }
+            snapshot.put(sql, new QueryStatistics(
+                    sql,
+                    count,
+                    histogram.getRows(),
+                    histogram.getTotalNanos() / count,
+                    histogram.getPercentileNanos(0.5),
+                    histogram.getPercentileNanos(0.99),
+                    histogram.getMaxNanos()
+            ));
+        });
+        return snapshot;
+    }
+}
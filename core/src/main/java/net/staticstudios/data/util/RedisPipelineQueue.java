@@ -0,0 +1,205 @@
+package net.staticstudios.data.util;
+
+import com.google.common.base.Preconditions;
+import net.staticstudios.utils.ShutdownStage;
+import net.staticstudios.utils.ThreadUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * A dedicated lane for Redis commands, separate from the {@link TaskQueue} which serializes Postgres work.
+ * Commands are drained from the queue into a single {@link Pipeline}, so a burst of writes costs one round trip rather than one per command.
+ * Commands are sent in submission order, so the last write to a key always wins.
+ */
+public class RedisPipelineQueue {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisPipelineQueue.class);
+    private final BlockingQueue<Command<?>> queue = new LinkedBlockingQueue<>();
+    private final AtomicBoolean isShutdown = new AtomicBoolean(false);
+    private final ExecutorService executor;
+    private final JedisPool jedisPool;
+    private final int maxPipelineSize;
+    private final long lingerNanos;
+
+    /**
+     * @param config          the data source config
+     * @param maxPipelineSize the maximum number of commands sent in a single pipeline
+     * @param lingerMillis    how long to wait for more commands before sending a pipeline which is not full, or 0 to send whatever is queued straight away
+     */
+    public RedisPipelineQueue(DataSourceConfig config, int maxPipelineSize, long lingerMillis) {
+        Preconditions.checkArgument(maxPipelineSize > 0, "maxPipelineSize must be positive");
+        Preconditions.checkArgument(lingerMillis >= 0, "lingerMillis must not be negative");
+        this.maxPipelineSize = maxPipelineSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.jedisPool = new JedisPool(config.redisHost(), config.redisPort());
+        this.jedisPool.setMaxTotal(1);
+
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r);
+            thread.setName("RedisPipelineQueue");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        start();
+
+        ThreadUtils.onShutdownRunSync(ShutdownStage.CLEANUP, this::shutdown);
+    }
+
+    /**
+     * Queue a command to be sent in the next pipeline.
+     *
+     * @param command the command, which should only queue work on the pipeline and return its response
+     * @param <T>     the type of the response
+     * @return a future completed with the command's response once the pipeline has been synced
+     */
+    public <T> CompletableFuture<T> submit(Function<Pipeline, Response<T>> command) {
+        Command<T> queued = new Command<>(command, new CompletableFuture<>());
+        queue.add(queued);
+        return queued.future;
+    }
+
+    public CompletableFuture<String> set(String key, String value, long expirationSeconds) {
+        if (expirationSeconds > 0) {
+            return submit(pipeline -> pipeline.setex(key, expirationSeconds, value));
+        }
+        return submit(pipeline -> pipeline.set(key, value));
+    }
+
+    /**
+     * Set a key and publish a message in the same command, so no other write to the key can be sent in between.
+     *
+     * @param key               the key
+     * @param value             the value
+     * @param expirationSeconds the expiration in seconds, or a non-positive value for no expiration
+     * @param channel           the channel to publish to
+     * @param message           the message to publish
+     * @return a future completed with the number of clients which received the message
+     */
+    public CompletableFuture<Long> setAndPublish(String key, String value, long expirationSeconds, String channel, String message) {
+        return submit(pipeline -> {
+            if (expirationSeconds > 0) {
+                pipeline.setex(key, expirationSeconds, value);
+            } else {
+                pipeline.set(key, value);
+            }
+            return pipeline.publish(channel, message);
+        });
+    }
+
+    public CompletableFuture<Long> del(String key) {
+        return submit(pipeline -> pipeline.del(key));
+    }
+
+    public CompletableFuture<String> get(String key) {
+        return submit(pipeline -> pipeline.get(key));
+    }
+
+    /**
+     * Get a future which completes once every previously submitted command has been sent.
+     *
+     * @return the future
+     */
+    public CompletableFuture<Void> flush() {
+        return submit(pipeline -> null).thenApply(ignored -> null);
+    }
+
+    public int getQueuedCommands() {
+        return queue.size();
+    }
+
+    private void start() {
+        executor.submit(() -> {
+            List<Command<?>> batch = new ArrayList<>(maxPipelineSize);
+            while (!(isShutdown.get() && queue.isEmpty())) {
+                try {
+                    batch.add(queue.take());
+                    queue.drainTo(batch, maxPipelineSize - batch.size());
+                    if (lingerNanos > 0) {
+                        long deadline = System.nanoTime() + lingerNanos;
+                        while (batch.size() < maxPipelineSize) {
+                            Command<?> next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                            if (next == null) {
+                                break;
+                            }
+                            batch.add(next);
+                            queue.drainTo(batch, maxPipelineSize - batch.size());
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // We're shutting down
+                    queue.drainTo(batch, maxPipelineSize - batch.size());
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                }
+
+                send(batch);
+                batch.clear();
+            }
+        });
+    }
+
+    private void send(List<Command<?>> batch) {
+        List<Response<?>> responses = new ArrayList<>(batch.size());
+        try (Jedis jedis = jedisPool.getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            for (Command<?> command : batch) {
+                responses.add(command.command.apply(pipeline));
+            }
+            pipeline.sync();
+        } catch (Exception e) {
+            LOGGER.error("Error sending Redis pipeline of {} commands", batch.size(), e);
+            for (Command<?> command : batch) {
+                command.future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).complete(responses.get(i));
+        }
+    }
+
+    private void shutdown() {
+        if (!isShutdown.compareAndSet(false, true)) {
+            return;
+        }
+        executor.shutdown();
+
+        if (queue.isEmpty()) {
+            executor.shutdownNow();
+        }
+
+        try {
+            if (!executor.awaitTermination(60, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            LOGGER.error("Interrupted while shutting down RedisPipelineQueue", e);
+        }
+        jedisPool.close();
+    }
+
+    private record Command<T>(Function<Pipeline, Response<T>> command, CompletableFuture<T> future) {
+
+        @SuppressWarnings("unchecked")
+        private void complete(Response<?> response) {
+            try {
+                future.complete(response == null ? null : (T) response.get());
+            } catch (Exception e) {
+                LOGGER.error("Error executing Redis command", e);
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.util.Objects;
 public class ReferenceUpdateHandlerWrapper<U extends UniqueData, T extends UniqueData> {
     private final ReferenceUpdateHandler<U, T> handler;
     private ReferenceMetadata referenceMetadata;
+    private String name;
 
     public ReferenceUpdateHandlerWrapper(ReferenceUpdateHandler<U, T> handler) {
         this.handler = handler;
@@ -20,6 +21,19 @@ public class ReferenceUpdateHandlerWrapper<U extends UniqueData, T extends Uniqu
         return referenceMetadata;
     }
 
+    /**
+     * Get the name this handler is reported under in statistics and slow handler warnings.
+     *
+     * @return the name of this handler
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
     public ReferenceUpdateHandler<U, T> getHandler() {
         return handler;
     }
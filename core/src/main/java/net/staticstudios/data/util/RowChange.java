@@ -0,0 +1,29 @@
+package net.staticstudios.data.util;
+
+import net.staticstudios.data.UniqueData;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A committed change to a row of a UniqueData class's table.
+ * Values are the serialized column values, as stored in the table.
+ *
+ * @param type           the UniqueData class
+ * @param cause          whether the row was inserted, updated or deleted
+ * @param id             the id columns of the row
+ * @param instance       the instance the row belongs to, or null if the row was deleted
+ * @param oldValues      the column values before the change, empty for inserts
+ * @param newValues      the column values after the change, empty for deletes
+ * @param changedColumns the columns whose values changed
+ * @param <T>            the type of UniqueData
+ */
+public record RowChange<T extends UniqueData>(Class<T> type,
+                                              TriggerCause cause,
+                                              ColumnValuePairs id,
+                                              @Nullable T instance,
+                                              Map<String, Object> oldValues,
+                                              Map<String, Object> newValues,
+                                              Set<String> changedColumns) {
+}
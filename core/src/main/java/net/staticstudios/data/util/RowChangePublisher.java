@@ -0,0 +1,110 @@
+package net.staticstudios.data.util;
+
+import net.staticstudios.data.UniqueData;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Publishes the committed changes to the rows of a single UniqueData class.
+ * The committing thread only hands over the raw row values. Building each {@link RowChange}, which may need to resolve the instance,
+ * happens on the conversion executor, in commit order, before the change is offered to subscribers.
+ *
+ * @param <T> the type of UniqueData
+ */
+public class RowChangePublisher<T extends UniqueData> implements Flow.Publisher<RowChange<T>>, AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RowChangePublisher.class);
+    private final SubmissionPublisher<RawRowChange> rawChanges;
+    private final SubmissionPublisher<RowChange<T>> changes;
+    private final RowChangeFactory<T> factory;
+    private final Runnable onDrop;
+
+    /**
+     * @param conversionExecutor the executor row changes are built on
+     * @param deliveryExecutor   the executor row changes are delivered to subscribers on
+     * @param bufferSize         the number of changes buffered before further changes are dropped
+     * @param factory            builds a row change from the raw row values
+     * @param onDrop             called whenever a change is dropped
+     */
+    public RowChangePublisher(Executor conversionExecutor, Executor deliveryExecutor, int bufferSize, RowChangeFactory<T> factory, Runnable onDrop) {
+        this.rawChanges = new SubmissionPublisher<>(conversionExecutor, bufferSize);
+        this.changes = new SubmissionPublisher<>(deliveryExecutor, bufferSize);
+        this.factory = factory;
+        this.onDrop = onDrop;
+        rawChanges.subscribe(new Converter());
+    }
+
+    /**
+     * Hand over a committed row change. Either row may be null for inserts and deletes.
+     * Does nothing if there are no subscribers.
+     */
+    public void publish(List<String> columnNames, @Nullable Object[] oldRow, @Nullable Object[] newRow) {
+        if (!changes.hasSubscribers()) {
+            return;
+        }
+        rawChanges.offer(new RawRowChange(columnNames, oldRow, newRow), (subscriber, dropped) -> {
+            onDrop.run();
+            return false;
+        });
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super RowChange<T>> subscriber) {
+        changes.subscribe(subscriber);
+    }
+
+    @Override
+    public void close() {
+        rawChanges.close();
+        changes.close();
+    }
+
+    @FunctionalInterface
+    public interface RowChangeFactory<T extends UniqueData> {
+        @Nullable RowChange<T> create(List<String> columnNames, @Nullable Object[] oldRow, @Nullable Object[] newRow);
+    }
+
+    private record RawRowChange(List<String> columnNames, @Nullable Object[] oldRow, @Nullable Object[] newRow) {
+    }
+
+    private class Converter implements Flow.Subscriber<RawRowChange> {
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(RawRowChange rawChange) {
+            RowChange<T> change;
+            try {
+                change = factory.create(rawChange.columnNames(), rawChange.oldRow(), rawChange.newRow());
+            } catch (Exception e) {
+                LOGGER.error("Error building row change", e);
+                return;
+            }
+            if (change == null) {
+                return;
+            }
+            changes.offer(change, (subscriber, dropped) -> {
+                onDrop.run();
+                return false;
+            });
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            changes.closeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            changes.close();
+        }
+    }
+}
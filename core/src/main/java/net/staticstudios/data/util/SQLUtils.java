@@ -1,6 +1,9 @@
 package net.staticstudios.data.util;
 
 import net.staticstudios.data.primative.Primitives;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
 
 public class SQLUtils {
     public static String getH2SqlType(Class<?> clazz) {
@@ -26,4 +29,34 @@ public class SQLUtils {
         }
         return defaultValue;
     }
+
+    /**
+     * Append {@code "a" IN (?, ?)} or, for multiple columns, {@code ("a", "b") IN ((?, ?), (?, ?))}.
+     */
+    public static void appendInClause(StringBuilder sqlBuilder, List<String> columns, int rows) {
+        appendInClause(sqlBuilder, null, columns, rows);
+    }
+
+    public static void appendInClause(StringBuilder sqlBuilder, @Nullable String tableAlias, List<String> columns, int rows) {
+        String prefix = tableAlias == null ? "\"" : tableAlias + ".\"";
+        if (columns.size() == 1) {
+            sqlBuilder.append(prefix).append(columns.getFirst()).append("\" IN (");
+            sqlBuilder.append("?, ".repeat(rows));
+            sqlBuilder.setLength(sqlBuilder.length() - 2);
+            sqlBuilder.append(")");
+            return;
+        }
+
+        sqlBuilder.append("(");
+        for (String column : columns) {
+            sqlBuilder.append(prefix).append(column).append("\", ");
+        }
+        sqlBuilder.setLength(sqlBuilder.length() - 2);
+        sqlBuilder.append(") IN (");
+        String row = "(" + "?, ".repeat(columns.size());
+        row = row.substring(0, row.length() - 2) + "), ";
+        sqlBuilder.append(row.repeat(rows));
+        sqlBuilder.setLength(sqlBuilder.length() - 2);
+        sqlBuilder.append(")");
+    }
 }
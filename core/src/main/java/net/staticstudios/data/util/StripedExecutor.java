@@ -0,0 +1,245 @@
+package net.staticstudios.data.util;
+
+import com.google.common.base.Preconditions;
+import net.staticstudios.utils.ShutdownStage;
+import net.staticstudios.utils.ThreadUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * An executor which runs tasks with the same key serially, in submission order, while tasks with different keys run in parallel.
+ * Keys are hashed onto a fixed number of stripes, each drained by a single worker thread.
+ * <p>
+ * When used as the update handler executor, handlers are keyed by their holder instance,
+ * so a holder observes its changes in commit order without blocking the thread which committed them.
+ * <p>
+ * The number of queued tasks per stripe is bounded, and what happens when a stripe is full is decided by the {@link Backpressure} policy.
+ * Tasks submitted from a worker thread are never rejected or blocked, since a handler which writes data would otherwise be able to deadlock its own stripe.
+ */
+public class StripedExecutor implements Consumer<Runnable> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StripedExecutor.class);
+    private final Stripe[] stripes;
+    private final int queueCapacity;
+    private final Backpressure backpressure;
+    private final AtomicInteger nextStripe = new AtomicInteger();
+    private final ThreadLocal<Stripe> currentStripe = new ThreadLocal<>();
+    private volatile boolean shutdown = false;
+
+    private StripedExecutor(int stripeCount, int queueCapacity, Backpressure backpressure, ThreadFactory threadFactory) {
+        this.queueCapacity = queueCapacity;
+        this.backpressure = backpressure;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            Stripe stripe = new Stripe(queueCapacity);
+            stripes[i] = stripe;
+            stripe.worker = threadFactory.newThread(() -> run(stripe));
+            stripe.worker.start();
+        }
+
+        ThreadUtils.onShutdownRunSync(ShutdownStage.CLEANUP, this::shutdown);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Run a task after all previously submitted tasks with an equal key.
+     *
+     * @param key  the key to order the task by
+     * @param task the task
+     * @throws RejectedExecutionException if the executor has been shut down, or the stripe is full and the policy is {@link Backpressure#REJECT}
+     */
+    public void execute(Object key, Runnable task) {
+        int hash = key.hashCode();
+        submit(stripes[Math.floorMod(hash ^ (hash >>> 16), stripes.length)], task);
+    }
+
+    /**
+     * Run a task with no ordering requirement. Tasks are spread over the stripes round-robin.
+     *
+     * @param task the task
+     */
+    @Override
+    public void accept(Runnable task) {
+        submit(stripes[Math.floorMod(nextStripe.getAndIncrement(), stripes.length)], task);
+    }
+
+    /**
+     * Get the number of tasks waiting to run, across all stripes.
+     *
+     * @return the number of queued tasks
+     */
+    public int getQueuedTasks() {
+        int queued = 0;
+        for (Stripe stripe : stripes) {
+            queued += stripe.queue.size();
+        }
+        return queued;
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Stop accepting tasks. Tasks which were already queued still run.
+     */
+    public void shutdown() {
+        shutdown = true;
+        for (Stripe stripe : stripes) {
+            stripe.queue.offer(new Task(null, false)); // wake up the worker
+        }
+    }
+
+    private void submit(Stripe stripe, Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("StripedExecutor has been shut down");
+        }
+        if (currentStripe.get() != null) {
+            stripe.queue.offer(new Task(task, false));
+            return;
+        }
+
+        switch (backpressure) {
+            case BLOCK -> {
+                try {
+                    stripe.permits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("Interrupted while waiting for space in a full stripe", e);
+                }
+            }
+            case CALLER_RUNS -> {
+                if (!stripe.permits.tryAcquire()) {
+                    runTask(task);
+                    return;
+                }
+            }
+            case REJECT -> {
+                if (!stripe.permits.tryAcquire()) {
+                    throw new RejectedExecutionException("Stripe is full, " + queueCapacity + " tasks are already queued");
+                }
+            }
+        }
+        stripe.queue.offer(new Task(task, true));
+    }
+
+    private void run(Stripe stripe) {
+        currentStripe.set(stripe);
+        while (!(shutdown && stripe.queue.isEmpty())) {
+            Task task;
+            try {
+                task = stripe.queue.take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (task.permit()) {
+                stripe.permits.release();
+            }
+            if (task.runnable() != null) {
+                runTask(task.runnable());
+            }
+        }
+    }
+
+    private void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (Exception e) {
+            LOGGER.error("Error running task in StripedExecutor", e);
+        }
+    }
+
+    /**
+     * What to do when a task is submitted to a stripe which already has the maximum number of queued tasks.
+     */
+    public enum Backpressure {
+        /**
+         * Block the submitting thread until there is space. This keeps ordering, but slows down writers.
+         */
+        BLOCK,
+        /**
+         * Run the task on the submitting thread. This never blocks, but the task may run before tasks with the same key which are still queued.
+         */
+        CALLER_RUNS,
+        /**
+         * Throw a {@link RejectedExecutionException}.
+         */
+        REJECT
+    }
+
+    private record Task(Runnable runnable, boolean permit) {
+    }
+
+    private static class Stripe {
+        private final BlockingQueue<Task> queue = new LinkedBlockingQueue<>();
+        private final Semaphore permits;
+        private Thread worker;
+
+        private Stripe(int capacity) {
+            this.permits = new Semaphore(capacity);
+        }
+    }
+
+    public static class Builder {
+        private int stripes = Math.max(2, Runtime.getRuntime().availableProcessors());
+        private int queueCapacity = 10_000;
+        private Backpressure backpressure = Backpressure.BLOCK;
+        private ThreadFactory threadFactory = Thread.ofVirtual().name("static-data-update-handler-", 0).factory();
+
+        /**
+         * Set the number of stripes, which is the maximum number of tasks which run in parallel.
+         *
+         * @param stripes the number of stripes
+         * @return this builder
+         */
+        public Builder stripes(int stripes) {
+            this.stripes = stripes;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of queued tasks per stripe.
+         *
+         * @param queueCapacity the maximum number of queued tasks per stripe
+         * @return this builder
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Builder backpressure(Backpressure backpressure) {
+            this.backpressure = backpressure;
+            return this;
+        }
+
+        /**
+         * Set the factory for the worker threads. By default, each stripe is drained by a virtual thread.
+         *
+         * @param threadFactory the thread factory
+         * @return this builder
+         */
+        public Builder threadFactory(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+            return this;
+        }
+
+        public StripedExecutor build() {
+            Preconditions.checkArgument(stripes > 0, "Stripes must be positive");
+            Preconditions.checkArgument(queueCapacity > 0, "Queue capacity must be positive");
+            Preconditions.checkNotNull(backpressure, "Backpressure must be set");
+            Preconditions.checkNotNull(threadFactory, "Thread factory must be set");
+            return new StripedExecutor(stripes, queueCapacity, backpressure, threadFactory);
+        }
+    }
+}
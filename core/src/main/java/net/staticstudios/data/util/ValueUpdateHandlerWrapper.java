@@ -8,6 +8,7 @@ public class ValueUpdateHandlerWrapper<U extends UniqueData, T> {
     private final ValueUpdateHandler<U, T> handler;
     private final Class<T> dataType;
     private final Class<? extends UniqueData> holderClass;
+    private String name;
 
     public ValueUpdateHandlerWrapper(ValueUpdateHandler<U, T> handler, Class<T> dataType, Class<? extends UniqueData> holderClass) {
         this.handler = handler;
@@ -28,6 +29,19 @@ public class ValueUpdateHandlerWrapper<U extends UniqueData, T> {
         return holderClass;
     }
 
+    /**
+     * Get the name this handler is reported under in statistics and slow handler warnings.
+     *
+     * @return the name of this handler
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
     public void unsafeHandle(UniqueData holder, Object oldValue, Object newValue) {
         handler.unsafeHandle(holder, oldValue, newValue);
     }
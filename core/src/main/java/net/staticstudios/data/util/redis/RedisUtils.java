@@ -1,5 +1,6 @@
 package net.staticstudios.data.util.redis;
 
+import com.google.common.base.Preconditions;
 import net.staticstudios.data.DataManager;
 import net.staticstudios.data.parse.SQLColumn;
 import net.staticstudios.data.parse.SQLSchema;
@@ -11,7 +12,9 @@ import net.staticstudios.data.util.ColumnValuePairs;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 public class RedisUtils {
@@ -91,18 +94,35 @@ public class RedisUtils {
         return sb.toString();
     }
 
+    /**
+     * Split a key into its partial key and encoded id columns in a single pass.
+     * The partial key is the key with every id value replaced by {@code *}, so it equals the key built by {@link #buildPartialRedisKey}.
+     *
+     * @param key the key
+     * @return the deconstructed key
+     */
     public static DeconstructedKey deconstruct(String key) {
         List<String> encodedIdValues = new ArrayList<>();
         List<String> encodedIdNames = new ArrayList<>();
-        String[] parts = key.split(":");
-        StringBuilder sb = new StringBuilder();
-        sb.append(parts[0]).append(":").append(parts[1]).append(":").append(parts[2]).append(":");
-        for (int i = 3; i < parts.length - 1; i += 2) {
-            sb.append(parts[i]).append(":").append("*").append(":");
-            encodedIdNames.add(parts[i]);
-            encodedIdValues.add(parts[i + 1]);
+        int prefixEnd = key.indexOf(':');
+        int schemaEnd = prefixEnd == -1 ? -1 : key.indexOf(':', prefixEnd + 1);
+        int tableEnd = schemaEnd == -1 ? -1 : key.indexOf(':', schemaEnd + 1);
+        Preconditions.checkArgument(tableEnd != -1, "Malformed key: %s", key);
+        int identifierStart = key.lastIndexOf(':') + 1;
+
+        StringBuilder sb = new StringBuilder(key.length());
+        sb.append(key, 0, tableEnd + 1);
+        int i = tableEnd + 1;
+        while (i < identifierStart) {
+            int nameEnd = key.indexOf(':', i);
+            int valueEnd = key.indexOf(':', nameEnd + 1);
+            Preconditions.checkArgument(valueEnd != -1 && valueEnd < identifierStart, "Malformed key: %s", key);
+            encodedIdNames.add(key.substring(i, nameEnd));
+            encodedIdValues.add(key.substring(nameEnd + 1, valueEnd));
+            sb.append(key, i, nameEnd + 1).append("*:");
+            i = valueEnd + 1;
         }
-        sb.append(parts[parts.length - 1]);
+        sb.append(key, identifierStart, key.length());
         return new DeconstructedKey(sb.toString(), encodedIdNames, encodedIdValues);
     }
 
@@ -135,6 +155,32 @@ public class RedisUtils {
         return new FullyDeconstructedKey(holderSchema, holderTable, identifier, new ColumnValuePairs(idColumns.toArray(ColumnValuePair[]::new)));
     }
 
+    /**
+     * Resolve the table a partial key belongs to ahead of time, so keys matching it can be decoded without looking the table up again.
+     *
+     * @param partialKey  the partial key, as built by {@link #buildPartialRedisKey}
+     * @param dataManager the data manager
+     * @return the template, or null if the table is not tracked
+     */
+    public static @Nullable KeyTemplate compile(String partialKey, DataManager dataManager) {
+        String[] parts = partialKey.split(":");
+        SQLSchema schema = dataManager.getSQLBuilder().getSchema(parts[1]);
+        if (schema == null) {
+            return null;
+        }
+
+        SQLTable table = schema.getTable(parts[2]);
+        if (table == null) {
+            return null;
+        }
+
+        Map<String, Class<?>> idColumnTypes = new HashMap<>();
+        for (ColumnMetadata columnMetadata : table.getIdColumns()) {
+            idColumnTypes.put(columnMetadata.name(), columnMetadata.type());
+        }
+        return new KeyTemplate(partialKey, parts[1], parts[2], parts[parts.length - 1], Map.copyOf(idColumnTypes));
+    }
+
     public record DeconstructedKey(String partialKey, List<String> encodedIdNames, List<String> encodedIdValues) {
 
     }
@@ -144,6 +190,25 @@ public class RedisUtils {
 
     }
 
+    /**
+     * A partial key whose table has already been resolved.
+     */
+    public record KeyTemplate(String partialKey, String holderSchema, String holderTable, String identifier,
+                              Map<String, Class<?>> idColumnTypes) {
+
+        public FullyDeconstructedKey decode(DeconstructedKey key) {
+            List<ColumnValuePair> idColumns = new ArrayList<>(key.encodedIdNames().size());
+            for (int i = 0; i < key.encodedIdNames().size(); i++) {
+                String name = key.encodedIdNames().get(i);
+                Class<?> type = idColumnTypes.get(name);
+                if (type != null) {
+                    idColumns.add(new ColumnValuePair(name, Primitives.decodePrimitive(type, key.encodedIdValues().get(i))));
+                }
+            }
+            return new FullyDeconstructedKey(holderSchema, holderTable, identifier, new ColumnValuePairs(idColumns.toArray(ColumnValuePair[]::new)));
+        }
+    }
+
 
     public static String getVirtualColumnName(String identifier) {
         return "__virtual__cv_" + identifier;
@@ -1,7 +1,9 @@
 package net.staticstudios.data;
 
 import com.google.gson.Gson;
+import net.staticstudios.data.impl.redis.RedisChangeMessage;
 import net.staticstudios.data.impl.redis.RedisEncodedValue;
+import net.staticstudios.data.impl.redis.RedisListener;
 import net.staticstudios.data.misc.DataTest;
 import net.staticstudios.data.misc.MockEnvironment;
 import net.staticstudios.data.mock.user.MockUser;
@@ -11,6 +13,9 @@ import net.staticstudios.data.util.redis.RedisUtils;
 import org.junit.jupiter.api.Test;
 import redis.clients.jedis.Jedis;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -140,8 +145,8 @@ public class CachedValueTest extends DataTest {
         user.onCooldown.set(true);
         user.cooldownUpdates.set(1);
         waitForDataPropagation();
-        assertEquals("true", gson.fromJson(jedis.get(onCooldownKey), RedisEncodedValue.class).value());
-        assertEquals("1", gson.fromJson(jedis.get(cooldownUpdatesKey), RedisEncodedValue.class).value());
+        assertEquals("true", RedisEncodedValue.decode(jedis.get(onCooldownKey)).value());
+        assertEquals("1", RedisEncodedValue.decode(jedis.get(cooldownUpdatesKey)).value());
 
         user.onCooldown.set(null);
         user.cooldownUpdates.set(null);
@@ -156,6 +161,76 @@ public class CachedValueTest extends DataTest {
         assertNull(jedis.get(cooldownUpdatesKey));
     }
 
+    @Test
+    public void testPipelinedRedisWrites() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        MockUser user = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("john doe")
+                .insert(InsertMode.ASYNC);
+
+        String cooldownUpdatesKey = RedisUtils.buildRedisKey("public", "users", "cooldown_updates", user.getIdColumns());
+        for (int i = 1; i <= 1_000; i++) {
+            user.cooldownUpdates.set(i);
+        }
+        dataManager.flushTaskQueue();
+
+        //writes to the same key are sent in order, even when they share a pipeline
+        assertEquals("1000", RedisEncodedValue.decode(getJedis().get(cooldownUpdatesKey)).value());
+    }
+
+    @Test
+    public void testCompactRedisEncoding() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        MockUser user = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("john doe")
+                .insert(InsertMode.SYNC);
+
+        String cooldownUpdatesKey = RedisUtils.buildRedisKey("public", "users", "cooldown_updates", user.getIdColumns());
+        user.cooldownUpdates.set(12);
+        dataManager.flushTaskQueue();
+
+        String encoded = getJedis().get(cooldownUpdatesKey);
+        assertEquals(24, encoded.length());
+        RedisEncodedValue decoded = RedisEncodedValue.decode(encoded);
+        assertEquals(RedisEncodedValue.appId(dataManager.getApplicationId()), decoded.staticDataAppName());
+        assertEquals("12", decoded.value());
+
+        //values written as JSON by older versions are still read
+        assertEquals("5", RedisEncodedValue.decode(gson.toJson(new RedisEncodedValue("other-app", "5"))).value());
+    }
+
+    @Test
+    public void testPublishedRedisValues() {
+        StaticDataConfig publishingConfig = config.toBuilder()
+                .publishRedisValues(true)
+                .build();
+        DataManager dataManager = createMockEnvironment(publishingConfig).dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        MockUser user = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("john doe")
+                .insert(InsertMode.SYNC);
+
+        String cooldownUpdatesKey = RedisUtils.buildRedisKey("public", "users", "cooldown_updates", user.getIdColumns());
+        String encoded = gson.toJson(new RedisEncodedValue(null, "42"));
+
+        //SET keyspace events are ignored when values are published, so this value can only arrive through the message
+        getJedis().publish(RedisListener.CHANGE_CHANNEL, gson.toJson(new RedisChangeMessage(cooldownUpdatesKey, encoded)));
+        waitForDataPropagation();
+        assertEquals(42, user.cooldownUpdates.get());
+
+        user.cooldownUpdates.set(7);
+        dataManager.flushTaskQueue();
+        assertEquals("7", RedisEncodedValue.decode(getJedis().get(cooldownUpdatesKey)).value());
+    }
+
     @Test
     public void testLoadCachedValues() {
         UUID userId = UUID.randomUUID();
@@ -188,6 +263,34 @@ public class CachedValueTest extends DataTest {
         assertEquals(5, user2.cooldownUpdates.get());
     }
 
+    @Test
+    public void testLoadManyCachedValues() {
+        DataManager dataManager1 = getMockEnvironments().getFirst().dataManager();
+        dataManager1.load(MockUser.class);
+        dataManager1.finishLoading();
+        Map<UUID, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 2_500; i++) {
+            MockUser user = MockUser.builder(dataManager1)
+                    .id(UUID.randomUUID())
+                    .name("user " + i)
+                    .insert(InsertMode.ASYNC);
+            user.cooldownUpdates.set(i);
+            expected.put(user.id.get(), i);
+        }
+        dataManager1.flushTaskQueue();
+
+        //spans several SCAN pages, each loaded with a single MGET
+        MockEnvironment env2 = createMockEnvironment();
+        DataManager dataManager2 = env2.dataManager();
+        dataManager2.load(MockUser.class);
+        dataManager2.finishLoading();
+        List<MockUser> users = MockUser.query(dataManager2).findAll();
+        assertEquals(expected.size(), users.size());
+        for (MockUser user : users) {
+            assertEquals(expected.get(user.id.get()), user.cooldownUpdates.get());
+        }
+    }
+
     @Test
     public void testRefreshCachedValues() throws InterruptedException {
         DataManager dataManager = getMockEnvironments().getFirst().dataManager();
@@ -213,7 +316,7 @@ public class CachedValueTest extends DataTest {
 
         assertEquals(0, user.counter.get()); //trigger a refresh
         waitForDataPropagation();
-        assertEquals("0", gson.fromJson(jedis.get(counterKey), RedisEncodedValue.class).value());
+        assertEquals("0", RedisEncodedValue.decode(jedis.get(counterKey)).value());
     }
 
     @Test
@@ -243,7 +346,7 @@ public class CachedValueTest extends DataTest {
 
         Thread.sleep(6000);
 
-        RedisEncodedValue encoded = gson.fromJson(jedis.get(throttledCounterKey), RedisEncodedValue.class);
+        RedisEncodedValue encoded = RedisEncodedValue.decode(jedis.get(throttledCounterKey));
         assertNotNull(encoded);
         assertEquals("4", encoded.value());
     }
@@ -0,0 +1,77 @@
+package net.staticstudios.data;
+
+import net.staticstudios.data.misc.DataTest;
+import net.staticstudios.data.mock.user.MockUser;
+import net.staticstudios.data.util.RowChange;
+import net.staticstudios.data.util.TriggerCause;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangeStreamTest extends DataTest {
+
+    @Test
+    public void testChangeStream() throws InterruptedException {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        BlockingQueue<RowChange<MockUser>> changes = new LinkedBlockingQueue<>();
+        dataManager.changes(MockUser.class).subscribe(new Flow.Subscriber<>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(RowChange<MockUser> item) {
+                changes.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        MockUser mockUser = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("test user")
+                .insert(InsertMode.SYNC);
+        mockUser.name.set("new name");
+        mockUser.delete();
+
+        List<RowChange<MockUser>> received = new ArrayList<>();
+        RowChange<MockUser> change;
+        while ((change = changes.poll(5, TimeUnit.SECONDS)) != null) {
+            received.add(change);
+            if (change.cause() == TriggerCause.DELETE) {
+                break;
+            }
+        }
+
+        RowChange<MockUser> insert = received.stream().filter(c -> c.cause() == TriggerCause.INSERT).findFirst().orElseThrow();
+        assertEquals(mockUser, insert.instance());
+        assertEquals("test user", insert.newValues().get("name"));
+        assertTrue(insert.oldValues().isEmpty());
+
+        RowChange<MockUser> update = received.stream().filter(c -> c.cause() == TriggerCause.UPDATE && c.changedColumns().contains("name")).findFirst().orElseThrow();
+        assertEquals("test user", update.oldValues().get("name"));
+        assertEquals("new name", update.newValues().get("name"));
+
+        RowChange<MockUser> delete = received.getLast();
+        assertEquals(TriggerCause.DELETE, delete.cause());
+        assertNull(delete.instance());
+        assertEquals(mockUser.getIdColumns(), delete.id());
+    }
+}
@@ -100,6 +100,41 @@ public class PersistentManyToManyCollectionTest extends DataTest {
         }
     }
 
+    @Test
+    public void testAddAllAndRemoveAllLarge() {
+        List<MockUser> friends = createFriends(1_200);
+
+        assertTrue(mockUser.friends.addAll(friends));
+        assertEquals(friends.size(), mockUser.friends.size());
+
+        waitForDataPropagation();
+
+        Connection pgConnection = getConnection();
+
+        try (PreparedStatement preparedStatement = pgConnection.prepareStatement("SELECT * FROM \"public\".\"user_friends\" WHERE \"users_id\" = ?")) {
+            preparedStatement.setObject(1, mockUser.id.get());
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                assertEquals(friends.size(), TestUtils.getResultCount(resultSet));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+
+        assertTrue(mockUser.friends.removeAll(friends.subList(0, 700)));
+        assertEquals(friends.size() - 700, mockUser.friends.size());
+
+        waitForDataPropagation();
+
+        try (PreparedStatement preparedStatement = pgConnection.prepareStatement("SELECT * FROM \"public\".\"user_friends\" WHERE \"users_id\" = ?")) {
+            preparedStatement.setObject(1, mockUser.id.get());
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                assertEquals(friends.size() - 700, TestUtils.getResultCount(resultSet));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     @Test
     public void testRemove() {
         List<MockUser> friends = createFriends(FRIEND_COUNT);
@@ -402,4 +437,51 @@ public class PersistentManyToManyCollectionTest extends DataTest {
             assertEquals(++i, user.friendRemovals.get());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testQueryIncludeFriends() {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            MockUser user = MockUser.builder(dataManager)
+                    .id(UUID.randomUUID())
+                    .name("include user")
+                    .insert(InsertMode.SYNC);
+            user.friends.addAll(createFriends(i));
+            ids.add(user.id.get());
+        }
+        waitForDataPropagation();
+
+        //a fresh data manager has none of these collections cached
+        DataManager fresh = createMockEnvironment().dataManager();
+        fresh.load(MockUser.class);
+        fresh.finishLoading();
+
+        List<MockUser> got = MockUser.query(fresh).where(w -> w.nameIs("include user"))
+                .includeFriends()
+                .findAll();
+        assertEquals(5, got.size());
+
+        long lookups = countFriendLookups(fresh);
+        for (MockUser user : got) {
+            assertEquals(ids.indexOf(user.id.get()), user.friends.size());
+        }
+        assertEquals(lookups, countFriendLookups(fresh));
+
+        //a new row joins the preloaded collection
+        MockUser user = got.getFirst();
+        int size = user.friends.size();
+        MockUser friend = MockUser.builder(fresh)
+                .id(UUID.randomUUID())
+                .name("new friend")
+                .insert(InsertMode.SYNC);
+        assertTrue(user.friends.add(friend));
+        assertEquals(size + 1, user.friends.size());
+    }
+
+    private long countFriendLookups(DataManager dataManager) {
+        return dataManager.getStatistics().getH2QueryStatistics().values().stream()
+                .filter(s -> s.sql().contains("FROM \"public\".\"user_friends\" INNER JOIN") && s.sql().contains("_data.\"id\" = ?"))
+                .mapToLong(QueryStatistics::count)
+                .sum();
+    }
+}
@@ -382,4 +382,51 @@ public class PersistentOneToManyCollectionTest extends DataTest {
             assertEquals(++i, user.sessionRemovals.get());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testQueryIncludeSessions() {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            MockUser user = MockUser.builder(dataManager)
+                    .id(UUID.randomUUID())
+                    .name("include user")
+                    .insert(InsertMode.SYNC);
+            user.sessions.addAll(createSessions(i));
+            ids.add(user.id.get());
+        }
+        waitForDataPropagation();
+
+        //a fresh data manager has none of these collections cached
+        DataManager fresh = createMockEnvironment().dataManager();
+        fresh.load(MockUser.class);
+        fresh.finishLoading();
+
+        List<MockUser> got = MockUser.query(fresh).where(w -> w.nameIs("include user"))
+                .includeSessions()
+                .findAll();
+        assertEquals(5, got.size());
+
+        long lookups = countSessionLookups(fresh);
+        for (MockUser user : got) {
+            assertEquals(ids.indexOf(user.id.get()), user.sessions.size());
+        }
+        assertEquals(lookups, countSessionLookups(fresh));
+
+        //a new row joins the preloaded collection
+        MockUser user = got.getFirst();
+        int size = user.sessions.size();
+        MockUserSession.builder(fresh)
+                .id(UUID.randomUUID())
+                .userId(user.id.get())
+                .timestamp(Timestamp.from(Instant.now()))
+                .insert(InsertMode.SYNC);
+        assertEquals(size + 1, user.sessions.size());
+    }
+
+    private long countSessionLookups(DataManager dataManager) {
+        return dataManager.getStatistics().getH2QueryStatistics().values().stream()
+                .filter(s -> s.sql().contains("FROM \"public\".\"user_sessions\" INNER JOIN \"public\".\"users\" ON"))
+                .mapToLong(QueryStatistics::count)
+                .sum();
+    }
+}
@@ -4,6 +4,9 @@ import net.staticstudios.data.misc.DataTest;
 import net.staticstudios.data.misc.MockEnvironment;
 import net.staticstudios.data.mock.user.MockUser;
 import net.staticstudios.data.util.ColumnValuePair;
+import net.staticstudios.data.util.HandlerDispatchTable;
+import net.staticstudios.data.util.StripedExecutor;
+import net.staticstudios.data.util.ValueUpdateHandlerWrapper;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
@@ -13,8 +16,13 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -216,6 +224,52 @@ public class PersistentValueTest extends DataTest {
         assertEquals(3, mockUser.getNameUpdates());
     }
 
+    @Test
+    public void testHandlerDispatchTable() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        List<String> columnNames = List.of("name", "id");
+        long generation = dataManager.getHandlerGeneration();
+        assertEquals(0, dataManager.createHandlerDispatchTable("public", "users", columnNames).getValueHandlers(0).length);
+
+        MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("test user")
+                .nameUpdates(0)
+                .insert(InsertMode.SYNC);
+        //registering the handler should invalidate previously built dispatch tables
+        assertNotEquals(generation, dataManager.getHandlerGeneration());
+
+        HandlerDispatchTable dispatchTable = dataManager.createHandlerDispatchTable("public", "users", columnNames);
+        assertEquals(1, dispatchTable.getValueHandlers(0).length);
+        HandlerDispatchTable.ValueHandlerGroup group = dispatchTable.getValueHandlers(0)[0];
+        assertEquals(MockUser.class, group.holderClass());
+        assertArrayEquals(new int[]{1}, group.idOrdinals());
+        assertEquals(0, dispatchTable.getValueHandlers(1).length);
+    }
+
+    @Test
+    public void testHandlerStatistics() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        MockUser mockUser = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("test user")
+                .nameUpdates(0)
+                .insert(InsertMode.SYNC);
+        mockUser.name.set("new name");
+        waitForDataPropagation();
+        assertEquals(1, mockUser.getNameUpdates());
+
+        HandlerStatistics statistics = dataManager.getStatistics().getHandlerStatistics().get("MockUser.name");
+        assertNotNull(statistics);
+        assertEquals(1, statistics.count());
+        assertTrue(statistics.maxNanos() >= statistics.p50Nanos());
+        assertEquals(0, dataManager.getStatistics().getUpdateHandlerBacklog());
+    }
+
     @Test
     public void testReceiveUpdateFromPostgres() {
         DataManager dataManager = getMockEnvironments().getFirst().dataManager();
@@ -418,6 +472,78 @@ public class PersistentValueTest extends DataTest {
         }
     }
 
+    @Test
+    public void testBatchUpdateHandler() throws Exception {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        MockUser mockUser1 = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("test user 1")
+                .insert(InsertMode.SYNC);
+        MockUser mockUser2 = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("test user 2")
+                .insert(InsertMode.SYNC);
+
+        for (int i = 0; i < 5; i++) {
+            mockUser1.score.set(i);
+            mockUser2.score.set(i);
+        }
+        mockUser2.score.set(null); //back to where it started, so there is nothing to report
+
+        Thread.sleep(1000);
+        //all changes to a holder within the window are collapsed into a single update
+        assertEquals(1, mockUser1.scoreBatchUpdates.get());
+        assertEquals(0, mockUser2.scoreBatchUpdates.get());
+    }
+
+    @Test
+    public void testStripedUpdateHandlersRunInCommitOrder() throws Exception {
+        StripedExecutor executor = StripedExecutor.builder()
+                .stripes(4)
+                .build();
+        DataManager dataManager = createMockEnvironment(config.toBuilder()
+                .updateHandlerExecutor(executor)
+                .build()).dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        MockUser mockUser1 = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("test user 1")
+                .insert(InsertMode.SYNC);
+        MockUser mockUser2 = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("test user 2")
+                .insert(InsertMode.SYNC);
+
+        int updates = 200;
+        Map<MockUser, List<String>> seen = new ConcurrentHashMap<>();
+        CountDownLatch done = new CountDownLatch(updates * 2);
+        ValueUpdateHandlerWrapper<MockUser, Integer> handler = new ValueUpdateHandlerWrapper<>((user, update) -> {
+            seen.computeIfAbsent(user, k -> Collections.synchronizedList(new ArrayList<>())).add(update.oldValue() + "->" + update.newValue());
+            done.countDown();
+        }, Integer.class, MockUser.class);
+        handler.setName("MockUser.views(test)");
+        dataManager.addUpdateHandler("public", "users", "views", handler);
+
+        for (int i = 0; i < updates; i++) {
+            mockUser1.views.set(i);
+            mockUser2.views.set(i);
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (MockUser user : List.of(mockUser1, mockUser2)) {
+            List<String> transitions = seen.get(user);
+            assertEquals(updates, transitions.size());
+            assertEquals("null->0", transitions.getFirst());
+            for (int i = 1; i < updates; i++) {
+                assertEquals((i - 1) + "->" + i, transitions.get(i));
+            }
+        }
+        executor.shutdown();
+    }
+
     @Test
     public void testInsertStrategyPreferExisting() throws SQLException {
         DataManager dataManager = getMockEnvironments().getFirst().dataManager();
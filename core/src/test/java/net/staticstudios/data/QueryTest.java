@@ -2,10 +2,16 @@ package net.staticstudios.data;
 
 import net.staticstudios.data.misc.DataTest;
 import net.staticstudios.data.mock.user.MockUser;
+import net.staticstudios.data.query.LiveQuery;
+import net.staticstudios.data.util.ColumnValuePair;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -26,6 +32,32 @@ public class QueryTest extends DataTest {
         assertSame(original, got);
     }
 
+    @Test
+    public void testFindAllIdIsIn() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        MockUser original1 = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("test user")
+                .insert(InsertMode.SYNC);
+        MockUser original2 = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("test user2")
+                .insert(InsertMode.SYNC);
+
+        List<MockUser> got = MockUser.query(dataManager).where(w -> w.idIsIn(original2.id.get(), UUID.randomUUID(), original1.id.get()))
+                .findAll();
+        assertEquals(2, got.size());
+        assertSame(original2, got.get(0));
+        assertSame(original1, got.get(1));
+
+        got = dataManager.getInstances(MockUser.class, List.of(original1.getIdColumns(), original2.getIdColumns()));
+        assertEquals(2, got.size());
+        assertSame(original1, got.get(0));
+        assertSame(original2, got.get(1));
+    }
+
     @Test
     public void testFindAllLike() {
         DataManager dataManager = getMockEnvironments().getFirst().dataManager();
@@ -243,6 +275,265 @@ public class QueryTest extends DataTest {
         assertEquals("WHERE \"public\".\"users\".\"name\" IN (?, ?, ?)", MockUser.query(dataManager).where(w -> w.nameIsIn(List.of("name1", "name2", "name3"))).toString());
     }
 
+    @Test
+    public void testQueryPlanReusedForSameShape() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        assertEquals("WHERE \"public\".\"users\".\"name\" IN (?, ?)", MockUser.query(dataManager).where(w -> w.nameIsIn("name1", "name2")).toString());
+        assertEquals("WHERE \"public\".\"users\".\"name\" IN (?, ?)", MockUser.query(dataManager).where(w -> w.nameIsIn("name3", "name4")).toString());
+        assertEquals("WHERE \"public\".\"users\".\"name\" IN (?, ?, ?)", MockUser.query(dataManager).where(w -> w.nameIsIn("name1", "name2", "name3")).toString());
+        assertEquals("WHERE \"public\".\"users\".\"name\" IN (?, ?) LIMIT 5", MockUser.query(dataManager).where(w -> w.nameIsIn("name1", "name2")).limit(5).toString());
+    }
+
+    @Test
+    public void testCachedQueryInvalidatedOnWrite() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        MockUser original1 = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("cached user")
+                .insert(InsertMode.SYNC);
+
+        assertEquals(List.of(original1), MockUser.query(dataManager).where(w -> w.nameIs("cached user")).cached().findAll());
+        assertEquals(List.of(original1), MockUser.query(dataManager).where(w -> w.nameIs("cached user")).cached().findAll());
+        assertTrue(dataManager.getStatistics().getQueryCacheSize() > 0);
+
+        MockUser original2 = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("cached user")
+                .insert(InsertMode.SYNC);
+
+        List<MockUser> got = MockUser.query(dataManager).where(w -> w.nameIs("cached user")).cached().findAll();
+        assertEquals(2, got.size());
+        assertTrue(got.contains(original1));
+        assertTrue(got.contains(original2));
+
+        original1.name.set("not cached user");
+        assertEquals(List.of(original2), MockUser.query(dataManager).where(w -> w.nameIs("cached user")).cached().findAll());
+    }
+
+    @Test
+    public void testStreamAndForEach() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        List<MockUser> originals = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            originals.add(MockUser.builder(dataManager)
+                    .id(UUID.randomUUID())
+                    .name("streamed user")
+                    .insert(InsertMode.SYNC));
+        }
+
+        List<MockUser> streamed;
+        try (Stream<MockUser> stream = MockUser.query(dataManager).where(w -> w.nameIs("streamed user")).stream(2)) {
+            streamed = stream.toList();
+        }
+        assertEquals(originals.size(), streamed.size());
+        assertTrue(streamed.containsAll(originals));
+
+        List<MockUser> visited = new ArrayList<>();
+        MockUser.query(dataManager).where(w -> w.nameIs("streamed user")).forEach(2, visited::add);
+        assertEquals(originals.size(), visited.size());
+        assertTrue(visited.containsAll(originals));
+    }
+
+    @Test
+    public void testFindAsync() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        UUID id = UUID.randomUUID();
+        MockUser original = MockUser.builder(dataManager)
+                .id(id)
+                .name("async user")
+                .insert(InsertMode.SYNC);
+
+        assertSame(original, MockUser.query(dataManager).where(w -> w.idIs(id)).findOneAsync().join());
+
+        AtomicBoolean completedOnCaller = new AtomicBoolean(false);
+        List<MockUser> got = MockUser.query(dataManager).where(w -> w.nameIs("async user"))
+                .findAllAsync(task -> {
+                    completedOnCaller.set(true);
+                    task.run();
+                })
+                .join();
+        assertEquals(List.of(original), got);
+        assertTrue(completedOnCaller.get());
+    }
+
+    @Test
+    public void testAggregates() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        for (int age = 10; age <= 30; age += 10) {
+            MockUser.builder(dataManager)
+                    .id(UUID.randomUUID())
+                    .name("aggregate user")
+                    .age(age)
+                    .insert(InsertMode.SYNC);
+        }
+
+        assertEquals(3, MockUser.query(dataManager).where(w -> w.nameIs("aggregate user")).count());
+        assertEquals(2, MockUser.query(dataManager).where(w -> w.nameIs("aggregate user").and().ageIsGreaterThan(10)).count());
+        assertEquals(0, MockUser.query(dataManager).where(w -> w.nameIs("nobody")).count());
+        assertTrue(MockUser.query(dataManager).where(w -> w.nameIs("aggregate user")).exists());
+        assertFalse(MockUser.query(dataManager).where(w -> w.nameIs("nobody")).exists());
+
+        assertEquals(60, MockUser.query(dataManager).where(w -> w.nameIs("aggregate user")).sumAge());
+        assertEquals(20, MockUser.query(dataManager).where(w -> w.nameIs("aggregate user")).avgAge(), 0.0001);
+        assertEquals(10, MockUser.query(dataManager).where(w -> w.nameIs("aggregate user")).minAge());
+        assertEquals(30, MockUser.query(dataManager).where(w -> w.nameIs("aggregate user")).maxAge());
+        assertNull(MockUser.query(dataManager).where(w -> w.nameIs("nobody")).maxAge());
+    }
+
+    @Test
+    public void testProjectionIntoRecord() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("projected user 1")
+                .age(10)
+                .insert(InsertMode.SYNC);
+        MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("projected user 2")
+                .age(20)
+                .insert(InsertMode.SYNC);
+
+        List<NameAndAge> got = MockUser.query(dataManager).where(w -> w.nameIsLike("projected user%"))
+                .selectName()
+                .selectAge()
+                .orderByAge(Order.ASCENDING)
+                .into(NameAndAge.class);
+        assertEquals(List.of(new NameAndAge("projected user 1", 10), new NameAndAge("projected user 2", 20)), got);
+    }
+
+    private record NameAndAge(String name, Integer age) {
+    }
+
+    @Test
+    public void testKeysetPagination() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        List<MockUser> originals = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            originals.add(MockUser.builder(dataManager)
+                    .id(UUID.randomUUID())
+                    .name("paged user")
+                    .age(i / 2)
+                    .insert(InsertMode.SYNC));
+        }
+
+        List<MockUser> paged = new ArrayList<>();
+        List<MockUser> page = MockUser.query(dataManager).where(w -> w.nameIs("paged user"))
+                .orderByAge(Order.ASCENDING)
+                .limit(2)
+                .findAll();
+        while (!page.isEmpty()) {
+            paged.addAll(page);
+            MockUser last = page.getLast();
+            page = MockUser.query(dataManager).where(w -> w.nameIs("paged user"))
+                    .orderByAge(Order.ASCENDING)
+                    .after(last)
+                    .limit(2)
+                    .findAll();
+        }
+
+        assertEquals(originals.size(), paged.size());
+        assertTrue(paged.containsAll(originals));
+        for (int i = 1; i < paged.size(); i++) {
+            assertTrue(paged.get(i - 1).age.get() <= paged.get(i).age.get());
+        }
+
+        assertEquals("WHERE \"public\".\"users\".\"name\" = ? AND (\"public\".\"users\".\"age\", \"public\".\"users\".\"id\") > (?, ?) ORDER BY \"public\".\"users\".\"age\" ASC, \"public\".\"users\".\"id\" ASC LIMIT 2",
+                MockUser.query(dataManager).where(w -> w.nameIs("paged user")).orderByAge(Order.ASCENDING).after(originals.getFirst()).limit(2).toString());
+    }
+
+    @Test
+    public void testLiveQuery() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        MockUser adult = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("adult")
+                .age(30)
+                .insert(InsertMode.SYNC);
+        MockUser child = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("child")
+                .age(10)
+                .insert(InsertMode.SYNC);
+
+        List<MockUser> added = new ArrayList<>();
+        List<MockUser> removed = new ArrayList<>();
+        try (LiveQuery<MockUser> adults = MockUser.query(dataManager).where(w -> w.ageIsGreaterThanOrEqualTo(18)).live()) {
+            adults.onAdd(added::add).onRemove(removed::add);
+            assertEquals(List.of(adult), adults.getResults());
+
+            child.age.set(18);
+            assertEquals(List.of(child), added);
+            assertTrue(adults.contains(child));
+
+            adult.age.set(17);
+            assertEquals(List.of(adult), removed);
+            assertFalse(adults.contains(adult));
+
+            MockUser newcomer = MockUser.builder(dataManager)
+                    .id(UUID.randomUUID())
+                    .name("newcomer")
+                    .age(40)
+                    .insert(InsertMode.SYNC);
+            assertEquals(List.of(child, newcomer), added);
+
+            newcomer.delete();
+            assertEquals(List.of(adult, newcomer), removed);
+            assertEquals(List.of(child), adults.getResults());
+        }
+
+        child.age.set(5);
+        assertEquals(2, removed.size());
+    }
+
+    @Test
+    public void testEqualityLookupUsesHeapIndex() {
+        DataManager dataManager = createMockEnvironment(config.toBuilder().heapIndexes(true).build()).dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        MockUser original1 = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("indexed user")
+                .insert(InsertMode.SYNC);
+
+        assertSame(original1, MockUser.query(dataManager).where(w -> w.nameIs("indexed user")).findOne());
+        assertNotNull(dataManager.lookupHeapIndex(MockUser.class, Map.of("name", "indexed user")));
+
+        MockUser original2 = MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("indexed user")
+                .insert(InsertMode.SYNC);
+
+        List<MockUser> got = MockUser.query(dataManager).where(w -> w.nameIs("indexed user")).findAll();
+        assertEquals(2, got.size());
+        assertTrue(got.contains(original1));
+        assertTrue(got.contains(original2));
+
+        original1.name.set("renamed user");
+        assertEquals(List.of(original2), MockUser.query(dataManager).where(w -> w.nameIs("indexed user")).findAll());
+        assertSame(original1, MockUser.query(dataManager).where(w -> w.nameIs("renamed user")).findOne());
+
+        original2.delete();
+        assertNull(MockUser.query(dataManager).where(w -> w.nameIs("indexed user")).findOne());
+        assertTrue(MockUser.query(dataManager).where(w -> w.nameIs("indexed user")).findAll().isEmpty());
+    }
+
     @Test
     public void testLimitClause() {
         DataManager dataManager = getMockEnvironments().getFirst().dataManager();
@@ -293,7 +584,7 @@ public class QueryTest extends DataTest {
         DataManager dataManager = getMockEnvironments().getFirst().dataManager();
         dataManager.load(MockUser.class);
         dataManager.finishLoading();
-        assertEquals("WHERE ((\"public\".\"users\".\"id\" = ? OR \"public\".\"users\".\"age\" BETWEEN ? AND ?) AND \"public\".\"users\".\"name\" LIKE ?) LIMIT 10 OFFSET 5 ORDER BY \"public\".\"users\".\"age\" DESC",
+        assertEquals("WHERE ((\"public\".\"users\".\"id\" = ? OR \"public\".\"users\".\"age\" BETWEEN ? AND ?) AND \"public\".\"users\".\"name\" LIKE ?) ORDER BY \"public\".\"users\".\"age\" DESC, \"public\".\"users\".\"id\" DESC LIMIT 10 OFFSET 5",
                 MockUser.query(dataManager).where(w -> w
                                 .idIs(UUID.randomUUID())
                                 .or()
@@ -325,6 +616,81 @@ public class QueryTest extends DataTest {
         assertEquals("WHERE \"public\".\"users\".\"__virtual__cv_settings_updates\" <> ?", MockUser.query(dataManager).where(w -> w.settingsUpdatesIsNot(1)).toString());
     }
 
+    @Test
+    public void testQueryLatencyStatistics() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("latency user 1")
+                .age(40)
+                .insert(InsertMode.SYNC);
+        MockUser.builder(dataManager)
+                .id(UUID.randomUUID())
+                .name("latency user 2")
+                .age(41)
+                .insert(InsertMode.SYNC);
+
+        assertEquals(2, MockUser.query(dataManager).where(w -> w.ageIsGreaterThan(39)).findAll().size());
+
+        QueryStatistics statistics = dataManager.getStatistics().getH2QueryStatistics().values().stream()
+                .filter(s -> s.sql().contains("\"age\" > ?"))
+                .findFirst()
+                .orElseThrow();
+        assertTrue(statistics.count() > 0);
+        assertTrue(statistics.rows() >= 2);
+        assertTrue(statistics.p50Nanos() <= statistics.p99Nanos());
+        assertTrue(statistics.p99Nanos() <= statistics.maxNanos());
+    }
+
+    @Test
+    public void testFindAllSkipsPerRowExistenceChecks() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            UUID id = UUID.randomUUID();
+            ids.add(id);
+            MockUser.builder(dataManager)
+                    .id(id)
+                    .name("bulk user " + i)
+                    .age(50 + i)
+                    .insert(InsertMode.SYNC);
+        }
+        waitForDataPropagation();
+
+        //a fresh data manager has none of these rows cached as instances
+        DataManager fresh = createMockEnvironment().dataManager();
+        fresh.load(MockUser.class);
+        fresh.finishLoading();
+        MockUser cached = fresh.getInstance(MockUser.class, ColumnValuePair.of("id", ids.getFirst()));
+        assertNotNull(cached);
+        long existenceChecks = countExistenceChecks(fresh);
+
+        List<MockUser> got = MockUser.query(fresh).where(w -> w.ageIsGreaterThan(49))
+                .orderByAge(Order.ASCENDING)
+                .findAll();
+        assertEquals(20, got.size());
+        assertSame(cached, got.getFirst());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(ids.get(i), got.get(i).id.get());
+        }
+        assertEquals(existenceChecks, countExistenceChecks(fresh));
+
+        //the instances built by the query are cached and reused
+        assertSame(got.get(5), fresh.getInstance(MockUser.class, ColumnValuePair.of("id", ids.get(5))));
+        assertEquals(got, MockUser.query(fresh).where(w -> w.ageIsGreaterThan(49)).orderByAge(Order.ASCENDING).findAll());
+    }
+
+    private long countExistenceChecks(DataManager dataManager) {
+        return dataManager.getStatistics().getH2QueryStatistics().values().stream()
+                .filter(s -> s.sql().startsWith("SELECT 1 FROM \"public\".\"users\" WHERE"))
+                .mapToLong(QueryStatistics::count)
+                .sum();
+    }
+
     @Test
     public void testCachedValueIsNullClause() {
         DataManager dataManager = getMockEnvironments().getFirst().dataManager();
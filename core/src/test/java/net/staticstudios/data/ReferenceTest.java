@@ -10,6 +10,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -51,6 +53,42 @@ public class ReferenceTest extends DataTest {
         assertSame(settings, user.settings.get());
     }
 
+    @Test
+    public void testQueryIncludeReference() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+
+        List<MockUser> users = new ArrayList<>();
+        List<MockUserSettings> settings = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            MockUserSettings userSettings = MockUserSettings.builder(dataManager)
+                    .id(UUID.randomUUID())
+                    .insert(InsertMode.SYNC);
+            settings.add(userSettings);
+            users.add(MockUser.builder(dataManager)
+                    .id(UUID.randomUUID())
+                    .name("include user")
+                    .settingsId(i < 4 ? userSettings.id.get() : null)
+                    .insert(InsertMode.SYNC));
+        }
+
+        List<MockUser> got = MockUser.query(dataManager).where(w -> w.nameIs("include user"))
+                .includeSettings()
+                .findAll();
+
+        assertEquals(users.size(), got.size());
+        for (int i = 0; i < users.size(); i++) {
+            MockUser user = users.get(i);
+            assertTrue(got.contains(user));
+            if (i < 4) {
+                assertSame(settings.get(i), user.settings.get());
+            } else {
+                assertNull(user.settings.get());
+            }
+        }
+    }
+
     @Test
     public void testCreateUserAndReferenceInSingleInsert() {
         DataManager dataManager = getMockEnvironments().getFirst().dataManager();
@@ -2,9 +2,11 @@ package net.staticstudios.data;
 
 import net.staticstudios.data.misc.DataTest;
 import net.staticstudios.data.mock.post.MockPost;
+import net.staticstudios.data.mock.user.MockUser;
 import net.staticstudios.data.parse.DDLStatement;
 import net.staticstudios.data.util.EnvironmentVariableAccessor;
 import net.staticstudios.data.util.ValueUtils;
+import net.staticstudios.data.util.redis.RedisUtils;
 import org.intellij.lang.annotations.Language;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Disabled;
@@ -12,13 +14,18 @@ import org.junit.jupiter.api.Test;
 import org.testcontainers.containers.Container;
 
 import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 public class SQLParseTest extends DataTest {
@@ -177,5 +184,61 @@ public class SQLParseTest extends DataTest {
         assertSqlLinesEqualOrderIndependent(expectedLines, actualLines);
     }
 
+    @Test
+    public void testCompositeIndexes() {
+        DataManager dm = getMockEnvironments().getFirst().dataManager();
+        dm.load(MockUser.class);
+        List<DDLStatement> ddlStatements = dm.getSQLBuilder().parse(MockUser.class);
+
+        DDLStatement covering = ddlStatements.stream()
+                .filter(ddl -> ddl.postgresqlStatement().contains("INCLUDE"))
+                .findFirst()
+                .orElseThrow();
+        assertTrue(covering.postgresqlStatement().startsWith("CREATE INDEX IF NOT EXISTS \"idx_public_users_"));
+        assertTrue(covering.postgresqlStatement().endsWith("ON \"public\".\"users\" (\"name\", \"age\") INCLUDE (\"views\");"));
+        assertTrue(covering.h2Statement().endsWith("ON \"public\".\"users\" (\"name\", \"age\", \"views\");"));
+
+        DDLStatement virtual = ddlStatements.stream()
+                .filter(ddl -> ddl.h2Statement().contains("(\"" + RedisUtils.getVirtualColumnName("settings_updates") + "\", \"age\")"))
+                .findFirst()
+                .orElseThrow();
+        assertTrue(virtual.postgresqlStatement().isEmpty());
+    }
+
+    @Test
+    public void testStaleIndexesAreDropped() throws SQLException {
+        DataManager dm = getMockEnvironments().getFirst().dataManager();
+        dm.load(MockUser.class);
+        dm.finishLoading();
+
+        try (Statement statement = getConnection().createStatement()) {
+            statement.executeUpdate("CREATE INDEX idx_public_users_0123456789abcdef ON \"public\".\"users\" (\"age\")");
+            statement.executeUpdate("CREATE INDEX users_manual_age_idx ON \"public\".\"users\" (\"age\")");
+        }
+        List<String> before = getIndexNames();
+
+        DataManager restarted = createMockEnvironment().dataManager();
+        restarted.load(MockUser.class);
+        restarted.finishLoading();
+
+        List<String> after = getIndexNames();
+        assertFalse(after.contains("idx_public_users_0123456789abcdef"));
+        assertTrue(after.contains("users_manual_age_idx"));
+        before.remove("idx_public_users_0123456789abcdef");
+        assertEquals(before.size(), after.size());
+        assertTrue(after.containsAll(before));
+    }
+
+    private List<String> getIndexNames() throws SQLException {
+        List<String> names = new ArrayList<>();
+        try (Statement statement = getConnection().createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT indexname FROM pg_indexes WHERE schemaname = 'public' AND tablename = 'users'")) {
+            while (resultSet.next()) {
+                names.add(resultSet.getString(1));
+            }
+        }
+        return names;
+    }
+
     //todo: when a delete strategy is set to no action where it was previously set to cascade, the old trigger should be dropped. Add a test for this. moreover, what happens when we change the name of something? will the old trigger stay or what? handle this
 }
\ No newline at end of file
@@ -83,6 +83,10 @@ public class DataTest {
     }
 
     protected MockEnvironment createMockEnvironment() {
+        return createMockEnvironment(config);
+    }
+
+    protected MockEnvironment createMockEnvironment(StaticDataConfig config) {
         DataManager dataManager = new DataManager(config, false);
 
         MockEnvironment mockEnvironment = new MockEnvironment(config, dataManager);
@@ -7,6 +7,8 @@ import java.util.UUID;
 //todo: heres how inheritance should look:
 // if the super class provides a data annotation, ignore it and use the child's annotation. it would be cool tho to allow the super class to use a @data annotation. the former is whats implemented now. if changed, update the processor.
 @Data(schema = "public", table = "users")
+@Index(columns = {"name", "age"}, include = {"views"})
+@Index(columns = {"settings_updates", "age"})
 public class MockUser extends UniqueData {
     //todo: test inheritance properly. test the ij plugin and AP too.
     //todo:
@@ -55,6 +57,14 @@ public class MockUser extends UniqueData {
     @Column(name = "views", nullable = true)
     public PersistentValue<Integer> views;
 
+    @Identifier("score_batch_updates")
+    public CachedValue<Integer> scoreBatchUpdates = CachedValue.of(this, Integer.class)
+            .withFallback(0);
+
+    @Column(name = "score", nullable = true)
+    public PersistentValue<Integer> score = PersistentValue.of(this, Integer.class)
+            .onUpdateBatch(MockUser.class, 250, updates -> updates.forEach(update -> update.holder().scoreBatchUpdates.set(update.holder().scoreBatchUpdates.get() + 1)));
+
     @Identifier("session_additions")
     public CachedValue<Integer> sessionAdditions = CachedValue.of(this, Integer.class)
             .withFallback(0);
@@ -0,0 +1,76 @@
+package net.staticstudios.data.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedExecutorTest {
+
+    @Test
+    void testSameKeyRunsInOrder() throws InterruptedException {
+        StripedExecutor executor = StripedExecutor.builder()
+                .stripes(4)
+                .build();
+        int tasksPerKey = 1_000;
+        List<List<Integer>> seen = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(tasksPerKey * 8);
+        for (int key = 0; key < 8; key++) {
+            seen.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+        for (int i = 0; i < tasksPerKey; i++) {
+            for (int key = 0; key < 8; key++) {
+                List<Integer> seenForKey = seen.get(key);
+                int value = i;
+                executor.execute("key-" + key, () -> {
+                    seenForKey.add(value);
+                    done.countDown();
+                });
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (List<Integer> seenForKey : seen) {
+            assertEquals(tasksPerKey, seenForKey.size());
+            for (int i = 0; i < tasksPerKey; i++) {
+                assertEquals(i, seenForKey.get(i));
+            }
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    void testRejectWhenFull() throws InterruptedException {
+        StripedExecutor executor = StripedExecutor.builder()
+                .stripes(1)
+                .queueCapacity(1)
+                .backpressure(StripedExecutor.Backpressure.REJECT)
+                .build();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute("key", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        executor.execute("key", () -> {
+        });
+        assertThrows(RejectedExecutionException.class, () -> executor.execute("key", () -> {
+        }));
+        assertEquals(1, executor.getQueuedTasks());
+
+        release.countDown();
+        executor.shutdown();
+    }
+}
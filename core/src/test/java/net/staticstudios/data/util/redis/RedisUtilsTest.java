@@ -0,0 +1,43 @@
+package net.staticstudios.data.util.redis;
+
+import net.staticstudios.data.DataManager;
+import net.staticstudios.data.misc.DataTest;
+import net.staticstudios.data.mock.user.MockUser;
+import net.staticstudios.data.util.ColumnMetadata;
+import net.staticstudios.data.util.ColumnValuePair;
+import net.staticstudios.data.util.ColumnValuePairs;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RedisUtilsTest extends DataTest {
+
+    @Test
+    public void testDeconstructMatchesPartialKey() {
+        DataManager dataManager = getMockEnvironments().getFirst().dataManager();
+        dataManager.load(MockUser.class);
+        dataManager.finishLoading();
+        List<ColumnMetadata> idColumns = dataManager.getMetadata(MockUser.class).idColumns();
+        UUID id = UUID.randomUUID();
+        String key = RedisUtils.buildRedisKey("public", "users", "cooldown_updates", new ColumnValuePairs(new ColumnValuePair("id", id)));
+        String partialKey = RedisUtils.buildPartialRedisKey("public", "users", "cooldown_updates", idColumns);
+
+        RedisUtils.DeconstructedKey deconstructedKey = RedisUtils.deconstruct(key);
+        assertEquals(partialKey, deconstructedKey.partialKey());
+        assertEquals(List.of("id"), deconstructedKey.encodedIdNames());
+        assertEquals(List.of(id.toString()), deconstructedKey.encodedIdValues());
+
+        RedisUtils.KeyTemplate template = RedisUtils.compile(partialKey, dataManager);
+        assertNotNull(template);
+        RedisUtils.FullyDeconstructedKey fullyDeconstructedKey = template.decode(deconstructedKey);
+        assertEquals("users", fullyDeconstructedKey.holderTable());
+        assertEquals("cooldown_updates", fullyDeconstructedKey.identifier());
+        assertEquals(id, ColumnValuePairs.getValue("id", fullyDeconstructedKey.idColumns()));
+
+        assertThrows(IllegalArgumentException.class, () -> RedisUtils.deconstruct("static-data:public"));
+        assertThrows(IllegalArgumentException.class, () -> RedisUtils.deconstruct("static-data:public:users:id:cooldown_updates"));
+    }
+}
@@ -14,11 +14,16 @@ import net.staticstudios.data.utils.Constants;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.sql.Timestamp;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.stream.Stream;
 
 public class DataPsiAugmentProvider extends PsiAugmentProvider {
     //TODO: I'm not sure if the following is possible, but if it is it would be cool:
@@ -224,6 +229,18 @@ public class DataPsiAugmentProvider extends PsiAugmentProvider {
         PsiType intType = JavaPsiFacade.getElementFactory(parentClass.getProject())
                 .createTypeFromText("int", parentClass);
 
+        PsiType voidType = JavaPsiFacade.getElementFactory(parentClass.getProject())
+                .createTypeFromText("void", parentClass);
+
+        PsiType longType = JavaPsiFacade.getElementFactory(parentClass.getProject())
+                .createTypeFromText("long", parentClass);
+
+        PsiType doubleType = JavaPsiFacade.getElementFactory(parentClass.getProject())
+                .createTypeFromText("double", parentClass);
+
+        PsiType booleanType = JavaPsiFacade.getElementFactory(parentClass.getProject())
+                .createTypeFromText("boolean", parentClass);
+
         PsiType orderType = JavaPsiFacade.getElementFactory(parentClass.getProject())
                 .createTypeFromText(Constants.ORDER_FQN, parentClass);
 
@@ -246,6 +263,37 @@ public class DataPsiAugmentProvider extends PsiAugmentProvider {
         PsiType listOfParentType = JavaPsiFacade.getElementFactory(parentClass.getProject())
                 .createType(listClass, substitutor);
 
+        PsiClass streamClass = JavaPsiFacade.getInstance(parentClass.getProject())
+                .findClass(Stream.class.getName(), GlobalSearchScope.allScope(parentClass.getProject()));
+        assert streamClass != null;
+        substitutor = PsiSubstitutor.EMPTY
+                .put(streamClass.getTypeParameters()[0], parentType);
+        PsiType streamOfParentType = JavaPsiFacade.getElementFactory(parentClass.getProject())
+                .createType(streamClass, substitutor);
+
+        PsiClass futureClass = JavaPsiFacade.getInstance(parentClass.getProject())
+                .findClass(CompletableFuture.class.getName(), GlobalSearchScope.allScope(parentClass.getProject()));
+        assert futureClass != null;
+        substitutor = PsiSubstitutor.EMPTY
+                .put(futureClass.getTypeParameters()[0], parentType);
+        PsiType futureOfParentType = JavaPsiFacade.getElementFactory(parentClass.getProject())
+                .createType(futureClass, substitutor);
+        substitutor = PsiSubstitutor.EMPTY
+                .put(futureClass.getTypeParameters()[0], listOfParentType);
+        PsiType futureOfListOfParentType = JavaPsiFacade.getElementFactory(parentClass.getProject())
+                .createType(futureClass, substitutor);
+
+        PsiType executorType = JavaPsiFacade.getElementFactory(parentClass.getProject())
+                .createTypeFromText(Executor.class.getName(), parentClass);
+
+        PsiClass consumerClass = JavaPsiFacade.getInstance(parentClass.getProject())
+                .findClass(Consumer.class.getName(), GlobalSearchScope.allScope(parentClass.getProject()));
+        assert consumerClass != null;
+        substitutor = PsiSubstitutor.EMPTY
+                .put(consumerClass.getTypeParameters()[0], PsiWildcardType.createSuper(parentClass.getManager(), parentType));
+        PsiType consumerOfParentType = JavaPsiFacade.getElementFactory(parentClass.getProject())
+                .createType(consumerClass, substitutor);
+
         for (PsiField psiField : parentClass.getAllFields()) {
             if (IntelliJPluginUtils.isValidPersistentValue(psiField)) {
                 SyntheticMethod orderByMethod = new SyntheticMethod(parentClass, queryClass, "orderBy" + StringUtil.capitalize(psiField.getName()), queryType);
@@ -254,6 +302,29 @@ public class DataPsiAugmentProvider extends PsiAugmentProvider {
                 orderByMethod.addModifier(PsiModifier.PUBLIC);
                 orderByMethod.addModifier(PsiModifier.FINAL);
                 queryClass.addMethod(orderByMethod);
+
+                if (psiField.getType() instanceof PsiClassType psiClassType && !IntelliJPluginUtils.hasAnnotation(psiField, Constants.FOREIGN_COLUMN_ANNOTATION_FQN)) {
+                    SyntheticMethod selectMethod = new SyntheticMethod(parentClass, queryClass, "select" + StringUtil.capitalize(psiField.getName()), queryType);
+                    selectMethod.setSourceField(psiField);
+                    selectMethod.addModifier(PsiModifier.PUBLIC);
+                    selectMethod.addModifier(PsiModifier.FINAL);
+                    queryClass.addMethod(selectMethod);
+
+                    PsiType valueType = IntelliJPluginUtils.getGenericParameter(psiClassType, psiField.getManager());
+                    if (QueryBuilderUtils.isNumeric(valueType) && !IntelliJPluginUtils.is(valueType, Timestamp.class.getName())) {
+                        boolean floatingPoint = IntelliJPluginUtils.is(valueType, Float.class.getName()) || IntelliJPluginUtils.is(valueType, Double.class.getName());
+                        addAggregateMethod(parentClass, queryClass, psiField, "sum", floatingPoint ? doubleType : longType);
+                        addAggregateMethod(parentClass, queryClass, psiField, "avg", doubleType);
+                        addAggregateMethod(parentClass, queryClass, psiField, "min", valueType);
+                        addAggregateMethod(parentClass, queryClass, psiField, "max", valueType);
+                    }
+                }
+            } else if (IntelliJPluginUtils.isValidReference(psiField) || IntelliJPluginUtils.isValidUniqueDataCollection(psiField)) {
+                SyntheticMethod includeMethod = new SyntheticMethod(parentClass, queryClass, "include" + StringUtil.capitalize(psiField.getName()), queryType);
+                includeMethod.setSourceField(psiField);
+                includeMethod.addModifier(PsiModifier.PUBLIC);
+                includeMethod.addModifier(PsiModifier.FINAL);
+                queryClass.addMethod(includeMethod);
             }
         }
 
@@ -272,6 +343,15 @@ public class DataPsiAugmentProvider extends PsiAugmentProvider {
         offsetMethod.addModifier(PsiModifier.PUBLIC);
         offsetMethod.addModifier(PsiModifier.FINAL);
         queryClass.addMethod(offsetMethod);
+        SyntheticMethod cachedMethod = new SyntheticMethod(parentClass, queryClass, "cached", queryType);
+        cachedMethod.addModifier(PsiModifier.PUBLIC);
+        cachedMethod.addModifier(PsiModifier.FINAL);
+        queryClass.addMethod(cachedMethod);
+        SyntheticMethod afterMethod = new SyntheticMethod(parentClass, queryClass, "after", queryType);
+        afterMethod.addParameter("lastRow", parentType);
+        afterMethod.addModifier(PsiModifier.PUBLIC);
+        afterMethod.addModifier(PsiModifier.FINAL);
+        queryClass.addMethod(afterMethod);
 
         SyntheticMethod findAllMethod = new SyntheticMethod(parentClass, queryClass, "findAll", listOfParentType);
         findAllMethod.addModifier(PsiModifier.PUBLIC);
@@ -281,10 +361,81 @@ public class DataPsiAugmentProvider extends PsiAugmentProvider {
         findOneMethod.addModifier(PsiModifier.PUBLIC);
         findOneMethod.addModifier(PsiModifier.FINAL);
         queryClass.addMethod(findOneMethod);
+        PsiClass classClass = JavaPsiFacade.getInstance(parentClass.getProject())
+                .findClass(Class.class.getName(), GlobalSearchScope.allScope(parentClass.getProject()));
+        assert classClass != null;
+        PsiClassType recordType = JavaPsiFacade.getElementFactory(parentClass.getProject())
+                .createTypeByFQClassName(Record.class.getName(), GlobalSearchScope.allScope(parentClass.getProject()));
+        PsiTypeParameter recordTypeParameter = JavaPsiFacade.getElementFactory(parentClass.getProject())
+                .createTypeParameter("R", new PsiClassType[]{recordType});
+        PsiType recordTypeParameterType = JavaPsiFacade.getElementFactory(parentClass.getProject())
+                .createType(recordTypeParameter);
+        substitutor = PsiSubstitutor.EMPTY
+                .put(classClass.getTypeParameters()[0], recordTypeParameterType);
+        PsiType classOfRecordType = JavaPsiFacade.getElementFactory(parentClass.getProject())
+                .createType(classClass, substitutor);
+        substitutor = PsiSubstitutor.EMPTY
+                .put(listClass.getTypeParameters()[0], recordTypeParameterType);
+        PsiType listOfRecordType = JavaPsiFacade.getElementFactory(parentClass.getProject())
+                .createType(listClass, substitutor);
+        SyntheticMethod intoMethod = new SyntheticMethod(parentClass, queryClass, "into", listOfRecordType);
+        intoMethod.addTypeParameter(recordTypeParameter);
+        intoMethod.addParameter("recordType", classOfRecordType);
+        intoMethod.addModifier(PsiModifier.PUBLIC);
+        queryClass.addMethod(intoMethod);
+        SyntheticMethod countMethod = new SyntheticMethod(parentClass, queryClass, "count", longType);
+        countMethod.addModifier(PsiModifier.PUBLIC);
+        queryClass.addMethod(countMethod);
+        SyntheticMethod existsMethod = new SyntheticMethod(parentClass, queryClass, "exists", booleanType);
+        existsMethod.addModifier(PsiModifier.PUBLIC);
+        queryClass.addMethod(existsMethod);
+        SyntheticMethod findAllAsyncMethod = new SyntheticMethod(parentClass, queryClass, "findAllAsync", futureOfListOfParentType);
+        findAllAsyncMethod.addModifier(PsiModifier.PUBLIC);
+        queryClass.addMethod(findAllAsyncMethod);
+        SyntheticMethod findAllAsyncWithExecutorMethod = new SyntheticMethod(parentClass, queryClass, "findAllAsync", futureOfListOfParentType);
+        findAllAsyncWithExecutorMethod.addParameter("completionExecutor", executorType);
+        findAllAsyncWithExecutorMethod.addModifier(PsiModifier.PUBLIC);
+        queryClass.addMethod(findAllAsyncWithExecutorMethod);
+        SyntheticMethod findOneAsyncMethod = new SyntheticMethod(parentClass, queryClass, "findOneAsync", futureOfParentType);
+        findOneAsyncMethod.addModifier(PsiModifier.PUBLIC);
+        queryClass.addMethod(findOneAsyncMethod);
+        SyntheticMethod findOneAsyncWithExecutorMethod = new SyntheticMethod(parentClass, queryClass, "findOneAsync", futureOfParentType);
+        findOneAsyncWithExecutorMethod.addParameter("completionExecutor", executorType);
+        findOneAsyncWithExecutorMethod.addModifier(PsiModifier.PUBLIC);
+        queryClass.addMethod(findOneAsyncWithExecutorMethod);
+        SyntheticMethod streamMethod = new SyntheticMethod(parentClass, queryClass, "stream", streamOfParentType);
+        streamMethod.addModifier(PsiModifier.PUBLIC);
+        queryClass.addMethod(streamMethod);
+        SyntheticMethod streamWithFetchSizeMethod = new SyntheticMethod(parentClass, queryClass, "stream", streamOfParentType);
+        streamWithFetchSizeMethod.addParameter("fetchSize", intType);
+        streamWithFetchSizeMethod.addModifier(PsiModifier.PUBLIC);
+        queryClass.addMethod(streamWithFetchSizeMethod);
+        SyntheticMethod forEachMethod = new SyntheticMethod(parentClass, queryClass, "forEach", voidType);
+        forEachMethod.addParameter("action", consumerOfParentType);
+        forEachMethod.addModifier(PsiModifier.PUBLIC);
+        queryClass.addMethod(forEachMethod);
+        SyntheticMethod forEachWithFetchSizeMethod = new SyntheticMethod(parentClass, queryClass, "forEach", voidType);
+        forEachWithFetchSizeMethod.addParameter("fetchSize", intType);
+        forEachWithFetchSizeMethod.addParameter("action", consumerOfParentType);
+        forEachWithFetchSizeMethod.addModifier(PsiModifier.PUBLIC);
+        queryClass.addMethod(forEachWithFetchSizeMethod);
+        PsiType liveQueryOfParentType = JavaPsiFacade.getElementFactory(parentClass.getProject())
+                .createTypeFromText("net.staticstudios.data.query.LiveQuery<" + parentClass.getName() + ">", parentClass);
+        SyntheticMethod liveMethod = new SyntheticMethod(parentClass, queryClass, "live", liveQueryOfParentType);
+        liveMethod.addModifier(PsiModifier.PUBLIC);
+        queryClass.addMethod(liveMethod);
 
         return queryClass;
     }
 
+    private void addAggregateMethod(PsiClass parentClass, SyntheticBuilderClass queryClass, PsiField psiField, String prefix, PsiType returnType) {
+        SyntheticMethod aggregateMethod = new SyntheticMethod(parentClass, queryClass, prefix + StringUtil.capitalize(psiField.getName()), returnType);
+        aggregateMethod.setSourceField(psiField);
+        aggregateMethod.addModifier(PsiModifier.PUBLIC);
+        aggregateMethod.addModifier(PsiModifier.FINAL);
+        queryClass.addMethod(aggregateMethod);
+    }
+
     private SyntheticBuilderClass createQueryWhereBuilderClass(PsiClass parentClass) {
         SyntheticBuilderClass whereClass = new SyntheticBuilderClass(parentClass, "QueryWhere");
         PsiType whereType = JavaPsiFacade.getElementFactory(parentClass.getProject())
@@ -122,6 +122,24 @@ public class IntelliJPluginUtils {
                 IntelliJPluginUtils.hasAnnotation(psiField, Constants.ONE_TO_ONE_ANNOTATION_FQN);
     }
 
+    public static boolean isValidUniqueDataCollection(PsiField psiField) {
+        if (!IntelliJPluginUtils.is(psiField.getType(), Constants.PERSISTENT_COLLECTION_FQN)) {
+            return false;
+        }
+        if (!IntelliJPluginUtils.hasAnnotation(psiField, Constants.ONE_TO_MANY_ANNOTATION_FQN) && !IntelliJPluginUtils.hasAnnotation(psiField, Constants.MANY_TO_MANY_ANNOTATION_FQN)) {
+            return false;
+        }
+        if (!(psiField.getType() instanceof PsiClassType psiClassType)) {
+            return false;
+        }
+        PsiType[] params = psiClassType.getParameters();
+        if (params.length == 0 || !(params[0] instanceof PsiClassType genericType)) {
+            return false;
+        }
+        PsiClass genericClass = genericType.resolve();
+        return genericClass != null && extendsClass(genericClass, Constants.UNIQUE_DATA_FQN);
+    }
+
     public static boolean isValidCachedValue(PsiField psiField) {
         return IntelliJPluginUtils.is(psiField.getType(), Constants.CACHED_VALUE_FQN) &&
                 IntelliJPluginUtils.hasAnnotation(psiField, Constants.IDENTIFIER_ANNOTATION_FQN);
@@ -65,21 +65,6 @@ public class SyntheticMethod extends LightMethodBuilder implements SyntheticElem
         return containingClass;
     }
 
-    @Override
-    public boolean hasTypeParameters() {
-        return false;
-    }
-
-    @Override
-    public @Nullable PsiTypeParameterList getTypeParameterList() {
-        return null;
-    }
-
-    @Override
-    public PsiTypeParameter @NotNull [] getTypeParameters() {
-        return new PsiTypeParameter[0];
-    }
-
     @Override
     public boolean isValid() {
         PsiClass cls = parentClass.get();
@@ -4,10 +4,18 @@ import com.sun.tools.javac.code.Flags;
 import com.sun.tools.javac.code.TypeTag;
 import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.util.List;
+import net.staticstudios.data.ManyToMany;
+import net.staticstudios.data.OneToMany;
 import net.staticstudios.data.compiler.javac.ProcessorContext;
+import net.staticstudios.data.compiler.javac.util.SimpleField;
+import net.staticstudios.data.compiler.javac.util.TypeUtils;
+import net.staticstudios.data.utils.Constants;
 import net.staticstudios.data.utils.StringUtils;
 import org.jetbrains.annotations.Nullable;
 
+import javax.lang.model.element.Element;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -17,6 +25,7 @@ public class QueryBuilderProcessor extends AbstractBuilderProcessor {
     private final Collection<ParsedPersistentValue> persistentValues;
     private final Collection<ParsedCachedValue> cachedValues;
     private final Collection<ParsedReference> references;
+    private final Collection<String> uniqueDataCollectionFieldNames;
     private final String whereClassName;
 
     public QueryBuilderProcessor(ProcessorContext processorContext) {
@@ -24,6 +33,7 @@ public class QueryBuilderProcessor extends AbstractBuilderProcessor {
         this.persistentValues = processorContext.persistentValues();
         this.cachedValues = processorContext.cachedValues();
         this.references = processorContext.references();
+        this.uniqueDataCollectionFieldNames = extractUniqueDataCollectionFieldNames(processorContext);
 
         QueryWhereProcessor whereProcessor = new QueryWhereProcessor(processorContext);
         this.whereClassName = whereProcessor.getBuilderClassName();
@@ -60,12 +70,39 @@ public class QueryBuilderProcessor extends AbstractBuilderProcessor {
         addWhereMethod();
         addLimitMethod();
         addOffsetMethod();
+        addCachedMethod();
+        addAfterMethod();
 
         for (ParsedPersistentValue pv : persistentValues) {
             processValue(pv);
         }
 
+        for (ParsedReference ref : references) {
+            addIncludeMethod(ref.getFieldName());
+        }
 
+        for (String fieldName : uniqueDataCollectionFieldNames) {
+            addIncludeMethod(fieldName);
+        }
+    }
+
+    /**
+     * Collections of UniqueData can be preloaded, collections of plain values can't.
+     */
+    private static Collection<String> extractUniqueDataCollectionFieldNames(ProcessorContext processorContext) {
+        TypeUtils typeUtils = processorContext.typeUtils();
+        Collection<String> fieldNames = new ArrayList<>();
+        for (SimpleField field : typeUtils.getFields(processorContext.dataClassElement(), Constants.PERSISTENT_COLLECTION_FQN)) {
+            Element fieldElement = field.element();
+            if (fieldElement.getAnnotation(OneToMany.class) == null && fieldElement.getAnnotation(ManyToMany.class) == null) {
+                continue;
+            }
+            if (!typeUtils.isAssignable(typeUtils.getGenericType(fieldElement, 0), Constants.UNIQUE_DATA_FQN)) {
+                continue;
+            }
+            fieldNames.add(field.name());
+        }
+        return fieldNames;
     }
 
 
@@ -75,6 +112,106 @@ public class QueryBuilderProcessor extends AbstractBuilderProcessor {
         String columnFieldName = storeColumn(pv.getFieldName(), pv.getColumn());
 
         addOrderByMethod(schemaFieldName, tableFieldName, columnFieldName, pv.getFieldName());
+
+        // values in other tables would need an inner join which only the where clause can add
+        if (pv instanceof ParsedForeignPersistentValue) {
+            return;
+        }
+
+        addSelectMethod(pv, schemaFieldName, tableFieldName, columnFieldName);
+        if (typeUtils.isNumericType(pv.getType())) {
+            addAggregateMethods(pv, schemaFieldName, tableFieldName, columnFieldName);
+        }
+    }
+
+    private void addSelectMethod(ParsedPersistentValue pv, String schemaFieldName, String tableFieldName, String columnFieldName) {
+        createMethod(MethodDef(
+                Modifiers(Flags.PUBLIC | Flags.FINAL),
+                names.fromString("select" + StringUtils.capitalize(pv.getFieldName())),
+                Ident(names.fromString(getBuilderClassName())),
+                List.nil(),
+                List.nil(),
+                List.nil(),
+                Block(0, List.of(
+                        Exec(
+                                Apply(
+                                        List.nil(),
+                                        Select(
+                                                Ident(names.fromString("super")),
+                                                names.fromString("addSelect")
+                                        ),
+                                        List.of(
+                                                Ident(names.fromString(schemaFieldName)),
+                                                Ident(names.fromString(tableFieldName)),
+                                                Ident(names.fromString(columnFieldName)),
+                                                Select(
+                                                        chainDots(pv.getTypeFQNParts()),
+                                                        names.fromString("class")
+                                                )
+                                        )
+                                )
+                        ),
+                        Return(
+                                Ident(names.fromString("this"))
+                        )
+                )),
+                null
+        ), builderClassDecl);
+
+    }
+
+    private void addAggregateMethods(ParsedPersistentValue pv, String schemaFieldName, String tableFieldName, String columnFieldName) {
+        String capitalizedFieldName = StringUtils.capitalize(pv.getFieldName());
+
+        if (typeUtils.isType(pv.getType(), Float.class) || typeUtils.isType(pv.getType(), Double.class)) {
+            addAggregateMethod("sum" + capitalizedFieldName, TypeIdent(TypeTag.DOUBLE), "sumDouble", schemaFieldName, tableFieldName, columnFieldName, null);
+        } else if (typeUtils.isType(pv.getType(), BigInteger.class) || typeUtils.isType(pv.getType(), BigDecimal.class)) {
+            addAggregateMethod("sum" + capitalizedFieldName, chainDots("java", "math", "BigDecimal"), "sumBigDecimal", schemaFieldName, tableFieldName, columnFieldName, null);
+        } else {
+            addAggregateMethod("sum" + capitalizedFieldName, TypeIdent(TypeTag.LONG), "sumLong", schemaFieldName, tableFieldName, columnFieldName, null);
+        }
+        addAggregateMethod("avg" + capitalizedFieldName, TypeIdent(TypeTag.DOUBLE), "avg", schemaFieldName, tableFieldName, columnFieldName, null);
+        addAggregateMethod("min" + capitalizedFieldName, chainDots(pv.getTypeFQNParts()), "min", schemaFieldName, tableFieldName, columnFieldName, pv);
+        addAggregateMethod("max" + capitalizedFieldName, chainDots(pv.getTypeFQNParts()), "max", schemaFieldName, tableFieldName, columnFieldName, pv);
+    }
+
+    private void addAggregateMethod(String name, JCTree.JCExpression returnType, String superMethodName, String schemaFieldName, String tableFieldName, String columnFieldName, @Nullable ParsedPersistentValue typedValue) {
+        List<JCTree.JCExpression> args = List.of(
+                Ident(names.fromString(schemaFieldName)),
+                Ident(names.fromString(tableFieldName)),
+                Ident(names.fromString(columnFieldName))
+        );
+        if (typedValue != null) {
+            args = args.append(
+                    Select(
+                            chainDots(typedValue.getTypeFQNParts()),
+                            names.fromString("class")
+                    )
+            );
+        }
+
+        createMethod(MethodDef(
+                Modifiers(Flags.PUBLIC | Flags.FINAL),
+                names.fromString(name),
+                returnType,
+                List.nil(),
+                List.nil(),
+                List.nil(),
+                Block(0, List.of(
+                        Return(
+                                Apply(
+                                        List.nil(),
+                                        Select(
+                                                Ident(names.fromString("super")),
+                                                names.fromString(superMethodName)
+                                        ),
+                                        args
+                                )
+                        )
+                )),
+                null
+        ), builderClassDecl);
+
     }
 
     private void addOrderByMethod(String schemaFieldName, String tableFieldName, String columnFieldName, String fieldName) {
@@ -117,6 +254,36 @@ public class QueryBuilderProcessor extends AbstractBuilderProcessor {
 
     }
 
+    private void addIncludeMethod(String fieldName) {
+        createMethod(MethodDef(
+                Modifiers(Flags.PUBLIC | Flags.FINAL),
+                names.fromString("include" + StringUtils.capitalize(fieldName)),
+                Ident(names.fromString(getBuilderClassName())),
+                List.nil(),
+                List.nil(),
+                List.nil(),
+                Block(0, List.of(
+                        Exec(
+                                Apply(
+                                        List.nil(),
+                                        Select(
+                                                Ident(names.fromString("super")),
+                                                names.fromString("addInclude")
+                                        ),
+                                        List.of(
+                                                Literal(fieldName)
+                                        )
+                                )
+                        ),
+                        Return(
+                                Ident(names.fromString("this"))
+                        )
+                )),
+                null
+        ), builderClassDecl);
+
+    }
+
     private void addLimitMethod() {
         createMethod(MethodDef(
                 Modifiers(Flags.PUBLIC | Flags.FINAL),
@@ -191,6 +358,73 @@ public class QueryBuilderProcessor extends AbstractBuilderProcessor {
 
     }
 
+    private void addCachedMethod() {
+        createMethod(MethodDef(
+                Modifiers(Flags.PUBLIC | Flags.FINAL),
+                names.fromString("cached"),
+                Ident(names.fromString(getBuilderClassName())),
+                List.nil(),
+                List.nil(),
+                List.nil(),
+                Block(0, List.of(
+                        Exec(
+                                Apply(
+                                        List.nil(),
+                                        Select(
+                                                Ident(names.fromString("super")),
+                                                names.fromString("setCached")
+                                        ),
+                                        List.of(
+                                                Literal(true)
+                                        )
+                                )
+                        ),
+                        Return(
+                                Ident(names.fromString("this"))
+                        )
+                )),
+                null
+        ), builderClassDecl);
+
+    }
+
+    private void addAfterMethod() {
+        createMethod(MethodDef(
+                Modifiers(Flags.PUBLIC | Flags.FINAL),
+                names.fromString("after"),
+                Ident(names.fromString(getBuilderClassName())),
+                List.nil(),
+                List.of(
+                        VarDef(
+                                Modifiers(Flags.PARAMETER),
+                                names.fromString("lastRow"),
+                                Ident(dataClassDecl.name),
+                                null
+                        )
+                ),
+                List.nil(),
+                Block(0, List.of(
+                        Exec(
+                                Apply(
+                                        List.nil(),
+                                        Select(
+                                                Ident(names.fromString("super")),
+                                                names.fromString("setAfter")
+                                        ),
+                                        List.of(
+                                                Ident(names.fromString("lastRow"))
+                                        )
+                                )
+                        ),
+                        Return(
+                                Ident(names.fromString("this"))
+                        )
+                )),
+                null
+        ), builderClassDecl);
+
+    }
+
     private void addWhereMethod() {
         createMethod(MethodDef(
                 Modifiers(Flags.PUBLIC | Flags.FINAL),
@@ -50,6 +50,19 @@ public class TypeUtils {
         return fqn.equals(clazz.getCanonicalName());
     }
 
+    public boolean isAssignable(TypeMirror typeMirror, String targetFQN) {
+        if (typeMirror == null || targetFQN == null) {
+            return false;
+        }
+
+        TypeElement targetTypeElement = elements.getTypeElement(targetFQN);
+        if (targetTypeElement == null) {
+            return false;
+        }
+
+        return types.isAssignable(types.erasure(typeMirror), types.erasure(targetTypeElement.asType()));
+    }
+
     public Collection<SimpleField> getFields(TypeElement typeElement, String targetFQN) {
         Collection<SimpleField> fields = new ArrayList<>();
         discoverFields(typeElement, targetFQN, fields);